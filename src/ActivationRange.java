@@ -0,0 +1,155 @@
+import java.util.List;
+
+
+/**
+ * ActivationRange.java - Decides which entities in a world are ticked fully.
+ *
+ * Entities further away from every player than the activation range of their
+ * category (see {@link etc#getActivationRange(ActivationRange.Category)}) are
+ * inactive: instead of a full tick they only age, burn and count down to
+ * despawning (see {@link OEntity#inactiveTick()}). Players, projectiles,
+ * falling blocks, TNT, bosses and entities that ride or are ridden are always
+ * active.
+ *
+ * Only used on the server thread.
+ */
+public class ActivationRange {
+
+    public enum Category {
+        MONSTERS, ANIMALS, MISC, ITEMS;
+    }
+
+    private final OWorld oworld;
+    private long         tick;
+    private int          active, inactive, lastActive, lastInactive;
+
+    public ActivationRange(OWorld oworld) {
+        this.oworld = oworld;
+    }
+
+    /**
+     * Marks all entities within the activation range of a player as active
+     * for this tick. Called by {@link OWorld} before the entities are ticked.
+     */
+    public void activateEntities() {
+        tick++;
+        lastActive = active;
+        lastInactive = inactive;
+        active = 0;
+        inactive = 0;
+
+        int max = 0;
+
+        for (Category category : Category.values()) {
+            max = Math.max(max, etc.getInstance().getActivationRange(category));
+        }
+        if (max <= 0) {
+            return;
+        }
+        // SRG for (int i = 0; i < oworld.field_73010_i.size(); i++) {
+        for (int i = 0; i < oworld.h.size(); i++) {
+            // SRG OEntity player = (OEntity) oworld.field_73010_i.get(i);
+            OEntity player = (OEntity) oworld.h.get(i);
+
+            // SRG for (int cx = OMathHelper.func_76128_c((player.field_70165_t - max) / 16.0D); cx <= OMathHelper.func_76128_c((player.field_70165_t + max) / 16.0D); cx++) {
+            for (int cx = OMathHelper.c((player.u - max) / 16.0D); cx <= OMathHelper.c((player.u + max) / 16.0D); cx++) {
+                // SRG for (int cz = OMathHelper.func_76128_c((player.field_70161_v - max) / 16.0D); cz <= OMathHelper.func_76128_c((player.field_70161_v + max) / 16.0D); cz++) {
+                for (int cz = OMathHelper.c((player.w - max) / 16.0D); cz <= OMathHelper.c((player.w + max) / 16.0D); cz++) {
+                    // SRG if (oworld.func_72916_c(cx, cz)) {
+                    if (oworld.c(cx, cz)) {
+                        // SRG activateChunk(oworld.func_72964_e(cx, cz), player);
+                        activateChunk(oworld.e(cx, cz), player);
+                    }
+                }
+            }
+        }
+    }
+
+    private void activateChunk(OChunk ochunk, OEntity player) {
+        // SRG List[] slices = ochunk.field_76645_j;
+        List[] slices = ochunk.j;
+
+        for (int n = 0; n < slices.length; n++) {
+            List entities = slices[n];
+
+            for (int m = 0; m < entities.size(); m++) {
+                OEntity oentity = (OEntity) entities.get(m);
+
+                if (oentity.activatedTick == tick) {
+                    continue;
+                }
+                int range = getRange(oentity);
+
+                // SRG if (range > 0 && Math.abs(oentity.field_70165_t - player.field_70165_t) <= range && Math.abs(oentity.field_70161_v - player.field_70161_v) <= range) {
+                if (range > 0 && Math.abs(oentity.u - player.u) <= range && Math.abs(oentity.w - player.w) <= range) {
+                    oentity.activatedTick = tick;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether the given entity gets a full tick this tick, and counts
+     * it as active or inactive.
+     *
+     * @param oentity
+     * @return <tt>true</tt> if the entity is active
+     */
+    public boolean isActive(OEntity oentity) {
+        // SRG if (oentity.activatedTick == tick || oentity.field_70154_o != null || oentity.field_70153_n != null || getRange(oentity) <= 0) {
+        if (oentity.activatedTick == tick || oentity.o != null || oentity.n != null || getRange(oentity) <= 0) {
+            active++;
+            return true;
+        }
+        inactive++;
+        return false;
+    }
+
+    /**
+     * Returns the number of entities that were ticked fully last tick.
+     *
+     * @return the number of active entities
+     */
+    public int getActiveCount() {
+        return lastActive;
+    }
+
+    /**
+     * Returns the number of entities that only got an inactive tick last tick.
+     *
+     * @return the number of inactive entities
+     */
+    public int getInactiveCount() {
+        return lastInactive;
+    }
+
+    /**
+     * Returns the activation range for the given entity, or 0 if it is always
+     * active.
+     */
+    private static int getRange(OEntity oentity) {
+        if (oentity instanceof OEntityPlayer || oentity instanceof OEntityArrow || oentity instanceof OEntityThrowable || oentity instanceof OEntityFireball || oentity instanceof OEntityFireworkRocket || oentity instanceof OEntityFallingSand || oentity instanceof OEntityTNTPrimed || oentity instanceof OEntityWeatherEffect || oentity instanceof OEntityDragon || oentity instanceof OEntityWither || oentity instanceof OEntityEnderCrystal) {
+            return 0;
+        }
+        return etc.getInstance().getActivationRange(getCategory(oentity));
+    }
+
+    /**
+     * Returns the category whose activation range applies to the given entity.
+     *
+     * @param oentity
+     * @return the category
+     */
+    public static Category getCategory(OEntity oentity) {
+        if (oentity instanceof OIMob) {
+            return Category.MONSTERS;
+        }
+        if (oentity instanceof OIAnimals || oentity instanceof OINpc) {
+            return Category.ANIMALS;
+        }
+        if (oentity instanceof OEntityItem || oentity instanceof OEntityXPOrb) {
+            return Category.ITEMS;
+        }
+        return Category.MISC;
+    }
+}
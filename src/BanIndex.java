@@ -0,0 +1,327 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+
+/**
+ * BanIndex.java - Looks up the active bans of a name or IP without going
+ * through the whole ban list.
+ *
+ * Name bans are keyed by lowercase name and IP bans by lowercase address.
+ * Every ban of a key is kept, so lifting one still finds the others.
+ * IPv4 range bans (e.g. <tt>10.0.0.0/8</tt>) are kept in a binary trie so a
+ * lookup costs at most 32 steps however many ranges are banned. Temporary bans are
+ * also queued by expiry time, so {@link #expire(int)} only looks at the bans
+ * that actually ran out.
+ *
+ * Not thread safe, {@link DataSource} guards it with its ban lock.
+ */
+public class BanIndex {
+
+    private final Map<String, List<Ban>>   names = new HashMap<String, List<Ban>>();
+    private final Map<String, List<Ban>>   ips = new HashMap<String, List<Ban>>();
+    private final RangeNode                ranges = new RangeNode();
+    private final PriorityQueue<Expiry>    expiries = new PriorityQueue<Expiry>();
+
+    /**
+     * Adds a ban. Bans that have already expired are ignored.
+     *
+     * @param ban
+     */
+    public void add(Ban ban) {
+        int now = (int) (System.currentTimeMillis() / 1000);
+
+        if (!isActive(ban, now)) {
+            return;
+        }
+        if (!ban.getName().isEmpty()) {
+            add(names, ban.getName().toLowerCase(), ban);
+        }
+        if (!ban.getIp().isEmpty()) {
+            RangeNode node = rangeNode(ban.getIp(), true);
+
+            if (node != null) {
+                if (node.bans == null) {
+                    node.bans = new ArrayList<Ban>(1);
+                }
+                if (!containsSame(node.bans, ban)) {
+                    node.bans.add(ban);
+                }
+            } else {
+                add(ips, ban.getIp().toLowerCase(), ban);
+            }
+        }
+        if (ban.getTimestamp() != -1) {
+            expiries.add(new Expiry(ban));
+        }
+    }
+
+    /**
+     * Removes a ban, e.g. because it was lifted early.
+     *
+     * @param ban
+     */
+    public void remove(Ban ban) {
+        if (!ban.getName().isEmpty()) {
+            remove(names, ban.getName().toLowerCase(), ban);
+        }
+        if (!ban.getIp().isEmpty()) {
+            RangeNode node = rangeNode(ban.getIp(), false);
+
+            if (node != null) {
+                if (node.bans != null) {
+                    removeSame(node.bans, ban);
+                    if (node.bans.isEmpty()) {
+                        node.bans = null;
+                    }
+                }
+            } else {
+                remove(ips, ban.getIp().toLowerCase(), ban);
+            }
+        }
+        // A queued expiry of this ban is skipped once it comes up
+    }
+
+    /**
+     * Returns the active ban of the given name or IP
+     *
+     * @param name
+     *            player name, may be <tt>null</tt>
+     * @param ip
+     *            IP address, may be <tt>null</tt>
+     * @return the ban, or <tt>null</tt> if neither is banned
+     */
+    public Ban find(String name, String ip) {
+        int now = (int) (System.currentTimeMillis() / 1000);
+        Ban ban;
+
+        if (name != null && !name.isEmpty()) {
+            ban = longest(names.get(name.toLowerCase()), now);
+            if (ban != null) {
+                return ban;
+            }
+        }
+        if (ip != null && !ip.isEmpty()) {
+            ban = longest(ips.get(ip.toLowerCase()), now);
+            if (ban != null) {
+                return ban;
+            }
+            ban = findRange(ip, now);
+            if (ban != null) {
+                return ban;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes all bans that expired at or before the given time.
+     *
+     * @param now
+     *            the time in seconds
+     * @return the bans that were removed
+     */
+    public List<Ban> expire(int now) {
+        List<Ban> expired = new ArrayList<Ban>();
+
+        while (!expiries.isEmpty() && expiries.peek().time <= now) {
+            Expiry expiry = expiries.poll();
+
+            // Skip bans whose timestamp changed since they were queued
+            if (expiry.ban.getTimestamp() == expiry.time) {
+                remove(expiry.ban);
+                expired.add(expiry.ban);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Returns the number of bans waiting to expire
+     *
+     * @return the number of temporary bans
+     */
+    public int pending() {
+        return expiries.size();
+    }
+
+    private static boolean isActive(Ban ban, int now) {
+        return ban.getTimestamp() == -1 || ban.getTimestamp() > now;
+    }
+
+    private static boolean outlasts(Ban ban, Ban other) {
+        return other == null || other.getTimestamp() != -1 && (ban.getTimestamp() == -1 || ban.getTimestamp() > other.getTimestamp());
+    }
+
+    /**
+     * Returns the active ban that lasts longest
+     *
+     * @param bans
+     *            the bans of a key, may be <tt>null</tt>
+     * @param now
+     * @return the ban, or <tt>null</tt> if none is active
+     */
+    private static Ban longest(List<Ban> bans, int now) {
+        Ban longest = null;
+
+        if (bans != null) {
+            for (Ban ban : bans) {
+                if (isActive(ban, now) && outlasts(ban, longest)) {
+                    longest = ban;
+                }
+            }
+        }
+        return longest;
+    }
+
+    private static void add(Map<String, List<Ban>> index, String key, Ban ban) {
+        List<Ban> bans = index.get(key);
+
+        if (bans == null) {
+            bans = new ArrayList<Ban>(1);
+            index.put(key, bans);
+        }
+        if (!containsSame(bans, ban)) {
+            bans.add(ban);
+        }
+    }
+
+    private static void remove(Map<String, List<Ban>> index, String key, Ban ban) {
+        List<Ban> bans = index.get(key);
+
+        if (bans != null) {
+            removeSame(bans, ban);
+            if (bans.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    // Ban.equals() compares name and IP only, so look for the very same ban
+    private static boolean containsSame(List<Ban> bans, Ban ban) {
+        for (Ban other : bans) {
+            if (other == ban) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void removeSame(List<Ban> bans, Ban ban) {
+        for (int i = 0; i < bans.size(); i++) {
+            if (bans.get(i) == ban) {
+                bans.remove(i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Parses an IPv4 address into its 32 bits
+     *
+     * @param ip
+     * @return the address, or -1 if it isn't an IPv4 address
+     */
+    private static long parseAddress(String ip) {
+        String[] parts = ip.split("\\.");
+
+        if (parts.length != 4) {
+            return -1;
+        }
+        long address = 0;
+
+        for (String part : parts) {
+            if (!part.matches("\\d{1,3}")) {
+                return -1;
+            }
+            int octet = Integer.parseInt(part);
+
+            if (octet > 255) {
+                return -1;
+            }
+            address = address << 8 | octet;
+        }
+        return address;
+    }
+
+    /**
+     * Returns the trie node of a range ban like <tt>10.0.0.0/8</tt>
+     *
+     * @param range
+     * @param create
+     *            whether to create missing nodes
+     * @return the node, or <tt>null</tt> if this isn't a range or the node
+     *         doesn't exist
+     */
+    private RangeNode rangeNode(String range, boolean create) {
+        int slash = range.indexOf('/');
+
+        if (slash == -1 || !range.substring(slash + 1).matches("\\d{1,2}")) {
+            return null;
+        }
+        long address = parseAddress(range.substring(0, slash));
+        int bits = Integer.parseInt(range.substring(slash + 1));
+
+        if (address == -1 || bits > 32) {
+            return null;
+        }
+        RangeNode node = ranges;
+
+        for (int i = 0; i < bits; i++) {
+            int bit = (int) (address >>> (31 - i)) & 1;
+
+            if (node.children[bit] == null) {
+                if (!create) {
+                    return null;
+                }
+                node.children[bit] = new RangeNode();
+            }
+            node = node.children[bit];
+        }
+        return node;
+    }
+
+    private Ban findRange(String ip, int now) {
+        long address = parseAddress(ip);
+
+        if (address == -1) {
+            return null;
+        }
+        RangeNode node = ranges;
+
+        for (int i = 0; node != null; i++) {
+            Ban ban = longest(node.bans, now);
+
+            if (ban != null) {
+                return ban;
+            }
+            if (i == 32) {
+                break;
+            }
+            node = node.children[(int) (address >>> (31 - i)) & 1];
+        }
+        return null;
+    }
+
+    private static class RangeNode {
+        final RangeNode[] children = new RangeNode[2];
+        List<Ban>         bans;
+    }
+
+    private static class Expiry implements Comparable<Expiry> {
+        final Ban ban;
+        final int time;
+
+        Expiry(Ban ban) {
+            this.ban = ban;
+            this.time = ban.getTimestamp();
+        }
+
+        @Override
+        public int compareTo(Expiry other) {
+            return time < other.time ? -1 : time == other.time ? 0 : 1;
+        }
+    }
+}
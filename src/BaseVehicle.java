@@ -5,6 +5,8 @@
  */
 public class BaseVehicle extends BaseEntity {
 
+    private Boolean hooks;
+
     /**
      * Creates an interface for a vehicle
      *
@@ -50,4 +52,39 @@ public class BaseVehicle extends BaseEntity {
         setRiddenByEntity(p);
     }
 
+    /**
+     * Returns whether the per-tick vehicle hooks (update, position change and
+     * collision) are called for this vehicle.
+     *
+     * @return true if they are called
+     * @see #setHooksEnabled(Boolean)
+     */
+    public boolean isHooksEnabled() {
+        // SRG return hooks != null ? hooks : this.entity.field_70170_p.vehicleHooks;
+        return hooks != null ? hooks : this.entity.q.vehicleHooks;
+    }
+
+    /**
+     * Sets whether the per-tick vehicle hooks (update, position change and
+     * collision) are called for this vehicle. Vehicles nobody listens to
+     * cost nothing extra to tick.
+     *
+     * @param enabled
+     *            <tt>true</tt> or <tt>false</tt>, or <tt>null</tt> to go by
+     *            {@link World#isVehicleHooks()}
+     */
+    public void setHooksEnabled(Boolean enabled) {
+        hooks = enabled;
+    }
+
+    /**
+     * Returns whether the given hook should be called for this vehicle.
+     *
+     * @param hook
+     * @return true if hooks are enabled for this vehicle and a plugin listens
+     */
+    boolean isHooked(PluginLoader.Hook hook) {
+        return isHooksEnabled() && etc.getLoader().hasListeners(hook);
+    }
+
 }
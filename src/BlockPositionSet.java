@@ -0,0 +1,168 @@
+import java.util.Arrays;
+
+
+/**
+ * BlockPositionSet.java - A set of block positions, each packed into a long.
+ *
+ * Meant for code that collects lots of positions, like explosions, where a
+ * HashSet of position objects would create an object (and a map entry) for
+ * every position. Positions are kept in the order they were added.
+ *
+ * Positions are packed as <tt>x:26 y:12 z:26</tt>, which covers the whole
+ * world.
+ */
+public class BlockPositionSet {
+
+    // Can't be a packed position: x would be -2^25, outside of the world
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[]            table;
+    private long[]            values;
+    private int               size;
+
+    public BlockPositionSet() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty set
+     *
+     * @param expected
+     *            the number of positions expected, to size the set
+     */
+    public BlockPositionSet(int expected) {
+        int capacity = 16;
+
+        while (capacity < expected * 2) {
+            capacity <<= 1;
+        }
+        table = new long[capacity];
+        Arrays.fill(table, EMPTY);
+        values = new long[Math.max(expected, 16)];
+    }
+
+    /**
+     * Adds a position
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @return <tt>false</tt> if it was in the set already
+     */
+    public boolean add(int x, int y, int z) {
+        return add(pack(x, y, z));
+    }
+
+    /**
+     * Adds a packed position
+     *
+     * @param position
+     * @return <tt>false</tt> if it was in the set already
+     */
+    public boolean add(long position) {
+        if ((size + 1) * 2 > table.length) {
+            grow();
+        }
+        int mask = table.length - 1;
+
+        for (int i = hash(position) & mask;; i = (i + 1) & mask) {
+            if (table[i] == EMPTY) {
+                table[i] = position;
+                break;
+            }
+            if (table[i] == position) {
+                return false;
+            }
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = position;
+        return true;
+    }
+
+    /**
+     * Checks whether a position is in the set
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @return true if it is
+     */
+    public boolean contains(int x, int y, int z) {
+        long position = pack(x, y, z);
+        int mask = table.length - 1;
+
+        for (int i = hash(position) & mask; table[i] != EMPTY; i = (i + 1) & mask) {
+            if (table[i] == position) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the packed position that was added as the <tt>index</tt>th
+     *
+     * @param index
+     * @return the packed position
+     */
+    public long get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(table, EMPTY);
+        size = 0;
+    }
+
+    private void grow() {
+        table = new long[table.length * 2];
+        Arrays.fill(table, EMPTY);
+        int mask = table.length - 1;
+
+        for (int n = 0; n < size; n++) {
+            int i = hash(values[n]) & mask;
+
+            while (table[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            table[i] = values[n];
+        }
+    }
+
+    private static int hash(long position) {
+        return (int) ((position * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+
+    /**
+     * Packs a position into a long
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @return the packed position
+     */
+    public static long pack(int x, int y, int z) {
+        return (long) (x & 0x3FFFFFF) << 38 | (long) (y & 0xFFF) << 26 | z & 0x3FFFFFF;
+    }
+
+    public static int unpackX(long position) {
+        return (int) (position >> 38);
+    }
+
+    public static int unpackY(long position) {
+        return (int) (position << 26 >> 52);
+    }
+
+    public static int unpackZ(long position) {
+        return (int) (position << 38 >> 38);
+    }
+}
@@ -1,6 +1,9 @@
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * This is a connection to the canarymod database. Use it for your database
@@ -14,6 +17,7 @@ public class CanaryConnection {
     private Connection con;
     private boolean leased;
     private long lastUsed;
+    private final Map<String, PreparedStatement> statementCache = new HashMap<String, PreparedStatement>();
 
     /**
      * Construct a new connection wrapper.
@@ -85,6 +89,12 @@ public class CanaryConnection {
      * @throws SQLException
      */
     public void close() throws SQLException {
+        synchronized (statementCache) {
+            for (PreparedStatement ps : statementCache.values()) {
+                ps.close();
+            }
+            statementCache.clear();
+        }
         con.close();
     }
 
@@ -102,4 +112,42 @@ public class CanaryConnection {
     public PreparedStatement prepareStatement(String statement, int returnKeys) throws SQLException {
         return con.prepareStatement(statement, returnKeys);
     }
+
+    /**
+     * Returns a prepared statement that is cached on this connection. The
+     * statement is kept open for as long as this connection lives, so do not
+     * close it yourself - only close the ResultSets you get from it.
+     *
+     * @param statement
+     * @return
+     * @throws SQLException
+     */
+    public PreparedStatement prepareCachedStatement(String statement) throws SQLException {
+        return prepareCachedStatement(statement, Statement.NO_GENERATED_KEYS);
+    }
+
+    /**
+     * Returns a prepared statement that is cached on this connection.
+     *
+     * @param statement
+     * @param returnKeys
+     * @return
+     * @throws SQLException
+     * @see #prepareCachedStatement(String)
+     */
+    public PreparedStatement prepareCachedStatement(String statement, int returnKeys) throws SQLException {
+        String key = returnKeys + ":" + statement;
+
+        synchronized (statementCache) {
+            PreparedStatement ps = statementCache.get(key);
+
+            if (ps == null || ps.isClosed()) {
+                ps = con.prepareStatement(statement, returnKeys);
+                statementCache.put(key, ps);
+            } else {
+                ps.clearParameters();
+            }
+            return ps;
+        }
+    }
 }
@@ -1,3 +1,6 @@
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Chunk.java - Interface to chunks, especially for generating chunks.
  * @author phi
@@ -113,6 +116,29 @@ public class Chunk {
         return chunk.a(x, y, z);
     }
 
+    /**
+     * Returns the block type and data at the specified location, packed as
+     * <tt>type &lt;&lt; 4 | data</tt>. See
+     * {@link World#getBlockIdAndData(int, int, int)}.
+     * @param x
+     * @param y
+     * @param z
+     * @return packed block type and data
+     */
+    public int getBlockIdAndDataAt(int x, int y, int z) {
+        if (y < 0 || y >= 256) {
+            return 0;
+        }
+        // SRG OExtendedBlockStorage section = chunk.func_76587_i()[y >> 4];
+        OExtendedBlockStorage section = chunk.i()[y >> 4];
+
+        if (section == null) {
+            return 0;
+        }
+        // SRG return section.func_76656_a(x & 15, y & 15, z & 15) << 4 | section.func_76665_b(x & 15, y & 15, z & 15);
+        return section.a(x & 15, y & 15, z & 15) << 4 | section.b(x & 15, y & 15, z & 15);
+    }
+
     /**
      * Sets the block data at the specified location
      * @param x
@@ -171,6 +197,23 @@ public class Chunk {
         etc.getMCServer().af().sendPacketToDimension(new OPacket51MapChunk(chunk, true, 0), getWorld().getName(), getWorld().getType().getId());
     }
 
+    /**
+     * Returns the entities in this chunk
+     *
+     * @return list of entities
+     */
+    public List<BaseEntity> getEntityList() {
+        List<BaseEntity> toRet = new ArrayList<BaseEntity>();
+
+        // SRG for (List<OEntity> slice : chunk.field_76645_j) {
+        for (List<OEntity> slice : (List<OEntity>[]) chunk.j) {
+            for (OEntity oentity : slice) {
+                toRet.add(EntityLists.wrap(oentity));
+            }
+        }
+        return toRet;
+    }
+
     /**
      * gets the wrapped chunk
      *
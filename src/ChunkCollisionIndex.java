@@ -0,0 +1,179 @@
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * ChunkCollisionIndex.java - The entities in a chunk other entities can't
+ * move through.
+ *
+ * When an entity moves, {@link OWorld#a(OEntity, OAxisAlignedBB)} collects
+ * the collision boxes of the blocks and entities around it. An entity only
+ * adds the boxes of other entities if it has a collision box of its own (it
+ * overrides {@link OEntity#E()}, like boats) or if it collides with the
+ * entities around it (it overrides {@link OEntity#g(OEntity)}, like boats
+ * and minecarts). Entities of the second kind still look at all entities
+ * around them. Everyone else only looks at the entities of the first kind,
+ * which are kept here per chunk, and gets the same boxes.
+ *
+ * Kept up to date by {@link OChunk} as entities enter and leave the chunk.
+ */
+public class ChunkCollisionIndex {
+
+    private static final Map<Class<?>, Boolean> solidClasses    = new ConcurrentHashMap<Class<?>, Boolean>();
+    private static final Map<Class<?>, Boolean> collidesClasses = new ConcurrentHashMap<Class<?>, Boolean>();
+    private final Set<OEntity>                  solids          = new LinkedHashSet<OEntity>();
+
+    public void add(OEntity oentity) {
+        if (isSolid(oentity)) {
+            solids.add(oentity);
+        }
+    }
+
+    public void remove(OEntity oentity) {
+        if (!solids.isEmpty()) {
+            solids.remove(oentity);
+        }
+    }
+
+    public int size() {
+        return solids.size();
+    }
+
+    /**
+     * Adds the collision boxes of the entities with a collision box of their
+     * own within <tt>range</tt> that intersect <tt>oaxisalignedbb</tt>.
+     * Looks in the same chunks and chunk slices as
+     * {@link OWorld#b(OEntity, OAxisAlignedBB)} would. Only gives the same
+     * boxes as {@link OWorld#a(OEntity, OAxisAlignedBB)} for entities that
+     * don't collide with other entities, see {@link #collidesWithEntities(OEntity)}.
+     *
+     * @param oworld
+     * @param oentity
+     *            the entity that moves
+     * @param range
+     *            the box to look for entities in
+     * @param oaxisalignedbb
+     *            the box the entity moves through
+     * @param boxes
+     *            the list to add the boxes to
+     */
+    public static void collect(OWorld oworld, OEntity oentity, OAxisAlignedBB range, OAxisAlignedBB oaxisalignedbb, List boxes) {
+        // SRG int minX = OMathHelper.func_76128_c((range.field_72340_a - 2.0D) / 16.0D);
+        int minX = OMathHelper.c((range.a - 2.0D) / 16.0D);
+        // SRG int maxX = OMathHelper.func_76128_c((range.field_72336_d + 2.0D) / 16.0D);
+        int maxX = OMathHelper.c((range.d + 2.0D) / 16.0D);
+        // SRG int minZ = OMathHelper.func_76128_c((range.field_72339_c - 2.0D) / 16.0D);
+        int minZ = OMathHelper.c((range.c - 2.0D) / 16.0D);
+        // SRG int maxZ = OMathHelper.func_76128_c((range.field_72334_f + 2.0D) / 16.0D);
+        int maxZ = OMathHelper.c((range.f + 2.0D) / 16.0D);
+        // SRG int minY = OMathHelper.func_76128_c((range.field_72338_b - 2.0D) / 16.0D);
+        int minY = OMathHelper.c((range.b - 2.0D) / 16.0D);
+        // SRG int maxY = OMathHelper.func_76128_c((range.field_72337_e + 2.0D) / 16.0D);
+        int maxY = OMathHelper.c((range.e + 2.0D) / 16.0D);
+
+        // Same clamping as the chunk does
+        if (minY < 0) {
+            minY = 0;
+            maxY = Math.max(minY, maxY);
+        }
+        if (maxY > 15) {
+            maxY = 15;
+            minY = Math.min(minY, maxY);
+        }
+        for (int cx = minX; cx <= maxX; cx++) {
+            for (int cz = minZ; cz <= maxZ; cz++) {
+                // SRG if (!oworld.func_72916_c(cx, cz)) {
+                if (!oworld.c(cx, cz)) {
+                    continue;
+                }
+                // SRG Set<OEntity> solids = oworld.func_72964_e(cx, cz).collisions.solids;
+                Set<OEntity> solids = oworld.e(cx, cz).collisions.solids;
+
+                if (solids.isEmpty()) {
+                    continue;
+                }
+                for (OEntity other : solids) {
+                    // SRG if (other == oentity || other.field_70162_ai < minY || other.field_70162_ai > maxY || !other.field_70121_D.func_72326_a(range)) {
+                    if (other == oentity || other.ak < minY || other.ak > maxY || !other.E.b(range)) {
+                        continue;
+                    }
+                    // SRG OAxisAlignedBB box = other.func_70046_E();
+                    OAxisAlignedBB box = other.E();
+
+                    // SRG if (box != null && box.func_72326_a(oaxisalignedbb)) {
+                    if (box != null && box.b(oaxisalignedbb)) {
+                        boxes.add(box);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds all entities within the given box, except for the given entity,
+     * to the given list, like {@link OWorld#b(OEntity, OAxisAlignedBB)} but
+     * without creating a new list.
+     *
+     * @param oworld
+     * @param oentity
+     * @param oaxisalignedbb
+     * @param list
+     */
+    public static void getEntities(OWorld oworld, OEntity oentity, OAxisAlignedBB oaxisalignedbb, List list) {
+        // SRG int minX = OMathHelper.func_76128_c((oaxisalignedbb.field_72340_a - 2.0D) / 16.0D);
+        int minX = OMathHelper.c((oaxisalignedbb.a - 2.0D) / 16.0D);
+        // SRG int maxX = OMathHelper.func_76128_c((oaxisalignedbb.field_72336_d + 2.0D) / 16.0D);
+        int maxX = OMathHelper.c((oaxisalignedbb.d + 2.0D) / 16.0D);
+        // SRG int minZ = OMathHelper.func_76128_c((oaxisalignedbb.field_72339_c - 2.0D) / 16.0D);
+        int minZ = OMathHelper.c((oaxisalignedbb.c - 2.0D) / 16.0D);
+        // SRG int maxZ = OMathHelper.func_76128_c((oaxisalignedbb.field_72334_f + 2.0D) / 16.0D);
+        int maxZ = OMathHelper.c((oaxisalignedbb.f + 2.0D) / 16.0D);
+
+        for (int cx = minX; cx <= maxX; cx++) {
+            for (int cz = minZ; cz <= maxZ; cz++) {
+                // SRG if (oworld.func_72916_c(cx, cz)) {
+                if (oworld.c(cx, cz)) {
+                    // SRG oworld.func_72964_e(cx, cz).func_76588_a(oentity, oaxisalignedbb, list, (OIEntitySelector) null);
+                    oworld.e(cx, cz).a(oentity, oaxisalignedbb, list, (OIEntitySelector) null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether the given entity can have a collision box of its own.
+     *
+     * @param oentity
+     * @return true if its class overrides {@link OEntity#E()}
+     */
+    public static boolean isSolid(OEntity oentity) {
+        return overrides(solidClasses, oentity.getClass(), "E");
+    }
+
+    /**
+     * Returns whether the given entity collides with the entities around it.
+     *
+     * @param oentity
+     * @return true if its class overrides {@link OEntity#g(OEntity)}
+     */
+    public static boolean collidesWithEntities(OEntity oentity) {
+        return overrides(collidesClasses, oentity.getClass(), "g", OEntity.class);
+    }
+
+    private static boolean overrides(Map<Class<?>, Boolean> cache, Class<?> clazz, String name, Class<?>... parameterTypes) {
+        Boolean overrides = cache.get(clazz);
+
+        if (overrides == null) {
+            try {
+                overrides = clazz.getMethod(name, parameterTypes).getDeclaringClass() != OEntity.class;
+            } catch (NoSuchMethodException e) {
+                overrides = true; // Can't tell, so play it safe
+            }
+            cache.put(clazz, overrides);
+        }
+        return overrides;
+    }
+}
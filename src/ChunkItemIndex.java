@@ -0,0 +1,224 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * ChunkItemIndex.java - The dropped items in a chunk.
+ *
+ * Kept up to date by {@link OChunk} as entities enter and leave the chunk,
+ * so code looking for dropped items, like hoppers, only has to look at the
+ * items instead of all entities in the chunk. Items are also kept by item id
+ * and damage value, so items looking for other items to merge with only look
+ * at items of the same kind.
+ */
+public class ChunkItemIndex {
+
+    private final Set<OEntityItem>               items  = new LinkedHashSet<OEntityItem>();
+    private final Map<Integer, Set<OEntityItem>> byType = new HashMap<Integer, Set<OEntityItem>>();
+
+    public void add(OEntityItem oentityitem) {
+        if (items.add(oentityitem)) {
+            oentityitem.index = this;
+            oentityitem.indexKey = key(oentityitem);
+            getType(oentityitem.indexKey, true).add(oentityitem);
+        }
+    }
+
+    public void remove(OEntityItem oentityitem) {
+        if (items.remove(oentityitem)) {
+            Set<OEntityItem> type = getType(oentityitem.indexKey, false);
+
+            if (type != null) {
+                type.remove(oentityitem);
+                if (type.isEmpty()) {
+                    byType.remove(oentityitem.indexKey);
+                }
+            }
+            if (oentityitem.index == this) {
+                oentityitem.index = null;
+            }
+        }
+    }
+
+    /**
+     * Files an item under its current item id and damage value. Called when
+     * the item stack of an item in this chunk is set.
+     *
+     * @param oentityitem
+     */
+    public void update(OEntityItem oentityitem) {
+        if (items.contains(oentityitem) && oentityitem.indexKey != key(oentityitem)) {
+            remove(oentityitem);
+            add(oentityitem);
+        }
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Returns the first living item in this chunk within the given box.
+     *
+     * @param oaxisalignedbb
+     * @return the item, or <tt>null</tt> if there is none
+     */
+    public OEntityItem getFirst(OAxisAlignedBB oaxisalignedbb) {
+        for (OEntityItem oentityitem : items) {
+            // SRG if (!oentityitem.field_70128_L && oentityitem.field_70121_D.func_72326_a(oaxisalignedbb)) {
+            if (!oentityitem.M && oentityitem.E.b(oaxisalignedbb)) {
+                return oentityitem;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Merges every living item in this chunk with the items of the same kind
+     * around it.
+     *
+     * @param radius
+     *            how far apart (horizontally) items may be to merge
+     */
+    public void merge(double radius) {
+        for (OEntityItem oentityitem : items.toArray(new OEntityItem[items.size()])) {
+            // SRG if (!oentityitem.field_70128_L) {
+            if (!oentityitem.M) {
+                oentityitem.mergeNearby(radius);
+            }
+        }
+    }
+
+    /**
+     * Lets the oldest items in this chunk despawn on their next tick, until
+     * no more than <tt>cap</tt> living items would be left.
+     *
+     * @param cap
+     *            the number of items to keep
+     */
+    public void despawnOverCap(int cap) {
+        List<OEntityItem> living = new ArrayList<OEntityItem>(items.size());
+
+        for (OEntityItem oentityitem : items) {
+            // SRG if (!oentityitem.field_70128_L) {
+            if (!oentityitem.M) {
+                living.add(oentityitem);
+            }
+        }
+        if (living.size() <= cap) {
+            return;
+        }
+        Collections.sort(living, new Comparator<OEntityItem>() {
+
+            @Override
+            public int compare(OEntityItem o1, OEntityItem o2) {
+                // SRG return o2.field_70292_b - o1.field_70292_b;
+                return o2.a - o1.a;
+            }
+        });
+        for (int i = 0; i < living.size() - cap; i++) {
+            living.get(i).despawnEarly();
+        }
+    }
+
+    /**
+     * Returns the items of the given kind
+     */
+    private Set<OEntityItem> getType(int key, boolean create) {
+        Set<OEntityItem> type = byType.get(key);
+
+        if (type == null && create) {
+            type = new LinkedHashSet<OEntityItem>();
+            byType.put(key, type);
+        }
+        return type;
+    }
+
+    /**
+     * Returns the living items of the same kind as the given item within the
+     * given box in the given world, except for that item itself. Looks in the
+     * same chunks as {@link OWorld#a(Class, OAxisAlignedBB)} would.
+     *
+     * @param oworld
+     * @param oentityitem
+     * @param oaxisalignedbb
+     * @return the items
+     */
+    public static List<OEntityItem> getSameType(OWorld oworld, OEntityItem oentityitem, OAxisAlignedBB oaxisalignedbb) {
+        List<OEntityItem> result = new ArrayList<OEntityItem>();
+        int key = key(oentityitem);
+
+        // SRG for (int cx = OMathHelper.func_76128_c((oaxisalignedbb.field_72340_a - 2.0D) / 16.0D); cx <= OMathHelper.func_76128_c((oaxisalignedbb.field_72336_d + 2.0D) / 16.0D); cx++) {
+        for (int cx = OMathHelper.c((oaxisalignedbb.a - 2.0D) / 16.0D); cx <= OMathHelper.c((oaxisalignedbb.d + 2.0D) / 16.0D); cx++) {
+            // SRG for (int cz = OMathHelper.func_76128_c((oaxisalignedbb.field_72339_c - 2.0D) / 16.0D); cz <= OMathHelper.func_76128_c((oaxisalignedbb.field_72334_f + 2.0D) / 16.0D); cz++) {
+            for (int cz = OMathHelper.c((oaxisalignedbb.c - 2.0D) / 16.0D); cz <= OMathHelper.c((oaxisalignedbb.f + 2.0D) / 16.0D); cz++) {
+                // SRG if (!oworld.func_72916_c(cx, cz)) {
+                if (!oworld.c(cx, cz)) {
+                    continue;
+                }
+                // SRG Set<OEntityItem> type = oworld.func_72964_e(cx, cz).items.getType(key, false);
+                Set<OEntityItem> type = oworld.e(cx, cz).items.getType(key, false);
+
+                if (type == null) {
+                    continue;
+                }
+                for (OEntityItem other : type) {
+                    // SRG if (other != oentityitem && !other.field_70128_L && other.field_70121_D.func_72326_a(oaxisalignedbb)) {
+                    if (other != oentityitem && !other.M && other.E.b(oaxisalignedbb)) {
+                        result.add(other);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the first living item within the given box in the given world.
+     * Looks in the same chunks as
+     * {@link OWorld#a(Class, OAxisAlignedBB, OIEntitySelector)} would.
+     *
+     * @param oworld
+     * @param oaxisalignedbb
+     * @return the item, or <tt>null</tt> if there is none
+     */
+    public static OEntityItem getFirst(OWorld oworld, OAxisAlignedBB oaxisalignedbb) {
+        // SRG int minX = OMathHelper.func_76128_c((oaxisalignedbb.field_72340_a - 2.0D) / 16.0D);
+        int minX = OMathHelper.c((oaxisalignedbb.a - 2.0D) / 16.0D);
+        // SRG int maxX = OMathHelper.func_76128_c((oaxisalignedbb.field_72336_d + 2.0D) / 16.0D);
+        int maxX = OMathHelper.c((oaxisalignedbb.d + 2.0D) / 16.0D);
+        // SRG int minZ = OMathHelper.func_76128_c((oaxisalignedbb.field_72339_c - 2.0D) / 16.0D);
+        int minZ = OMathHelper.c((oaxisalignedbb.c - 2.0D) / 16.0D);
+        // SRG int maxZ = OMathHelper.func_76128_c((oaxisalignedbb.field_72334_f + 2.0D) / 16.0D);
+        int maxZ = OMathHelper.c((oaxisalignedbb.f + 2.0D) / 16.0D);
+
+        for (int cx = minX; cx <= maxX; cx++) {
+            for (int cz = minZ; cz <= maxZ; cz++) {
+                // SRG if (oworld.func_72916_c(cx, cz)) {
+                if (oworld.c(cx, cz)) {
+                    // SRG OEntityItem oentityitem = oworld.func_72964_e(cx, cz).items.getFirst(oaxisalignedbb);
+                    OEntityItem oentityitem = oworld.e(cx, cz).items.getFirst(oaxisalignedbb);
+
+                    if (oentityitem != null) {
+                        return oentityitem;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static int key(OEntityItem oentityitem) {
+        // SRG OItemStack oitemstack = oentityitem.func_92059_d();
+        OItemStack oitemstack = oentityitem.d();
+
+        // SRG return oitemstack.field_77993_c << 16 | oitemstack.func_77960_j() & 0xFFFF;
+        return oitemstack.d << 16 | oitemstack.k() & 0xFFFF;
+    }
+}
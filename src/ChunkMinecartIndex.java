@@ -0,0 +1,70 @@
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+
+/**
+ * ChunkMinecartIndex.java - The minecarts in a chunk.
+ *
+ * Kept up to date by {@link OChunk} as entities enter and leave the chunk,
+ * so minecarts looking for minecarts to bump into only have to look at the
+ * minecarts on the rails around them instead of all entities there.
+ */
+public class ChunkMinecartIndex {
+
+    private final Set<OEntityMinecart> minecarts = new LinkedHashSet<OEntityMinecart>();
+
+    public void add(OEntityMinecart oentityminecart) {
+        minecarts.add(oentityminecart);
+    }
+
+    public void remove(OEntityMinecart oentityminecart) {
+        minecarts.remove(oentityminecart);
+    }
+
+    public int size() {
+        return minecarts.size();
+    }
+
+    /**
+     * Lets the given minecart push every other living minecart within the
+     * given box in its world. Looks in the same chunks as
+     * {@link OWorld#b(OEntity, OAxisAlignedBB)} would.
+     *
+     * @param oentityminecart
+     * @param oaxisalignedbb
+     */
+    public static void collide(OEntityMinecart oentityminecart, OAxisAlignedBB oaxisalignedbb) {
+        // SRG OWorld oworld = oentityminecart.field_70170_p;
+        OWorld oworld = oentityminecart.q;
+        // SRG int minX = OMathHelper.func_76128_c((oaxisalignedbb.field_72340_a - 2.0D) / 16.0D);
+        int minX = OMathHelper.c((oaxisalignedbb.a - 2.0D) / 16.0D);
+        // SRG int maxX = OMathHelper.func_76128_c((oaxisalignedbb.field_72336_d + 2.0D) / 16.0D);
+        int maxX = OMathHelper.c((oaxisalignedbb.d + 2.0D) / 16.0D);
+        // SRG int minZ = OMathHelper.func_76128_c((oaxisalignedbb.field_72339_c - 2.0D) / 16.0D);
+        int minZ = OMathHelper.c((oaxisalignedbb.c - 2.0D) / 16.0D);
+        // SRG int maxZ = OMathHelper.func_76128_c((oaxisalignedbb.field_72334_f + 2.0D) / 16.0D);
+        int maxZ = OMathHelper.c((oaxisalignedbb.f + 2.0D) / 16.0D);
+
+        for (int cx = minX; cx <= maxX; cx++) {
+            for (int cz = minZ; cz <= maxZ; cz++) {
+                // SRG if (!oworld.func_72916_c(cx, cz)) {
+                if (!oworld.c(cx, cz)) {
+                    continue;
+                }
+                // SRG ChunkMinecartIndex index = oworld.func_72964_e(cx, cz).minecarts;
+                ChunkMinecartIndex index = oworld.e(cx, cz).minecarts;
+
+                if (index.minecarts.isEmpty()) {
+                    continue;
+                }
+                for (OEntityMinecart other : index.minecarts) {
+                    // SRG if (other != oentityminecart && !other.field_70128_L && other.field_70121_D.func_72326_a(oaxisalignedbb)) {
+                    if (other != oentityminecart && !other.M && other.E.b(oaxisalignedbb)) {
+                        // SRG other.func_70108_f(oentityminecart);
+                        other.f((OEntity) oentityminecart);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -108,6 +108,20 @@ public class ConnectionService {
         return cconn;
     }
 
+    /**
+     * Get a CanaryConnection that is leased to the caller, so concurrent
+     * callers each get their own connection. Call
+     * {@link CanaryConnection#release()} when done with it.
+     * @return
+     * @throws SQLException
+     */
+    public synchronized CanaryConnection leaseConnection() throws SQLException {
+        CanaryConnection c = getConnection();
+
+        c.getConnection();
+        return c;
+    }
+
     /**
      * Method is called from the connection guard to keep the connections clean
      *
@@ -1,8 +1,15 @@
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -19,6 +26,7 @@ public abstract class DataSource {
     protected List<Warp>           homes = new ArrayList<Warp>();
     protected List<Warp>           warps = new ArrayList<Warp>();
     protected List<Ban>            bans = new ArrayList<Ban>();
+    protected BanIndex             banIndex = new BanIndex();
     protected List<String>         mutedPlayers = new ArrayList<String>();
     protected Map<String, Integer> items = new HashMap<String, Integer>();
     protected List<Integer>        enderBlocks = new ArrayList<Integer>();
@@ -27,11 +35,134 @@ public abstract class DataSource {
     protected final Object         groupLock = new Object(), kitLock = new Object(), banLock = new Object(), homeLock = new Object();
     protected final Object         warpLock = new Object(), itemLock = new Object(), enderBlocksLock = new Object(), antiXRayBlocksLock = new Object();
 
+    private static final int       BAN_EXPIRY_INTERVAL = 30; // seconds
+    private static final ScheduledExecutorService banExpiryService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Ban expiry");
+
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private ScheduledFuture<?>     banExpiry;
+    private final Set<Table>       changes = EnumSet.noneOf(Table.class);
+
+    /**
+     * The lists a data source keeps in memory and changes on writes.
+     */
+    public enum Table {
+        GROUPS, KITS, HOMES, WARPS, BANS, MUTED_PLAYERS
+    }
+
     /**
      * Initializes the data source
      */
     abstract public void initialize();
 
+    /**
+     * Writes out any changes the data source still has queued. Called when
+     * the server stops.
+     */
+    public void flush() {}
+
+    /**
+     * Returns a new, not yet initialized data source that reads from the same
+     * place as this one. Reloads initialize it in the background and then
+     * replace this data source with it.
+     *
+     * @return the new data source, or <tt>null</tt> if this data source can
+     *         only be reloaded in place
+     */
+    public DataSource newInstance() {
+        return null;
+    }
+
+    /**
+     * Stops the background work of this data source after it was replaced.
+     */
+    public void close() {
+        if (banExpiry != null) {
+            banExpiry.cancel(false);
+        }
+    }
+
+    /**
+     * Notes that one of the lists kept in memory was written to. Data sources
+     * call this on every write, so a reload can pick up what was written
+     * while the replacement was being loaded.
+     *
+     * @param table
+     *            the list written to
+     */
+    protected void changed(Table table) {
+        synchronized (changes) {
+            changes.add(table);
+        }
+    }
+
+    /**
+     * Returns the lists written to since the last call, and forgets them.
+     *
+     * @return the changed lists
+     */
+    Set<Table> takeChanges() {
+        synchronized (changes) {
+            Set<Table> taken = EnumSet.copyOf(changes);
+
+            changes.clear();
+            return taken;
+        }
+    }
+
+    /**
+     * Loads the given list again
+     *
+     * @param table
+     */
+    void load(Table table) {
+        switch (table) {
+            case GROUPS:
+                loadGroups();
+                break;
+            case KITS:
+                loadKits();
+                break;
+            case HOMES:
+                loadHomes();
+                break;
+            case WARPS:
+                loadWarps();
+                break;
+            case BANS:
+                loadBanList();
+                break;
+            case MUTED_PLAYERS:
+                loadMutedPlayers();
+                break;
+        }
+    }
+
+    /**
+     * Lets endermen pick up exactly the blocks on the enderman blocks list.
+     * Only the data source in use does this, so one loaded in the background
+     * by a reload leaves the running server alone until it replaces it.
+     */
+    protected void applyEnderBlocks() {
+        if (etc.getDataSource() != this) {
+            return;
+        }
+        synchronized (enderBlocksLock) {
+            for (int i = 0; i < 256; i += 1) {
+                OEntityEnderman.setHoldable(i, false);
+            }
+            for (Integer id : enderBlocks) {
+                OEntityEnderman.setHoldable(id, true);
+            }
+        }
+    }
+
     /**
      * Loads all groups
      */
@@ -62,6 +193,29 @@ public abstract class DataSource {
      */
     abstract public void loadBanList();
 
+    /**
+     * Rebuilds the ban index from the ban list. Call this with the ban lock
+     * held after (re)loading the ban list.
+     */
+    protected void indexBans() {
+        banIndex = new BanIndex();
+        for (Ban ban : bans) {
+            banIndex.add(ban);
+        }
+
+        if (banExpiry == null) {
+            banExpiry = banExpiryService.scheduleWithFixedDelay(new Runnable() {
+
+                @Override
+                public void run() {
+                    synchronized (banLock) {
+                        banIndex.expire((int) (System.currentTimeMillis() / 1000));
+                    }
+                }
+            }, BAN_EXPIRY_INTERVAL, BAN_EXPIRY_INTERVAL, TimeUnit.SECONDS);
+        }
+    }
+
     /**
      * Loads the list of muted players
      */
@@ -107,6 +261,17 @@ public abstract class DataSource {
      */
     abstract public Player getPlayer(String name);
 
+    /**
+     * Returns everything needed to check the login of the specified user.
+     * Data sources that can fetch this in a single lookup should override this.
+     *
+     * @param name
+     * @return login data
+     */
+    public LoginData getLoginData(String name) {
+        return new LoginData(getPlayer(name), doesPlayerExist(name), isUserOnWhitelist(name), isUserOnReserveList(name));
+    }
+
     /**
      * Checks to see if the specified group exists
      *
@@ -466,18 +631,7 @@ public abstract class DataSource {
      * @return true if either name or IP is on the ban list
      */
     public boolean isOnBanList(String player, String ip) {
-        synchronized (banLock) {
-            for (Ban ban : bans) {
-                if ((ban.getName().equalsIgnoreCase(player)
-                        || ban.getIp().equalsIgnoreCase(ip))
-                        && (ban.getTimestamp() == -1
-                        || ban.getTimestamp()
-                                > (int) (System.currentTimeMillis() / 1000))) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return getBan(player, ip) != null;
     }
 
     /**
@@ -491,17 +645,8 @@ public abstract class DataSource {
      */
     public Ban getBan(String player, String ip) {
         synchronized (banLock) {
-            for (Ban ban : bans) {
-                if ((ban.getName().equalsIgnoreCase(player)
-                        || ban.getIp().equalsIgnoreCase(ip))
-                        && (ban.getTimestamp() == -1
-                        || ban.getTimestamp()
-                                > (int) (System.currentTimeMillis() / 1000))) {
-                    return ban;
-                }
-            }
+            return banIndex.find(player, ip);
         }
-        return null;
     }
 
     /**
@@ -0,0 +1,295 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * EditSession.java - Changes lots of blocks at once.
+ *
+ * Block changes are collected per chunk and written straight into the chunk's
+ * block arrays when the session is committed. Compared to
+ * {@link World#setBlockAt(int, int, int, int)} this skips, per block: the
+ * BLOCK_UPDATE hook, block physics and neighbour updates, the light update
+ * and the block change packet. Instead every chunk gets its sky light and
+ * height map rebuilt once and is resent to the players that can see it.
+ *
+ * Tile entities are created and removed as needed. Block light is updated
+ * for blocks whose light level changed; call {@link #setRelight(boolean)} to
+ * also update it where blocks that let light through were changed into ones
+ * that don't, and back.
+ *
+ * Sessions must be used on the server thread and are not reusable after a
+ * commit.
+ *
+ * @see World#editSession()
+ */
+public class EditSession {
+
+    private final World                   world;
+    private final Map<Long, ChunkEdits>   chunks = new LinkedHashMap<Long, ChunkEdits>();
+    private int                           size;
+    private boolean                       relight;
+
+    EditSession(World world) {
+        this.world = world;
+    }
+
+    /**
+     * Queues a block type change. The block data is reset to 0.
+     *
+     * @param blockType
+     * @param x
+     * @param y
+     * @param z
+     */
+    public void setBlockAt(int blockType, int x, int y, int z) {
+        setBlockAt(blockType, 0, x, y, z);
+    }
+
+    /**
+     * Queues a block change
+     *
+     * @param blockType
+     * @param data
+     * @param x
+     * @param y
+     * @param z
+     */
+    public void setBlockAt(int blockType, int data, int x, int y, int z) {
+        if (y < 0 || y >= 256 || blockType < 0 || blockType >= 4096) {
+            return;
+        }
+        long key = (long) (x >> 4) << 32 | (z >> 4) & 0xFFFFFFFFL;
+        ChunkEdits edits = chunks.get(key);
+
+        if (edits == null) {
+            edits = new ChunkEdits(x >> 4, z >> 4);
+            chunks.put(key, edits);
+        }
+        edits.add((y << 8 | (z & 15) << 4 | (x & 15)) << 16 | blockType << 4 | (data & 15));
+        size++;
+    }
+
+    /**
+     * Queues a block change
+     *
+     * @param block
+     */
+    public void setBlock(Block block) {
+        setBlockAt(block.getType(), block.getData(), block.getX(), block.getY(), block.getZ());
+    }
+
+    /**
+     * Returns the block type at the given position, read directly from the
+     * chunk. Changes queued in this session aren't visible until they are
+     * committed.
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @return the block type
+     */
+    public int getBlockIdAt(int x, int y, int z) {
+        if (y < 0 || y >= 256) {
+            return 0;
+        }
+        // SRG OExtendedBlockStorage section = world.getWorld().func_72964_e(x >> 4, z >> 4).func_76587_i()[y >> 4];
+        OExtendedBlockStorage section = world.getWorld().e(x >> 4, z >> 4).i()[y >> 4];
+
+        // SRG return section == null ? 0 : section.func_76656_a(x & 15, y & 15, z & 15);
+        return section == null ? 0 : section.a(x & 15, y & 15, z & 15);
+    }
+
+    /**
+     * Returns the block data at the given position, read directly from the
+     * chunk. Changes queued in this session aren't visible until they are
+     * committed.
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @return the block data
+     */
+    public int getBlockData(int x, int y, int z) {
+        if (y < 0 || y >= 256) {
+            return 0;
+        }
+        // SRG OExtendedBlockStorage section = world.getWorld().func_72964_e(x >> 4, z >> 4).func_76587_i()[y >> 4];
+        OExtendedBlockStorage section = world.getWorld().e(x >> 4, z >> 4).i()[y >> 4];
+
+        // SRG return section == null ? 0 : section.func_76665_b(x & 15, y & 15, z & 15);
+        return section == null ? 0 : section.b(x & 15, y & 15, z & 15);
+    }
+
+    /**
+     * Sets whether block light is also updated where a block's opacity
+     * changed. This is exact but much slower for large edits.
+     *
+     * @param relight
+     */
+    public void setRelight(boolean relight) {
+        this.relight = relight;
+    }
+
+    /**
+     * Returns the number of queued block changes
+     *
+     * @return the number of changes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Applies all queued changes now.
+     */
+    public void commit() {
+        for (ChunkEdits edits : chunks.values()) {
+            apply(edits);
+        }
+        chunks.clear();
+        size = 0;
+    }
+
+    /**
+     * Applies the queued changes spread over several ticks, so big edits
+     * don't stall the server.
+     *
+     * @param chunksPerTick
+     *            the number of chunks to change every tick
+     * @param done
+     *            run on the server thread after the last chunk was changed,
+     *            may be <tt>null</tt>
+     * @throws IllegalArgumentException
+     *             if <tt>chunksPerTick</tt> is less than 1
+     */
+    public void commit(final int chunksPerTick, final Runnable done) {
+        if (chunksPerTick < 1) {
+            throw new IllegalArgumentException("chunksPerTick must be at least 1, got " + chunksPerTick);
+        }
+        final Iterator<ChunkEdits> pending = new ArrayList<ChunkEdits>(chunks.values()).iterator();
+
+        chunks.clear();
+        size = 0;
+        new Runnable() {
+
+            @Override
+            public void run() {
+                for (int i = 0; i < chunksPerTick && pending.hasNext(); i++) {
+                    apply(pending.next());
+                }
+                if (pending.hasNext()) {
+                    // A delay of 0 would run again in the same tick
+                    etc.getServer().addToServerQueue(this, 50L);
+                } else if (done != null) {
+                    done.run();
+                }
+            }
+        }.run();
+    }
+
+    private void apply(ChunkEdits edits) {
+        OWorldServer oworld = world.getWorld();
+        // SRG OChunk ochunk = oworld.func_72964_e(edits.x, edits.z);
+        OChunk ochunk = oworld.e(edits.x, edits.z);
+        // SRG OExtendedBlockStorage[] sections = ochunk.func_76587_i();
+        OExtendedBlockStorage[] sections = ochunk.i();
+        List<int[]> lightUpdates = new ArrayList<int[]>();
+        int sectionMask = 0;
+
+        for (int i = 0; i < edits.size; i++) {
+            int edit = edits.edits[i];
+            int index = edit >>> 16;
+            int x = index & 15, z = index >> 4 & 15, y = index >> 8;
+            int id = edit >> 4 & 4095, data = edit & 15;
+            int bx = edits.x << 4 | x, bz = edits.z << 4 | z;
+            OExtendedBlockStorage section = sections[y >> 4];
+
+            if (section == null) {
+                if (id == 0) {
+                    continue;
+                }
+                // SRG section = sections[y >> 4] = new OExtendedBlockStorage(y >> 4 << 4, !oworld.field_73011_w.field_76576_e);
+                section = sections[y >> 4] = new OExtendedBlockStorage(y >> 4 << 4, !oworld.t.g);
+            }
+            int oldId = section.a(x, y & 15, z);
+
+            if (oldId != id) {
+                if (OBlock.s[oldId] instanceof OITileEntityProvider) {
+                    // SRG oworld.func_72932_q(bx, y, bz);
+                    oworld.s(bx, y, bz);
+                }
+                section.a(x, y & 15, z, id);
+            }
+            section.b(x, y & 15, z, data);
+            if (oldId != id && OBlock.s[id] instanceof OITileEntityProvider) {
+                OTileEntity otileentity = ((OITileEntityProvider) OBlock.s[id]).b(oworld);
+
+                if (otileentity != null) {
+                    // SRG oworld.func_72837_a(bx, y, bz, otileentity);
+                    oworld.a(bx, y, bz, otileentity);
+                }
+            }
+            if (OBlock.w[oldId] != OBlock.w[id] || relight && OBlock.u[oldId] != OBlock.u[id]) {
+                lightUpdates.add(new int[] { bx, y, bz });
+            }
+            sectionMask |= 1 << (y >> 4);
+        }
+        if (sectionMask == 0) {
+            return;
+        }
+
+        // Height map and sky light of the whole chunk in one go
+        // SRG ochunk.func_76603_b();
+        ochunk.b();
+        for (int[] pos : lightUpdates) {
+            // SRG oworld.func_72969_x(pos[0], pos[1], pos[2]);
+            oworld.A(pos[0], pos[1], pos[2]);
+        }
+        // SRG ochunk.field_76643_l = true;
+        ochunk.l = true;
+
+        // One packet with the changed sections instead of one per block
+        // SRG OPlayerManager playerManager = oworld.func_73040_p();
+        OPlayerManager playerManager = oworld.s();
+
+        playerManager.sendPacketToChunk(new OPacket51MapChunk(ochunk, false, sectionMask), edits.x << 4, 0, edits.z << 4);
+        // SRG for (Object value : ochunk.field_76648_i.values()) {
+        for (Object value : ochunk.i.values()) {
+            OTileEntity otileentity = (OTileEntity) value;
+
+            if ((sectionMask & 1 << (otileentity.m >> 4)) != 0) {
+                OPacket opacket = otileentity.m();
+
+                if (opacket != null) {
+                    playerManager.sendPacketToChunk(opacket, edits.x << 4, 0, edits.z << 4);
+                }
+            }
+        }
+    }
+
+    /**
+     * The queued changes of one chunk, packed as
+     * <tt>y:8 z:4 x:4 type:12 data:4</tt>.
+     */
+    private static class ChunkEdits {
+        final int x, z;
+        int[]     edits = new int[64];
+        int       size;
+
+        ChunkEdits(int x, int z) {
+            this.x = x;
+            this.z = z;
+        }
+
+        void add(int edit) {
+            if (size == edits.length) {
+                edits = Arrays.copyOf(edits, size * 2);
+            }
+            edits[size++] = edit;
+        }
+    }
+}
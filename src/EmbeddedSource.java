@@ -0,0 +1,711 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.logging.Level;
+
+
+/**
+ * EmbeddedSource.java - Keeps users, groups and such in an
+ * {@link EmbeddedStore}, a single crash safe file next to the server. Unlike
+ * the flat files, changing one record only appends that record.
+ */
+public class EmbeddedSource extends DataSource {
+
+    private static final String USERS = "users", GROUPS = "groups", KITS = "kits", HOMES = "homes", WARPS = "warps", ITEMS = "items";
+    private static final String WHITELIST = "whitelist", RESERVELIST = "reservelist", BANS = "bans", ENDERBLOCKS = "enderblocks";
+    private static final String ANTIXRAYBLOCKS = "antixrayblocks", MUTED_PLAYERS = "muted_players";
+
+    private EmbeddedStore store;
+    private int           nextBanId = 1;
+
+    @Override
+    public void initialize() {
+        if (store == null) {
+            File location = new File(etc.getInstance().getEmbeddedDbLocation());
+
+            try {
+                store = new EmbeddedStore(location, etc.getInstance().isEmbeddedDbSync());
+            } catch (IOException ex) {
+                log.log(Level.SEVERE, String.format("Unable to open %s", location), ex);
+                return;
+            }
+            if (store.isEmpty()) {
+                log.info(String.format("%s is empty, importing the flat files", location));
+                importFlatFile();
+                return;
+            }
+        }
+        loadAll();
+    }
+
+    @Override
+    public DataSource newInstance() {
+        EmbeddedSource copy = new EmbeddedSource();
+
+        // The store is already in memory, share it instead of opening the file twice
+        copy.store = store;
+        return copy;
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        DataSource current = etc.getDataSource();
+
+        // A reload hands the store on to the next embedded source, which still needs it
+        if (store == null || current instanceof EmbeddedSource && ((EmbeddedSource) current).store == store) {
+            return;
+        }
+        try {
+            store.close();
+        } catch (IOException ex) {
+            log.log(Level.SEVERE, "Unable to close " + etc.getInstance().getEmbeddedDbLocation(), ex);
+        }
+    }
+
+    private void loadAll() {
+        loadGroups();
+        loadKits();
+        loadHomes();
+        loadWarps();
+        loadItems();
+        loadEnderBlocks();
+        loadAntiXRayBlocks();
+        loadMutedPlayers();
+        loadBanList();
+    }
+
+    /**
+     * Writes a transaction, logging failures like the other data sources do.
+     *
+     * @param transaction
+     * @param what
+     *            what is being written, for the log
+     * @return true if written
+     */
+    private boolean commit(EmbeddedStore.Transaction transaction, String what) {
+        try {
+            transaction.commit();
+            return true;
+        } catch (IOException ex) {
+            log.log(Level.SEVERE, "Unable to write " + what, ex);
+            return false;
+        }
+    }
+
+    private static String restrictionsOf(Group group) {
+        return group.Administrator ? "2" : group.IgnoreRestrictions ? "1" : !group.CanModifyWorld ? "-1" : "0";
+    }
+
+    private static String[] warpFields(Warp warp) {
+        return new String[] { warp.Name, String.valueOf(warp.Location.x), String.valueOf(warp.Location.y), String.valueOf(warp.Location.z),
+                String.valueOf(warp.Location.rotX), String.valueOf(warp.Location.rotY), String.valueOf(warp.Location.dimension), warp.Location.world, warp.Group };
+    }
+
+    private static Warp readWarp(String[] row) {
+        Location location = new Location();
+
+        location.x = Double.parseDouble(row[1]);
+        location.y = Double.parseDouble(row[2]);
+        location.z = Double.parseDouble(row[3]);
+        location.rotX = Float.parseFloat(row[4]);
+        location.rotY = Float.parseFloat(row[5]);
+        location.dimension = Integer.parseInt(row[6]);
+        location.world = row[7];
+        if (location.world.isEmpty()) {
+            // Don't use Server.getDefaultWorld().getName() here as the worlds may not yet be loaded.
+            location.world = etc.getMCServer().J();
+        }
+        Warp warp = new Warp();
+
+        warp.Name = row[0];
+        warp.Location = location;
+        warp.Group = row[8];
+        return warp;
+    }
+
+    private static String[] playerFields(String name, Player player) {
+        return new String[] { name, etc.combineSplit(0, player.getGroups(), ","), String.valueOf(player.getRestrictions()), player.getPrefix(),
+                etc.combineSplit(0, player.getCommands(), ","), player.getIps() != null ? etc.combineSplit(0, player.getIps(), ",") : "" };
+    }
+
+    private static String[] groupFields(Group group) {
+        return new String[] { group.Name, group.Prefix, etc.combineSplit(0, group.Commands, ","),
+                group.InheritedGroups != null ? etc.combineSplit(0, group.InheritedGroups, ",") : "", restrictionsOf(group), group.DefaultGroup ? "1" : "0" };
+    }
+
+    private static String[] kitFields(Kit kit) {
+        StringBuilder ids = new StringBuilder();
+
+        for (Map.Entry<String, Integer> id : kit.IDs.entrySet()) {
+            if (ids.length() > 0) {
+                ids.append(",");
+            }
+            ids.append(id.getKey()).append(" ").append(id.getValue());
+        }
+        return new String[] { kit.Name, ids.toString(), String.valueOf(kit.Delay), kit.Group };
+    }
+
+    private static String[] banFields(Ban ban) {
+        return new String[] { String.valueOf(ban.getId()), ban.getName(), ban.getIp(), ban.getReason(), String.valueOf(ban.getTimestamp()) };
+    }
+
+    @Override
+    public void loadGroups() {
+        synchronized (groupLock) {
+            groups = new ArrayList<Group>();
+            for (String[] row : store.values(GROUPS)) {
+                Group group = new Group();
+
+                group.Name = row[0];
+                group.Prefix = row[1];
+                group.Commands = row[2].split(",");
+                group.InheritedGroups = row[3].split(",");
+                group.Administrator = row[4].equals("2");
+                group.IgnoreRestrictions = row[4].equals("1");
+                group.CanModifyWorld = !row[4].equals("-1");
+                group.DefaultGroup = row[5].equals("1");
+                groups.add(group);
+            }
+        }
+    }
+
+    @Override
+    public void loadKits() {
+        synchronized (kitLock) {
+            kits = new ArrayList<Kit>();
+            for (String[] row : store.values(KITS)) {
+                Kit kit = new Kit();
+
+                kit.Name = row[0];
+                kit.IDs = new HashMap<String, Integer>();
+                for (String str : row[1].split(",")) {
+                    if (str.contains(" ")) {
+                        kit.IDs.put(str.split(" ")[0], Integer.parseInt(str.split(" ")[1]));
+                    } else if (!str.isEmpty()) {
+                        kit.IDs.put(str, 1);
+                    }
+                }
+                kit.Delay = Integer.parseInt(row[2]);
+                kit.Group = row[3];
+                kits.add(kit);
+            }
+        }
+    }
+
+    @Override
+    public void loadHomes() {
+        synchronized (homeLock) {
+            homes = new ArrayList<Warp>();
+            if (!etc.getInstance().canSaveHomes()) {
+                return;
+            }
+            for (String[] row : store.values(HOMES)) {
+                homes.add(readWarp(row));
+            }
+        }
+    }
+
+    @Override
+    public void loadWarps() {
+        synchronized (warpLock) {
+            warps = new ArrayList<Warp>();
+            for (String[] row : store.values(WARPS)) {
+                warps.add(readWarp(row));
+            }
+        }
+    }
+
+    @Override
+    public void loadItems() {
+        synchronized (itemLock) {
+            items = new HashMap<String, Integer>();
+            for (String[] row : store.values(ITEMS)) {
+                items.put(row[0], Integer.parseInt(row[1]));
+            }
+        }
+    }
+
+    @Override
+    public void loadBanList() {
+        synchronized (banLock) {
+            bans = new ArrayList<Ban>();
+            for (String[] row : store.values(BANS)) {
+                Ban ban = new Ban();
+
+                ban.setId(Integer.parseInt(row[0]));
+                ban.setName(row[1]);
+                ban.setIp(row[2]);
+                ban.setReason(row[3]);
+                ban.setTimestamp(Integer.parseInt(row[4]));
+                bans.add(ban);
+                nextBanId = Math.max(nextBanId, ban.getId() + 1);
+            }
+            indexBans();
+        }
+    }
+
+    @Override
+    public void loadMutedPlayers() {
+        mutedPlayers = new ArrayList<String>();
+        for (String[] row : store.values(MUTED_PLAYERS)) {
+            mutedPlayers.add(row[0]);
+        }
+    }
+
+    @Override
+    public void loadEnderBlocks() {
+        synchronized (enderBlocksLock) {
+            enderBlocks = new ArrayList<Integer>();
+            for (String[] row : store.values(ENDERBLOCKS)) {
+                enderBlocks.add(Integer.parseInt(row[0]));
+            }
+            applyEnderBlocks();
+        }
+    }
+
+    @Override
+    public void loadAntiXRayBlocks() {
+        synchronized (antiXRayBlocksLock) {
+            antiXRayBlocks = new ArrayList<Integer>();
+            for (String[] row : store.values(ANTIXRAYBLOCKS)) {
+                antiXRayBlocks.add(Integer.parseInt(row[0]));
+            }
+        }
+    }
+
+    // Users
+    @Override
+    public void addPlayer(Player player) {
+        LoginPrefetch.forget(player.getName());
+        commit(store.begin().put(USERS, player.getName(), playerFields(player.getName(), player)), "user " + player.getName());
+    }
+
+    @Override
+    public void modifyPlayer(Player player) {
+        LoginPrefetch.forget(player.getName());
+        String name = player.getOfflineName();
+
+        if (store.contains(USERS, name)) {
+            commit(store.begin().put(USERS, name, playerFields(store.get(USERS, name)[0], player)), "user " + name);
+        }
+    }
+
+    @Override
+    public boolean doesPlayerExist(String player) {
+        return store.contains(USERS, player);
+    }
+
+    @Override
+    public Player getPlayer(String name) {
+        Player player = new Player();
+        String[] row = store.get(USERS, name);
+
+        if (row == null) {
+            Group group = etc.getDataSource().getDefaultGroup();
+
+            player.setGroups(new String[] { group.Name });
+            if (group.Administrator) {
+                player.setRestrictions(2);
+            } else if (group.IgnoreRestrictions) {
+                player.setRestrictions(1);
+            } else if (!group.CanModifyWorld && !player.canIgnoreRestrictions()) {
+                player.setRestrictions(-1);
+            }
+            return player;
+        }
+
+        player.setGroups(row[1].split(","));
+        if (player.getGroups().length == 0) {
+            player.setGroups(new String[] { etc.getDataSource().getDefaultGroup().Name });
+        }
+        if (row[2].matches("-1|[012]")) {
+            player.setRestrictions(Integer.parseInt(row[2]));
+        } else {
+            for (String str : player.getGroups()) {
+                Group group = etc.getDataSource().getGroup(str);
+
+                if (group != null) {
+                    if (group.Administrator) {
+                        player.setRestrictions(2);
+                        break;
+                    } else if (group.IgnoreRestrictions) {
+                        player.setRestrictions(1);
+                    } else if (!group.CanModifyWorld && !player.canIgnoreRestrictions()) {
+                        player.setRestrictions(-1);
+                    }
+                }
+            }
+        }
+        player.setPrefix(row[3]);
+        player.setCommands(row[4].split(","));
+
+        List<String> ips = new ArrayList<String>();
+
+        for (String ip : row[5].split(",")) {
+            if (ip.matches("\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}")) {
+                ips.add(ip);
+            }
+        }
+        if (!ips.isEmpty()) {
+            player.setIps(ips.toArray(new String[ips.size()]));
+        }
+        return player;
+    }
+
+    // Groups
+    @Override
+    public void addGroup(Group group) {
+        changed(Table.GROUPS);
+        if (commit(store.begin().put(GROUPS, group.Name, groupFields(group)), "group " + group.Name)) {
+            synchronized (groupLock) {
+                groups.add(group);
+            }
+        }
+    }
+
+    @Override
+    public void modifyGroup(Group group) {
+        changed(Table.GROUPS);
+        if (commit(store.begin().put(GROUPS, group.Name, groupFields(group)), "group " + group.Name)) {
+            loadGroups();
+        }
+    }
+
+    // Kits
+    @Override
+    public void addKit(Kit kit) {
+        changed(Table.KITS);
+        if (commit(store.begin().put(KITS, kit.Name, kitFields(kit)), "kit " + kit.Name)) {
+            synchronized (kitLock) {
+                kits.add(kit);
+            }
+        }
+    }
+
+    @Override
+    public void modifyKit(Kit kit) {
+        changed(Table.KITS);
+        if (commit(store.begin().put(KITS, kit.Name, kitFields(kit)), "kit " + kit.Name)) {
+            loadKits();
+        }
+    }
+
+    // Homes
+    @Override
+    public void addHome(Warp home) {
+        changed(Table.HOMES);
+        if (!etc.getInstance().canSaveHomes() || commit(store.begin().put(HOMES, home.Name, warpFields(home)), "home " + home.Name)) {
+            synchronized (homeLock) {
+                homes.add(home);
+            }
+        }
+    }
+
+    @Override
+    public void changeHome(Warp home) {
+        changed(Table.HOMES);
+        synchronized (homeLock) {
+            Warp toRem = null;
+
+            for (Warp h : homes) {
+                if (h.Name.equalsIgnoreCase(home.Name)) {
+                    toRem = h;
+                }
+            }
+            if (toRem != null) {
+                homes.remove(toRem);
+            }
+            homes.add(home);
+        }
+        if (etc.getInstance().canSaveHomes()) {
+            commit(store.begin().put(HOMES, home.Name, warpFields(home)), "home " + home.Name);
+        }
+    }
+
+    // Warps
+    @Override
+    public void addWarp(Warp warp) {
+        changed(Table.WARPS);
+        if (commit(store.begin().put(WARPS, warp.Name, warpFields(warp)), "warp " + warp.Name)) {
+            synchronized (warpLock) {
+                warps.add(warp);
+            }
+        }
+    }
+
+    @Override
+    public void changeWarp(Warp warp) {
+        changed(Table.WARPS);
+        synchronized (warpLock) {
+            Warp toRem = null;
+
+            for (Warp h : warps) {
+                if (h.Name.equalsIgnoreCase(warp.Name)) {
+                    toRem = h;
+                }
+            }
+            if (toRem != null) {
+                warps.remove(toRem);
+            }
+            warps.add(warp);
+        }
+        commit(store.begin().put(WARPS, warp.Name, warpFields(warp)), "warp " + warp.Name);
+    }
+
+    @Override
+    public void removeWarp(Warp warp) {
+        changed(Table.WARPS);
+        commit(store.begin().delete(WARPS, warp.Name), "warp " + warp.Name);
+        synchronized (warpLock) {
+            warps.remove(warp);
+        }
+    }
+
+    // Whitelist
+    @Override
+    public void addToWhitelist(String name) {
+        LoginPrefetch.forget(name);
+        commit(store.begin().put(WHITELIST, name, name), "whitelist");
+    }
+
+    @Override
+    public void removeFromWhitelist(String name) {
+        LoginPrefetch.forget(name);
+        commit(store.begin().delete(WHITELIST, name), "whitelist");
+    }
+
+    @Override
+    public boolean isUserOnWhitelist(String user) {
+        return store.contains(WHITELIST, user) || isGroupListed(WHITELIST, user);
+    }
+
+    /**
+     * Checks the <tt>@group</tt> entries of a list
+     *
+     * @param table
+     * @param user
+     * @return true if one of the user's groups is on the list
+     */
+    private boolean isGroupListed(String table, String user) {
+        Player player = null;
+
+        for (String[] row : store.values(table)) {
+            if (row[0].startsWith("@")) {
+                if (player == null) {
+                    player = getPlayer(user);
+                }
+                if (player.isInGroup(row[0].substring(1))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void addBan(Ban ban) {
+        changed(Table.BANS);
+        synchronized (banLock) {
+            ban.setId(nextBanId++);
+        }
+        if (commit(store.begin().put(BANS, String.valueOf(ban.getId()), banFields(ban)), "ban")) {
+            synchronized (banLock) {
+                bans.add(ban);
+                banIndex.add(ban);
+            }
+        }
+    }
+
+    // Reservelist
+    @Override
+    public void addToReserveList(String name) {
+        LoginPrefetch.forget(name);
+        commit(store.begin().put(RESERVELIST, name, name), "reservelist");
+    }
+
+    @Override
+    public void removeFromReserveList(String name) {
+        LoginPrefetch.forget(name);
+        commit(store.begin().delete(RESERVELIST, name), "reservelist");
+    }
+
+    @Override
+    public boolean isUserOnReserveList(String user) {
+        return store.contains(RESERVELIST, user) || (!user.startsWith("@") && isGroupListed(RESERVELIST, user));
+    }
+
+    @Override
+    public void setPlayerToMuteList(String name) {
+        changed(Table.MUTED_PLAYERS);
+        if (commit(store.begin().put(MUTED_PLAYERS, name, name), "muted players")) {
+            mutedPlayers.add(name);
+        }
+    }
+
+    @Override
+    public void removePlayerFromMuteList(String name) {
+        changed(Table.MUTED_PLAYERS);
+        if (commit(store.begin().delete(MUTED_PLAYERS, name), "muted players")) {
+            mutedPlayers.remove(name);
+        }
+    }
+
+    @Override
+    public void expireBan(Ban ban) {
+        changed(Table.BANS);
+        int now = (int) (System.currentTimeMillis() / 1000);
+        EmbeddedStore.Transaction transaction = store.begin();
+
+        synchronized (banLock) {
+            for (Ban b : bans) {
+                if (b.equals(ban)) {
+                    banIndex.remove(b);
+                    b.setTimestamp(now);
+                    transaction.put(BANS, String.valueOf(b.getId()), banFields(b));
+                }
+            }
+        }
+        commit(transaction, "ban");
+    }
+
+    @Override
+    public void flush() {
+        if (store == null) {
+            return;
+        }
+        try {
+            store.sync();
+        } catch (IOException ex) {
+            log.log(Level.SEVERE, "Unable to sync " + etc.getInstance().getEmbeddedDbLocation(), ex);
+        }
+    }
+
+    /**
+     * Writes a consistent copy of the database to the given file. The server
+     * keeps running while the backup is written.
+     *
+     * @param target
+     * @throws IOException
+     */
+    public void backup(File target) throws IOException {
+        store.backup(target);
+    }
+
+    /**
+     * Replaces the contents of the database with the flat files configured in
+     * server.properties, in a single transaction, and reloads everything.
+     *
+     * @return true if the import was written
+     */
+    public boolean importFlatFile() {
+        FlatFileSource flat = new FlatFileSource();
+        EmbeddedStore.Transaction transaction = store.begin();
+
+        // Let the flat file source do the parsing; it also creates missing files with their defaults
+        flat.loadGroups();
+        flat.loadKits();
+        flat.loadHomes();
+        flat.loadWarps();
+        flat.loadItems();
+        flat.loadEnderBlocks();
+        flat.loadAntiXRayBlocks();
+        flat.loadMutedPlayers();
+        flat.loadBanList();
+
+        for (String table : new String[] { USERS, GROUPS, KITS, HOMES, WARPS, ITEMS, WHITELIST, RESERVELIST, BANS, ENDERBLOCKS, ANTIXRAYBLOCKS, MUTED_PLAYERS }) {
+            for (String[] row : store.values(table)) {
+                // Every table is keyed by its first field
+                transaction.delete(table, row[0]);
+            }
+        }
+        for (Group group : flat.groups) {
+            transaction.put(GROUPS, group.Name, groupFields(group));
+        }
+        for (Kit kit : flat.kits) {
+            transaction.put(KITS, kit.Name, kitFields(kit));
+        }
+        for (Warp home : flat.homes) {
+            transaction.put(HOMES, home.Name, warpFields(home));
+        }
+        for (Warp warp : flat.warps) {
+            transaction.put(WARPS, warp.Name, warpFields(warp));
+        }
+        for (Map.Entry<String, Integer> item : flat.items.entrySet()) {
+            transaction.put(ITEMS, item.getKey(), item.getKey(), String.valueOf(item.getValue()));
+        }
+        for (Integer id : flat.enderBlocks) {
+            transaction.put(ENDERBLOCKS, String.valueOf(id), String.valueOf(id));
+        }
+        for (Integer id : flat.antiXRayBlocks) {
+            transaction.put(ANTIXRAYBLOCKS, String.valueOf(id), String.valueOf(id));
+        }
+        for (String name : flat.mutedPlayers) {
+            if (!name.isEmpty()) {
+                transaction.put(MUTED_PLAYERS, name, name);
+            }
+        }
+        int banId = 1;
+
+        for (Ban ban : flat.bans) {
+            ban.setId(banId++);
+            transaction.put(BANS, String.valueOf(ban.getId()), banFields(ban));
+        }
+
+        // #NAME:GROUPS:ADMIN/UNRESTRICTED:COLOR:COMMANDS:IPs, the same fields as our users table
+        for (String[] line : readLines(etc.getInstance().getUsersLocation())) {
+            String[] row = new String[6];
+
+            for (int i = 0; i < row.length; i++) {
+                row[i] = i < line.length ? line[i] : "";
+            }
+            transaction.put(USERS, row[0], row);
+        }
+        for (String[] line : readLines(etc.getInstance().getWhitelistLocation())) {
+            transaction.put(WHITELIST, line[0], line[0]);
+        }
+        for (String[] line : readLines(etc.getInstance().getReservelistLocation())) {
+            transaction.put(RESERVELIST, line[0], line[0]);
+        }
+
+        if (!commit(transaction, "the flat file import")) {
+            return false;
+        }
+        loadAll();
+        return true;
+    }
+
+    /**
+     * Reads the entries of a flat file, split on colons
+     *
+     * @param location
+     * @return the entries
+     */
+    private List<String[]> readLines(String location) {
+        List<String[]> lines = new ArrayList<String[]>();
+
+        if (!new File(location).exists()) {
+            return lines;
+        }
+        try {
+            Scanner scanner = new Scanner(new File(location));
+
+            while (scanner.hasNextLine()) {
+                String line = scanner.nextLine();
+
+                if (line.startsWith("#") || line.equals("") || line.startsWith(" ")) {
+                    continue;
+                }
+                lines.add(line.split(":", -1));
+            }
+            scanner.close();
+        } catch (IOException e) {
+            log.log(Level.SEVERE, String.format("Exception while reading %s", location), e);
+        }
+        return lines;
+    }
+}
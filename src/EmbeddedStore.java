@@ -0,0 +1,517 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+
+/**
+ * EmbeddedStore.java - A small transactional key-value store kept in a single
+ * append-only log file.
+ *
+ * Every committed {@link Transaction} is written as one checksummed frame, so
+ * it either makes it to disk completely or not at all. On open the log is
+ * replayed into memory and a torn last frame (e.g. from a crash) is cut off.
+ * Once the log has grown well past the live data it is compacted into a fresh
+ * file that replaces the old one. The fresh file is written in the
+ * background; commits only wait for the old file to be swapped out.
+ *
+ * Without sync, a committed transaction is handed to the operating system but
+ * not forced to disk, so a crash of the machine (not just the server) can
+ * lose the last transactions. The log stays consistent either way.
+ *
+ * Keys are case insensitive.
+ */
+public class EmbeddedStore {
+
+    private static final Logger log = Logger.getLogger("Minecraft-Server");
+    private static final int    MAGIC = 0x434D4442; // "CMDB"
+    private static final byte   PUT = 1, DELETE = 2;
+    private static final long   MIN_COMPACT_SIZE = 1024 * 1024;
+    private static final ExecutorService compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "CanaryMod database compaction");
+
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final File          file;
+    private final boolean       sync;
+    private final Map<String, Map<String, String[]>> tables = new HashMap<String, Map<String, String[]>>();
+    private RandomAccessFile    raf;
+    private FileChannel         channel;
+    private long                compactedSize;
+    private boolean             compactionQueued, closed;
+    /**
+     * The transactions committed while a compaction writes its snapshot,
+     * <tt>null</tt> if no compaction is running.
+     */
+    private List<byte[]>        compactionTail;
+
+    /**
+     * Opens the store, creating the file if needed.
+     *
+     * @param file
+     *            the log file
+     * @param sync
+     *            whether to force every commit to disk before returning, see
+     *            above
+     * @throws IOException
+     */
+    public EmbeddedStore(File file, boolean sync) throws IOException {
+        this.file = file;
+        this.sync = sync;
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        open();
+    }
+
+    private void open() throws IOException {
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+
+            header.putInt(MAGIC).flip();
+            channel.write(header);
+            channel.force(true);
+        } else {
+            replay();
+        }
+        compactedSize = channel.size();
+    }
+
+    /**
+     * Replays the log into memory. The log is mapped instead of read, so
+     * opening a large store doesn't copy it through the heap first.
+     *
+     * @throws IOException
+     */
+    private void replay() throws IOException {
+        long size = channel.size();
+        MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+        if (data.getInt() != MAGIC) {
+            throw new IOException(file + " is not a CanaryMod database");
+        }
+
+        CRC32 crc = new CRC32();
+        long valid = data.position();
+
+        while (data.remaining() >= 8) {
+            int length = data.getInt();
+            int checksum = data.getInt();
+
+            if (length < 0 || length > data.remaining()) {
+                break;
+            }
+            byte[] payload = new byte[length];
+
+            data.get(payload);
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            apply(payload);
+            valid = data.position();
+        }
+
+        if (valid < size) {
+            log.log(Level.WARNING, "Discarding {0} bytes of an incomplete transaction at the end of {1}", new Object[] { size - valid, file });
+            try {
+                channel.truncate(valid);
+            } catch (IOException ex) {
+                // Some platforms can't truncate a mapped file, the next commit overwrites the tail instead
+            }
+        }
+        channel.position(valid);
+    }
+
+    private void apply(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+
+        while (in.available() > 0) {
+            byte op = in.readByte();
+            String table = in.readUTF();
+            String key = in.readUTF();
+
+            if (op == PUT) {
+                String[] fields = new String[in.readShort()];
+
+                for (int i = 0; i < fields.length; i++) {
+                    fields[i] = in.readUTF();
+                }
+                getTable(table).put(key, fields);
+            } else if (op == DELETE) {
+                getTable(table).remove(key);
+            } else {
+                throw new IOException("Unknown operation " + op + " in " + file);
+            }
+        }
+    }
+
+    private Map<String, String[]> getTable(String table) {
+        Map<String, String[]> rows = tables.get(table);
+
+        if (rows == null) {
+            rows = new LinkedHashMap<String, String[]>();
+            tables.put(table, rows);
+        }
+        return rows;
+    }
+
+    /**
+     * Starts a new transaction. Nothing is written until it is committed.
+     *
+     * @return the transaction
+     */
+    public Transaction begin() {
+        return new Transaction();
+    }
+
+    /**
+     * Returns the row with the given key
+     *
+     * @param table
+     * @param key
+     * @return the row's fields, or <tt>null</tt> if there is no such row
+     */
+    public synchronized String[] get(String table, String key) {
+        Map<String, String[]> rows = tables.get(table);
+
+        return rows == null ? null : rows.get(key.toLowerCase());
+    }
+
+    /**
+     * Returns true if the table has a row with the given key
+     *
+     * @param table
+     * @param key
+     * @return true if the row exists
+     */
+    public synchronized boolean contains(String table, String key) {
+        Map<String, String[]> rows = tables.get(table);
+
+        return rows != null && rows.containsKey(key.toLowerCase());
+    }
+
+    /**
+     * Returns all rows of a table
+     *
+     * @param table
+     * @return a copy of the table's rows, in insertion order
+     */
+    public synchronized List<String[]> values(String table) {
+        Map<String, String[]> rows = tables.get(table);
+
+        return rows == null ? new ArrayList<String[]>() : new ArrayList<String[]>(rows.values());
+    }
+
+    /**
+     * Returns true if nothing has been stored yet
+     *
+     * @return true if empty
+     */
+    public synchronized boolean isEmpty() {
+        for (Map<String, String[]> rows : tables.values()) {
+            if (!rows.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private synchronized void commit(Transaction transaction) throws IOException {
+        if (transaction.ops.size() == 0) {
+            return;
+        }
+        byte[] payload = transaction.ops.toByteArray();
+
+        writeFrame(channel, payload);
+        if (sync) {
+            channel.force(false);
+        }
+        apply(payload);
+        if (compactionTail != null) {
+            compactionTail.add(payload);
+        } else if (!compactionQueued && channel.size() > Math.max(MIN_COMPACT_SIZE, compactedSize * 2)) {
+            compactionQueued = true;
+            compactor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        compact();
+                    } catch (IOException ex) {
+                        // The transactions are written, the log just stays long. Try again once it doubled.
+                        log.log(Level.WARNING, "Unable to compact " + file, ex);
+                        synchronized (EmbeddedStore.this) {
+                            compactedSize = channel.size();
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    private static void writeFrame(FileChannel out, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer frame = ByteBuffer.allocate(8 + payload.length);
+
+        crc.update(payload);
+        frame.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        while (frame.hasRemaining()) {
+            out.write(frame);
+        }
+    }
+
+    /**
+     * Writes the given tables as a fresh log file
+     *
+     * @param target
+     * @param snapshot
+     * @throws IOException
+     */
+    private static void writeSnapshot(File target, Map<String, Map<String, String[]>> snapshot) throws IOException {
+        RandomAccessFile out = new RandomAccessFile(target, "rw");
+
+        try {
+            FileChannel channel = out.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(4);
+
+            channel.truncate(0);
+            header.putInt(MAGIC).flip();
+            channel.write(header);
+            for (Map.Entry<String, Map<String, String[]>> table : snapshot.entrySet()) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream ops = new DataOutputStream(bytes);
+
+                for (Map.Entry<String, String[]> row : table.getValue().entrySet()) {
+                    writePut(ops, table.getKey(), row.getKey(), row.getValue());
+                }
+                writeFrame(channel, bytes.toByteArray());
+            }
+            channel.force(true);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writePut(DataOutputStream ops, String table, String key, String[] fields) throws IOException {
+        ops.writeByte(PUT);
+        ops.writeUTF(table);
+        ops.writeUTF(key);
+        ops.writeShort(fields.length);
+        for (String field : fields) {
+            ops.writeUTF(field == null ? "" : field);
+        }
+    }
+
+    private Map<String, Map<String, String[]>> snapshot() {
+        Map<String, Map<String, String[]>> copy = new LinkedHashMap<String, Map<String, String[]>>();
+
+        for (Map.Entry<String, Map<String, String[]>> table : tables.entrySet()) {
+            copy.put(table.getKey(), new LinkedHashMap<String, String[]>(table.getValue()));
+        }
+        return copy;
+    }
+
+    /**
+     * Rewrites the log so it only contains the live rows. Only taking the
+     * snapshot and swapping the files block writers.
+     *
+     * @throws IOException
+     */
+    public void compact() throws IOException {
+        Map<String, Map<String, String[]>> snapshot;
+
+        synchronized (this) {
+            compactionQueued = false;
+            if (closed || compactionTail != null) {
+                return;
+            }
+            snapshot = snapshot();
+            compactionTail = new ArrayList<byte[]>();
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+
+        try {
+            writeSnapshot(tmp, snapshot);
+            synchronized (this) {
+                if (!closed) {
+                    replaceWith(tmp);
+                }
+            }
+        } finally {
+            synchronized (this) {
+                compactionTail = null;
+            }
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Adds the transactions committed since the snapshot to the compacted
+     * log and puts it in place of the current one. Call with the store
+     * locked.
+     *
+     * @param tmp
+     *            the compacted log
+     * @throws IOException
+     */
+    private void replaceWith(File tmp) throws IOException {
+        RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+
+        try {
+            FileChannel tail = out.getChannel();
+
+            tail.position(tail.size());
+            for (byte[] payload : compactionTail) {
+                writeFrame(tail, payload);
+            }
+            tail.force(true);
+        } finally {
+            out.close();
+        }
+        channel.close();
+        raf.close();
+        try {
+            if (!tmp.renameTo(file)) {
+                // Windows won't rename over an existing file, so move the old one out of the way first
+                File old = new File(file.getPath() + ".old");
+
+                old.delete();
+                if (!file.renameTo(old)) {
+                    throw new IOException("Unable to replace " + file + " with " + tmp);
+                }
+                if (!tmp.renameTo(file)) {
+                    old.renameTo(file);
+                    throw new IOException("Unable to replace " + file + " with " + tmp);
+                }
+                old.delete();
+            }
+        } finally {
+            // Reopen whatever is in place now: the compacted log, or the original one if replacing it failed
+            raf = new RandomAccessFile(file, "rw");
+            channel = raf.getChannel();
+            channel.position(channel.size());
+        }
+        compactedSize = channel.size();
+    }
+
+    /**
+     * Writes a consistent copy of the store to the given file while the store
+     * stays usable. Only taking the snapshot blocks writers.
+     *
+     * @param target
+     *            the backup file
+     * @throws IOException
+     */
+    public void backup(File target) throws IOException {
+        Map<String, Map<String, String[]>> snapshot;
+
+        synchronized (this) {
+            snapshot = snapshot();
+        }
+        if (target.getParentFile() != null) {
+            target.getParentFile().mkdirs();
+        }
+        writeSnapshot(target, snapshot);
+    }
+
+    /**
+     * Forces everything written so far to disk
+     *
+     * @throws IOException
+     */
+    public synchronized void sync() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Closes the store
+     *
+     * @throws IOException
+     */
+    public synchronized void close() throws IOException {
+        closed = true;
+        channel.force(true);
+        channel.close();
+        raf.close();
+    }
+
+    /**
+     * A set of changes that is written atomically by {@link #commit()}.
+     */
+    public class Transaction {
+        private final ByteArrayOutputStream ops = new ByteArrayOutputStream();
+        private final DataOutputStream      out = new DataOutputStream(ops);
+
+        private Transaction() {}
+
+        /**
+         * Adds or replaces a row
+         *
+         * @param table
+         * @param key
+         * @param fields
+         * @return this transaction
+         */
+        public Transaction put(String table, String key, String... fields) {
+            try {
+                writePut(out, table, key.toLowerCase(), fields);
+            } catch (IOException ex) {
+                // ByteArrayOutputStream doesn't throw, but writeUTF refuses strings over 64K
+                throw new IllegalArgumentException("Unable to store " + table + "/" + key, ex);
+            }
+            return this;
+        }
+
+        /**
+         * Removes a row
+         *
+         * @param table
+         * @param key
+         * @return this transaction
+         */
+        public Transaction delete(String table, String key) {
+            try {
+                out.writeByte(DELETE);
+                out.writeUTF(table);
+                out.writeUTF(key.toLowerCase());
+            } catch (IOException ex) {
+                throw new IllegalArgumentException("Unable to delete " + table + "/" + key, ex);
+            }
+            return this;
+        }
+
+        /**
+         * Writes all changes of this transaction
+         *
+         * @throws IOException
+         */
+        public void commit() throws IOException {
+            EmbeddedStore.this.commit(this);
+        }
+    }
+}
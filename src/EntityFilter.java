@@ -0,0 +1,17 @@
+/**
+ * EntityFilter.java - Decides which entities a query of {@link World}
+ * returns.
+ *
+ * @param <T>
+ *            the entity type the filter looks at
+ */
+public interface EntityFilter<T extends BaseEntity> {
+
+    /**
+     * Returns true if the entity should be part of the result
+     *
+     * @param entity
+     * @return true to include the entity
+     */
+    boolean matches(T entity);
+}
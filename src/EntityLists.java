@@ -0,0 +1,139 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * EntityLists.java - Keeps the wrappers of a world's loaded entities sorted
+ * by kind, so the entity lists in {@link World} don't have to go through all
+ * entities and wrap them again on every call.
+ *
+ * The collections returned are live, read-only views. They change as entities
+ * are added and removed on the server thread, so copy them with
+ * {@link #copy(Collection)} before iterating from another thread or while
+ * spawning or removing entities.
+ */
+public class EntityLists {
+
+    private final Map<OEntity, BaseEntity>   all = new LinkedHashMap<OEntity, BaseEntity>();
+    private final Map<OEntity, Mob>          mobs = new LinkedHashMap<OEntity, Mob>();
+    private final Map<OEntity, Mob>          animals = new LinkedHashMap<OEntity, Mob>();
+    private final Map<OEntity, LivingEntity> living = new LinkedHashMap<OEntity, LivingEntity>();
+    private final Map<OEntity, Minecart>     minecarts = new LinkedHashMap<OEntity, Minecart>();
+    private final Map<OEntity, Boat>         boats = new LinkedHashMap<OEntity, Boat>();
+    private final Map<OEntity, ItemEntity>   items = new LinkedHashMap<OEntity, ItemEntity>();
+
+    private final Collection<BaseEntity> allView = Collections.unmodifiableCollection(all.values());
+    private final Collection<Mob> mobsView = Collections.unmodifiableCollection(mobs.values());
+    private final Collection<Mob> animalsView = Collections.unmodifiableCollection(animals.values());
+    private final Collection<LivingEntity> livingView = Collections.unmodifiableCollection(living.values());
+    private final Collection<Minecart> minecartsView = Collections.unmodifiableCollection(minecarts.values());
+    private final Collection<Boat> boatsView = Collections.unmodifiableCollection(boats.values());
+    private final Collection<ItemEntity> itemsView = Collections.unmodifiableCollection(items.values());
+
+    /**
+     * Called by {@link OWorld} when an entity starts being tracked.
+     *
+     * @param oentity
+     */
+    public synchronized void add(OEntity oentity) {
+        all.put(oentity, wrap(oentity));
+        if (isMob(oentity)) {
+            mobs.put(oentity, ((OEntityLiving) oentity).getMob());
+        } else if (isAnimal(oentity)) {
+            animals.put(oentity, ((OEntityLiving) oentity).getMob());
+        }
+        if (oentity instanceof OEntityLiving) {
+            living.put(oentity, ((OEntityLiving) oentity).getEntity());
+        } else if (oentity instanceof OEntityMinecart) {
+            minecarts.put(oentity, ((OEntityMinecart) oentity).cart);
+        } else if (oentity instanceof OEntityBoat) {
+            boats.put(oentity, ((OEntityBoat) oentity).boat);
+        } else if (oentity instanceof OEntityItem) {
+            items.put(oentity, ((OEntityItem) oentity).item);
+        }
+    }
+
+    /**
+     * Called by {@link OWorld} when an entity stops being tracked.
+     *
+     * @param oentity
+     */
+    public synchronized void remove(OEntity oentity) {
+        if (all.remove(oentity) == null) {
+            return;
+        }
+        mobs.remove(oentity);
+        animals.remove(oentity);
+        living.remove(oentity);
+        minecarts.remove(oentity);
+        boats.remove(oentity);
+        items.remove(oentity);
+    }
+
+    /**
+     * Copies one of the views of these lists. Safe from any thread, the
+     * lists don't change while they are copied.
+     *
+     * @param view
+     *            one of the views returned by this class
+     * @return a copy of the view
+     */
+    public synchronized <T> List<T> copy(Collection<T> view) {
+        return new ArrayList<T>(view);
+    }
+
+    /**
+     * Returns the wrapper the entity lists use for the given entity: a
+     * {@link Mob} for mobs, animals and villagers, the entity's own wrapper
+     * for everything else.
+     *
+     * @param oentity
+     * @return the wrapper
+     */
+    public static BaseEntity wrap(OEntity oentity) {
+        if (isMob(oentity) || isAnimal(oentity) || oentity instanceof OEntityVillager) {
+            return ((OEntityLiving) oentity).getMob();
+        }
+        return oentity.getEntity();
+    }
+
+    private static boolean isMob(OEntity oentity) {
+        return oentity instanceof OEntityMob || oentity instanceof OEntityGhast || oentity instanceof OEntitySlime || oentity instanceof OEntityDragon;
+    }
+
+    private static boolean isAnimal(OEntity oentity) {
+        return oentity instanceof OEntityAnimal || oentity instanceof OEntitySquid || oentity instanceof OEntitySnowman || oentity instanceof OEntityBat;
+    }
+
+    public Collection<BaseEntity> getEntities() {
+        return allView;
+    }
+
+    public Collection<Mob> getMobs() {
+        return mobsView;
+    }
+
+    public Collection<Mob> getAnimals() {
+        return animalsView;
+    }
+
+    public Collection<LivingEntity> getLivingEntities() {
+        return livingView;
+    }
+
+    public Collection<Minecart> getMinecarts() {
+        return minecartsView;
+    }
+
+    public Collection<Boat> getBoats() {
+        return boatsView;
+    }
+
+    public Collection<ItemEntity> getItems() {
+        return itemsView;
+    }
+}
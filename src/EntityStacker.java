@@ -0,0 +1,120 @@
+import java.util.List;
+
+
+/**
+ * EntityStacker.java - Keeps TNT and falling block entities from piling up.
+ *
+ * With entity-stacking on, a falling block that is at the same position and
+ * has the same motion as another falling block of the same type after its
+ * first tick, once it took its block out of the world, is added to that
+ * one's count instead of going on as an entity of its own. When stacked
+ * blocks land, one block is placed and the rest drop as items, like they
+ * would when landing on top of each other. Primed TNT isn't stacked.
+ *
+ * With stacking-chunk-cap set, no more primed TNT or falling blocks than that
+ * are spawned in a chunk. TNT blocks set off by an explosion or by fire in a
+ * full chunk, and falling blocks over the cap, stay in place. Other TNT over
+ * the cap doesn't spawn.
+ */
+public class EntityStacker {
+
+    private EntityStacker() {}
+
+    /**
+     * Called by {@link OWorld} before an entity is added to a chunk.
+     *
+     * @param ochunk
+     *            the chunk the entity is added to
+     * @param oentity
+     * @return <tt>false</tt> if the chunk is full, and the entity shouldn't be
+     *         spawned
+     */
+    public static boolean admit(OChunk ochunk, OEntity oentity) {
+        if (!(oentity instanceof OEntityFallingSand) && !(oentity instanceof OEntityTNTPrimed)) {
+            return true;
+        }
+        return !isFull(ochunk, oentity.getClass());
+    }
+
+    /**
+     * Checks if a TNT block can be primed without going over the cap. Called
+     * before a TNT block is taken out of the world, so it stays in place if
+     * its chunk is full.
+     *
+     * @param oworld
+     * @param x
+     * @param z
+     * @return <tt>false</tt> if the chunk already has as much primed TNT as
+     *         allowed
+     */
+    public static boolean canPrime(OWorld oworld, int x, int z) {
+        // SRG if (!oworld.func_72916_c(x >> 4, z >> 4)) {
+        if (!oworld.c(x >> 4, z >> 4)) {
+            return true;
+        }
+        // SRG return !isFull(oworld.func_72964_e(x >> 4, z >> 4), OEntityTNTPrimed.class);
+        return !isFull(oworld.e(x >> 4, z >> 4), OEntityTNTPrimed.class);
+    }
+
+    private static boolean isFull(OChunk ochunk, Class<?> type) {
+        int cap = etc.getInstance().getStackingChunkCap();
+
+        if (cap <= 0) {
+            return false;
+        }
+        // SRG List[] slices = ochunk.field_76645_j;
+        List[] slices = ochunk.j;
+        int count = 0;
+
+        for (int n = 0; n < slices.length; n++) {
+            List entities = slices[n];
+
+            for (int m = 0; m < entities.size(); m++) {
+                if (entities.get(m).getClass() == type) {
+                    count++;
+                }
+            }
+        }
+        return count >= cap;
+    }
+
+    /**
+     * Called by {@link OEntityFallingSand} after its first tick. Stacks it
+     * into another falling block at the same position, if there is one it
+     * can be stacked into.
+     *
+     * @param oentityfallingsand
+     * @return <tt>true</tt> if it was stacked, and should be removed
+     */
+    public static boolean stack(OEntityFallingSand oentityfallingsand) {
+        if (!etc.getInstance().isEntityStacking()) {
+            return false;
+        }
+        // SRG OWorld oworld = oentityfallingsand.field_70170_p;
+        OWorld oworld = oentityfallingsand.q;
+        // SRG int cx = OMathHelper.func_76128_c(oentityfallingsand.field_70165_t / 16.0D);
+        int cx = OMathHelper.c(oentityfallingsand.u / 16.0D);
+        // SRG int cz = OMathHelper.func_76128_c(oentityfallingsand.field_70161_v / 16.0D);
+        int cz = OMathHelper.c(oentityfallingsand.w / 16.0D);
+
+        // SRG if (!oworld.func_72916_c(cx, cz)) {
+        if (!oworld.c(cx, cz)) {
+            return false;
+        }
+        // SRG List[] slices = oworld.func_72964_e(cx, cz).field_76645_j;
+        List[] slices = oworld.e(cx, cz).j;
+        // SRG int slice = Math.max(0, Math.min(slices.length - 1, OMathHelper.func_76128_c(oentityfallingsand.field_70163_u / 16.0D)));
+        int slice = Math.max(0, Math.min(slices.length - 1, OMathHelper.c(oentityfallingsand.v / 16.0D)));
+        List entities = slices[slice];
+
+        for (int m = 0; m < entities.size(); m++) {
+            Object other = entities.get(m);
+
+            if (other instanceof OEntityFallingSand && ((OEntityFallingSand) other).canStack(oentityfallingsand)) {
+                ((OEntityFallingSand) other).count += oentityfallingsand.count;
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,111 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+
+
+/**
+ * ExplosionBlockList.java - The list of blocks an explosion destroys, as
+ * passed to {@link PluginListener#onExplosion(Block, BaseEntity, java.util.List)}.
+ *
+ * Holds the positions packed and only creates a {@link Block} for an entry
+ * once a plugin looks at it. Plugins can remove, replace and add blocks like
+ * with any other list. Afterwards the explosion destroys the blocks at the
+ * positions left in the list.
+ */
+public class ExplosionBlockList extends AbstractList<Block> {
+
+    private final World world;
+    private long[]      positions;
+    private Block[]     blocks;
+    private int         size;
+
+    public ExplosionBlockList(World world, BlockPositionSet affected) {
+        this.world = world;
+        size = affected.size();
+        positions = new long[Math.max(size, 1)];
+        blocks = new Block[positions.length];
+        for (int i = 0; i < size; i++) {
+            positions[i] = affected.get(i);
+        }
+    }
+
+    @Override
+    public Block get(int index) {
+        checkIndex(index);
+        if (blocks[index] == null) {
+            long position = positions[index];
+            int x = BlockPositionSet.unpackX(position), y = BlockPositionSet.unpackY(position), z = BlockPositionSet.unpackZ(position);
+
+            blocks[index] = new Block(world, world.getBlockIdAt(x, y, z), x, y, z);
+        }
+        return blocks[index];
+    }
+
+    @Override
+    public Block set(int index, Block block) {
+        if (block == null) {
+            throw new NullPointerException("block");
+        }
+        Block old = get(index);
+
+        blocks[index] = block;
+        return old;
+    }
+
+    @Override
+    public void add(int index, Block block) {
+        if (block == null) {
+            throw new NullPointerException("block");
+        }
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (size == positions.length) {
+            positions = Arrays.copyOf(positions, size * 2);
+            blocks = Arrays.copyOf(blocks, size * 2);
+        }
+        System.arraycopy(positions, index, positions, index + 1, size - index);
+        System.arraycopy(blocks, index, blocks, index + 1, size - index);
+        blocks[index] = block;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public Block remove(int index) {
+        Block old = get(index);
+
+        System.arraycopy(positions, index + 1, positions, index, size - index - 1);
+        System.arraycopy(blocks, index + 1, blocks, index, size - index - 1);
+        blocks[--size] = null;
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the positions left in the list. Blocks the plugins looked at
+     * count with their current coordinates.
+     *
+     * @return the positions
+     */
+    public BlockPositionSet toPositionSet() {
+        BlockPositionSet result = new BlockPositionSet(size);
+
+        for (int i = 0; i < size; i++) {
+            Block block = blocks[i];
+
+            result.add(block == null ? positions[i] : BlockPositionSet.pack(block.getX(), block.getY(), block.getZ()));
+        }
+        return result;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
@@ -81,6 +81,11 @@ public class FlatFileSource extends DataSource {
         }
     }
 
+    @Override
+    public DataSource newInstance() {
+        return new FlatFileSource();
+    }
+
     @Override
     public void loadGroups() {
         String location = etc.getInstance().getGroupLocation();
@@ -916,6 +921,7 @@ public class FlatFileSource extends DataSource {
             } catch (Exception e) {
                 log.log(Level.SEVERE, String.format("Exception while reading %s", location), e);
             }
+            indexBans();
         }
     }
 
@@ -1014,12 +1020,7 @@ public class FlatFileSource extends DataSource {
             } catch (Exception e) {
                 log.log(Level.SEVERE, String.format("Exception while reading %s", location), e);
             }
-            for (int i = 0; i < 256; i += 1) {
-                OEntityEnderman.setHoldable(i, false);
-            }
-            for (Integer id : enderBlocks) {
-                OEntityEnderman.setHoldable(id, true);
-            }
+            applyEnderBlocks();
         }
     }
 
@@ -1083,8 +1084,11 @@ public class FlatFileSource extends DataSource {
     }
 
     // Users
+    // users.txt, the whitelist and the reservelist are read by login prefetches
+    // while they may be rewritten on the server thread, so access is synchronized
     @Override
-    public void addPlayer(Player player) {
+    public synchronized void addPlayer(Player player) {
+        LoginPrefetch.forget(player.getName());
         String loc = etc.getInstance().getUsersLocation();
 
         try {
@@ -1112,7 +1116,8 @@ public class FlatFileSource extends DataSource {
     }
 
     @Override
-    public void modifyPlayer(Player player) {
+    public synchronized void modifyPlayer(Player player) {
+        LoginPrefetch.forget(player.getName());
         String loc = etc.getInstance().getUsersLocation();
 
         try {
@@ -1153,7 +1158,7 @@ public class FlatFileSource extends DataSource {
     }
 
     @Override
-    public boolean doesPlayerExist(String player) {
+    public synchronized boolean doesPlayerExist(String player) {
         String location = etc.getInstance().getUsersLocation();
 
         try {
@@ -1180,7 +1185,7 @@ public class FlatFileSource extends DataSource {
     }
 
     @Override
-    public Player getPlayer(String name) {
+    public synchronized Player getPlayer(String name) {
         Player player = null;
         String location = etc.getInstance().getUsersLocation();
 
@@ -1274,6 +1279,21 @@ public class FlatFileSource extends DataSource {
         return player;
     }
 
+    @Override
+    public synchronized LoginData getLoginData(String name) {
+        // The reads below log and carry on if a file can't be read, which
+        // would look like "not found"
+        String[] locations = {etc.getInstance().getUsersLocation(), etc.getInstance().getWhitelistLocation(), etc.getInstance().getReservelistLocation()};
+
+        for (String location : locations) {
+            if (!new File(location).canRead()) {
+                log.log(Level.SEVERE, String.format("Unable to read %s while fetching login data for %s", location, name));
+                return LoginData.error();
+            }
+        }
+        return super.getLoginData(name);
+    }
+
     // Groups
     @Override
     public void addGroup(Group group) {
@@ -1299,6 +1319,7 @@ public class FlatFileSource extends DataSource {
     // Homes
     @Override
     public void addHome(Warp home) {
+        changed(Table.HOMES);
         String homeLoc = etc.getInstance().getHomeLocation();
 
         try {
@@ -1337,6 +1358,7 @@ public class FlatFileSource extends DataSource {
 
     @Override
     public void changeHome(Warp home) {
+        changed(Table.HOMES);
         synchronized (homeLock) {
             Warp toRem = null;
 
@@ -1407,6 +1429,7 @@ public class FlatFileSource extends DataSource {
     // Warps
     @Override
     public void addWarp(Warp warp) {
+        changed(Table.WARPS);
         String warpLoc = etc.getInstance().getWarpLocation();
 
         try {
@@ -1443,6 +1466,7 @@ public class FlatFileSource extends DataSource {
 
     @Override
     public void changeWarp(Warp warp) {
+        changed(Table.WARPS);
         synchronized (warpLock) {
             Warp toRem = null;
 
@@ -1510,6 +1534,7 @@ public class FlatFileSource extends DataSource {
 
     @Override
     public void removeWarp(Warp warp) {
+        changed(Table.WARPS);
         FileWriter writer = null;
         String warpLoc = etc.getInstance().getWarpLocation();
 
@@ -1547,7 +1572,8 @@ public class FlatFileSource extends DataSource {
 
     // Whitelist
     @Override
-    public void addToWhitelist(String name) {
+    public synchronized void addToWhitelist(String name) {
+        LoginPrefetch.forget(name);
         if (isUserOnWhitelist(name)) {
             return;
         }
@@ -1572,7 +1598,8 @@ public class FlatFileSource extends DataSource {
     }
 
     @Override
-    public void removeFromWhitelist(String name) {
+    public synchronized void removeFromWhitelist(String name) {
+        LoginPrefetch.forget(name);
         if (!isUserOnWhitelist(name)) {
             return;
         }
@@ -1608,7 +1635,7 @@ public class FlatFileSource extends DataSource {
     }
 
     @Override
-    public boolean isUserOnWhitelist(String user) {
+    public synchronized boolean isUserOnWhitelist(String user) {
         String location = etc.getInstance().getWhitelistLocation();
         Player player = getPlayer(user);
 
@@ -1637,6 +1664,7 @@ public class FlatFileSource extends DataSource {
 
     @Override
     public void addBan(Ban ban) {
+        changed(Table.BANS);
         String loc = etc.getInstance().getBanListLoc();
         boolean byIp = !ban.getIp().isEmpty();
         String value = byIp ? ban.getIp() : ban.getName();
@@ -1678,12 +1706,13 @@ public class FlatFileSource extends DataSource {
         }
         synchronized (banLock) {
             bans.add(ban);
+            banIndex.add(ban);
         }
     }
 
     // Reservelist
     @Override
-    public boolean isUserOnReserveList(String user) {
+    public synchronized boolean isUserOnReserveList(String user) {
         String location = etc.getInstance().getReservelistLocation();
         Player player = getPlayer(user);
 
@@ -1711,7 +1740,8 @@ public class FlatFileSource extends DataSource {
     }
 
     @Override
-    public void addToReserveList(String name) {
+    public synchronized void addToReserveList(String name) {
+        LoginPrefetch.forget(name);
         if (isUserOnReserveList(name)) {
             return;
         }
@@ -1735,7 +1765,8 @@ public class FlatFileSource extends DataSource {
     }
 
     @Override
-    public void removeFromReserveList(String name) {
+    public synchronized void removeFromReserveList(String name) {
+        LoginPrefetch.forget(name);
         if (!isUserOnReserveList(name)) {
             return;
         }
@@ -1806,6 +1837,7 @@ public class FlatFileSource extends DataSource {
 
     @Override
     public void setPlayerToMuteList(String name) {
+        changed(Table.MUTED_PLAYERS);
         this.mutedPlayers.add(name);
         String location = etc.getInstance().getMuteListLocation();
         try {
@@ -1823,6 +1855,7 @@ public class FlatFileSource extends DataSource {
 
     @Override
     public void removePlayerFromMuteList(String name) {
+        changed(Table.MUTED_PLAYERS);
         this.mutedPlayers.remove(name);
         String location = etc.getInstance().getMuteListLocation();
         try {
@@ -1840,10 +1873,12 @@ public class FlatFileSource extends DataSource {
 
     @Override
     public void expireBan(Ban ban) {
+        changed(Table.BANS);
         int now = (int) (System.currentTimeMillis() / 1000);
         synchronized (banLock) {
             for (Ban b: bans)
                 if (b.equals(ban)) {
+                    banIndex.remove(b);
                     ban = b;
                     ban.setTimestamp(now);
                 }
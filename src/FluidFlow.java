@@ -0,0 +1,91 @@
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * FluidFlow.java - Keeps fluid flow in a world in check.
+ *
+ * Counts the fluid updates of each chunk per tick, so a big lava or water
+ * spill can be spread over several ticks (see
+ * {@link etc#getFluidFlowBudget()}), and remembers per chunk and tick whether
+ * plugins allow fluid to flow into a chunk (see
+ * {@link etc#isFluidFlowBatching()}).
+ *
+ * Only used on the server thread.
+ */
+public class FluidFlow {
+
+    private final OWorld                oworld;
+    private final Map<Long, int[]>      updates = new HashMap<Long, int[]>();
+    private final Map<Long, Boolean>    allowed = new HashMap<Long, Boolean>();
+    private long                        tick = Long.MIN_VALUE;
+
+    public FluidFlow(OWorld oworld) {
+        this.oworld = oworld;
+    }
+
+    /**
+     * Counts a fluid update at the given block against its chunk's budget.
+     *
+     * @param x
+     * @param z
+     * @return <tt>false</tt> if the chunk used up its budget for this tick
+     */
+    public boolean tryUpdate(int x, int z) {
+        int budget = etc.getInstance().getFluidFlowBudget();
+
+        if (budget <= 0) {
+            return true;
+        }
+        nextTick();
+        Long key = key(x >> 4, z >> 4);
+        int[] count = updates.get(key);
+
+        if (count == null) {
+            count = new int[1];
+            updates.put(key, count);
+        }
+        return ++count[0] <= budget;
+    }
+
+    /**
+     * Returns whether fluid may flow into the given block's chunk this tick.
+     * Plugins are asked once per chunk and tick.
+     *
+     * @param x
+     * @param z
+     * @return <tt>true</tt> if the fluid may flow
+     */
+    public boolean canFlowInto(int x, int z) {
+        if (!etc.getLoader().hasListeners(PluginLoader.Hook.FLOW_CHUNK)) {
+            return true;
+        }
+        nextTick();
+        Long key = key(x >> 4, z >> 4);
+        Boolean result = allowed.get(key);
+
+        if (result == null) {
+            // SRG OChunk ochunk = oworld.func_72964_e(x >> 4, z >> 4);
+            OChunk ochunk = oworld.e(x >> 4, z >> 4);
+
+            result = !(Boolean) etc.getLoader().callHook(PluginLoader.Hook.FLOW_CHUNK, ochunk.chunk);
+            allowed.put(key, result);
+        }
+        return result;
+    }
+
+    private void nextTick() {
+        // SRG long now = oworld.func_82737_E();
+        long now = oworld.I();
+
+        if (now != tick) {
+            tick = now;
+            updates.clear();
+            allowed.clear();
+        }
+    }
+
+    private static Long key(int x, int z) {
+        return (long) x << 32 | z & 0xFFFFFFFFL;
+    }
+}
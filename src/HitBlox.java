@@ -9,6 +9,13 @@
  * line-of-sight from the player for more specialized tasks. This method can be
  * used exactly as it is in getTargetBlock, for instance.
  *
+ * The line of sight is walked block by block (Amanatides &amp; Woo voxel
+ * traversal), so every block the line passes through is visited exactly once,
+ * corners included, and the cost only depends on the number of blocks
+ * crossed. Use {@link #traverse(Visitor)} to look at the blocks without
+ * creating {@link Block}s. A HitBlox can be reused for another ray by calling
+ * {@link #init(Location, int, double, double)} again.
+ *
  * WARNING: Servers with map coordinate bugs may experience a one or more block
  * inaccuracy when in affected parts of the dimension. A good way to test areas for
  * the offset bug is to use Chrisinajar's Magic Carpet plugin.
@@ -20,13 +27,45 @@
  */
 public class HitBlox {
 
-    private Location player_loc;
-    private double   rot_x, rot_y, view_height;
-    private double   length, h_length, step;
-    private int      range;
-    private double   x_offset, y_offset, z_offset;
-    private int      last_x, last_y, last_z;
-    private int      target_x, target_y, target_z, target_type;
+    private Location  player_loc;
+    private double    rot_x, rot_y, view_height;
+    private double    length;
+    private int       range;
+    private int       last_x, last_y, last_z;
+    private int       target_x, target_y, target_z;
+    // Traversal state: direction of each axis, distance along the line to
+    // the next block boundary and distance between two boundaries.
+    private int       step_x, step_y, step_z;
+    private double    max_x, max_y, max_z;
+    private double    delta_x, delta_y, delta_z;
+    private boolean[] transparent = AIR_ONLY;
+
+    private static final boolean[] AIR_ONLY = new boolean[4096];
+
+    static {
+        AIR_ONLY[0] = true;
+    }
+
+    /**
+     * Gets called for every block along the line of sight.
+     *
+     * @see HitBlox#traverse(Visitor)
+     */
+    public interface Visitor {
+
+        /**
+         * Called for the next block along the line of sight
+         *
+         * @param x
+         * @param y
+         * @param z
+         * @param type
+         *            the block type
+         * @return <tt>true</tt> to continue with the next block,
+         *         <tt>false</tt> to stop here
+         */
+        boolean visit(int x, int y, int z, int type);
+    }
 
     /**
      * Constructor requiring player, uses default values
@@ -53,6 +92,7 @@ public class HitBlox {
      * @param in_player
      * @param in_range
      * @param in_step
+     *            no longer used, every block along the line is visited
      */
     public HitBlox(Player in_player, int in_range, double in_step) {
         init(in_player.getLocation(), in_range, in_step, 1.65);
@@ -64,6 +104,7 @@ public class HitBlox {
      * @param in_location
      * @param in_range
      * @param in_step
+     *            no longer used, every block along the line is visited
      */
     public HitBlox(Location in_location, int in_range, double in_step) {
         init(in_location, in_range, in_step, 0);
@@ -75,23 +116,132 @@ public class HitBlox {
      * @param in_location
      * @param in_range
      * @param in_step
+     *            no longer used, every block along the line is visited
      * @param in_view_height
      */
     public void init(Location in_location, int in_range, double in_step, double in_view_height) {
         player_loc = in_location;
         view_height = in_view_height;
         range = in_range;
-        step = in_step;
         length = 0;
         rot_x = (player_loc.rotX + 90) % 360;
         rot_y = player_loc.rotY * -1;
 
-        target_x = etc.floor(player_loc.x);
-        target_y = etc.floor(player_loc.y + view_height);
-        target_z = etc.floor(player_loc.z);
+        double origin_x = player_loc.x;
+        double origin_y = player_loc.y + view_height;
+        double origin_z = player_loc.z;
+        double h_length = Math.cos(Math.toRadians(rot_y));
+        double dir_x = h_length * Math.cos(Math.toRadians(rot_x));
+        double dir_y = Math.sin(Math.toRadians(rot_y));
+        double dir_z = h_length * Math.sin(Math.toRadians(rot_x));
+
+        target_x = etc.floor(origin_x);
+        target_y = etc.floor(origin_y);
+        target_z = etc.floor(origin_z);
         last_x = target_x;
         last_y = target_y;
         last_z = target_z;
+
+        step_x = dir_x > 0 ? 1 : -1;
+        step_y = dir_y > 0 ? 1 : -1;
+        step_z = dir_z > 0 ? 1 : -1;
+        delta_x = dir_x == 0 ? Double.POSITIVE_INFINITY : Math.abs(1 / dir_x);
+        delta_y = dir_y == 0 ? Double.POSITIVE_INFINITY : Math.abs(1 / dir_y);
+        delta_z = dir_z == 0 ? Double.POSITIVE_INFINITY : Math.abs(1 / dir_z);
+        max_x = firstBoundary(origin_x, target_x, dir_x, delta_x);
+        max_y = firstBoundary(origin_y, target_y, dir_y, delta_y);
+        max_z = firstBoundary(origin_z, target_z, dir_z, delta_z);
+    }
+
+    /**
+     * Returns the distance along the line to the first block boundary on one
+     * axis
+     */
+    private static double firstBoundary(double origin, int block, double dir, double delta) {
+        if (dir == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return (dir > 0 ? block + 1 - origin : origin - block) * delta;
+    }
+
+    /**
+     * Sets the block types the line of sight passes through when looking for
+     * the target block. Only air by default.
+     *
+     * @param blockIds
+     */
+    public void setTransparent(int... blockIds) {
+        transparent = new boolean[4096];
+        transparent[0] = true;
+        for (int id : blockIds) {
+            if (id >= 0 && id < transparent.length) {
+                transparent[id] = true;
+            }
+        }
+    }
+
+    /**
+     * Walks along the line of sight, calling the visitor for every block
+     * until it returns <tt>false</tt> or the range is reached. Afterwards the
+     * current block is the last one visited.
+     *
+     * @param visitor
+     * @return <tt>true</tt> if the visitor stopped the walk, <tt>false</tt> if
+     *         the range was reached
+     */
+    public boolean traverse(Visitor visitor) {
+        World world = player_loc.getWorld();
+
+        while (advance()) {
+            if (!visitor.visit(target_x, target_y, target_z, world.getBlockIdAt(target_x, target_y, target_z))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves on to the next block along the line of sight.
+     *
+     * @return <tt>false</tt> if it's out of range
+     */
+    private boolean advance() {
+        last_x = target_x;
+        last_y = target_y;
+        last_z = target_z;
+
+        if (max_x <= max_y && max_x <= max_z) {
+            length = max_x;
+            max_x += delta_x;
+            target_x += step_x;
+        } else if (max_y <= max_z) {
+            length = max_y;
+            max_y += delta_y;
+            target_y += step_y;
+        } else {
+            length = max_z;
+            max_z += delta_z;
+            target_z += step_z;
+        }
+        return length <= range;
+    }
+
+    /**
+     * Moves on until the current block isn't transparent
+     *
+     * @return <tt>false</tt> if no such block is in range
+     */
+    private boolean advanceToSolid() {
+        World world = player_loc.getWorld();
+
+        while (advance()) {
+            int type = world.getBlockIdAt(target_x, target_y, target_z);
+
+            if (type < 0 || type >= transparent.length || !transparent[type]) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -100,9 +250,7 @@ public class HitBlox {
      * @return Block
      */
     public Block getTargetBlock() {
-        while ((getNextBlock() != null) && (getCurBlock().getType() == 0)) {
-            ;
-        }
+        advanceToSolid();
         return getCurBlock();
     }
 
@@ -114,15 +262,20 @@ public class HitBlox {
      * @return
      */
     public Block getTargetBlockIgnoring(int... blockIds){
-        blockLoop:
-        while (getNextBlock() != null) {
-            for (int i : blockIds){
-                if (getCurBlock().getType() == i){
-                    continue blockLoop;
-                }
+        final boolean[] ignored = new boolean[4096];
+
+        for (int id : blockIds) {
+            if (id >= 0 && id < ignored.length) {
+                ignored[id] = true;
             }
-            break;
         }
+        traverse(new Visitor() {
+
+            @Override
+            public boolean visit(int x, int y, int z, int type) {
+                return type >= 0 && type < ignored.length && ignored[type];
+            }
+        });
         return getCurBlock();
     }
 
@@ -132,10 +285,7 @@ public class HitBlox {
      * @param type
      */
     public void setTargetBlock(int type) {
-        while ((getNextBlock() != null) && (getCurBlock().getType() == 0)) {
-            ;
-        }
-        if (getCurBlock() != null) {
+        if (advanceToSolid()) {
             player_loc.getWorld().setBlockAt(type, target_x, target_y, target_z);
         }
     }
@@ -147,10 +297,7 @@ public class HitBlox {
      * @return Block
      */
     public Block getFaceBlock() {
-        while ((getNextBlock() != null) && (getCurBlock().getType() == 0)) {
-            ;
-        }
-        if (getCurBlock() != null) {
+        if (advanceToSolid()) {
             return getLastBlock();
         } else {
             return null;
@@ -163,39 +310,18 @@ public class HitBlox {
      * @param type
      */
     public void setFaceBlock(int type) {
-        while ((getNextBlock() != null) && (getCurBlock().getType() == 0)) {
-            ;
-        }
-        if (getCurBlock() != null) {
+        if (advanceToSolid()) {
             player_loc.getWorld().setBlockAt(type, last_x, last_y, last_z);
         }
     }
 
     /**
-     * Returns STEPS forward along line of vision and returns block
+     * Moves one block forward along line of vision and returns block
      *
      * @return Block
      */
     public Block getNextBlock() {
-        last_x = target_x;
-        last_y = target_y;
-        last_z = target_z;
-
-        do {
-            length += step;
-
-            h_length = (length * Math.cos(Math.toRadians(rot_y)));
-            y_offset = (length * Math.sin(Math.toRadians(rot_y)));
-            x_offset = (h_length * Math.cos(Math.toRadians(rot_x)));
-            z_offset = (h_length * Math.sin(Math.toRadians(rot_x)));
-
-            target_x = etc.floor(x_offset + player_loc.x);
-            target_y = etc.floor(y_offset + player_loc.y + view_height);
-            target_z = etc.floor(z_offset + player_loc.z);
-
-        } while ((length <= range) && ((target_x == last_x) && (target_y == last_y) && (target_z == last_z)));
-
-        if (length > range) {
+        if (!advance()) {
             return null;
         }
 
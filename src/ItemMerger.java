@@ -0,0 +1,57 @@
+import java.util.List;
+
+
+/**
+ * ItemMerger.java - Merges and caps the dropped items of a world in batches.
+ *
+ * With item-merge-interval set, items don't look for items to merge with
+ * whenever they move. Instead, every item-merge-interval ticks, every item in
+ * the world is merged with the items of the same kind around it (see
+ * {@link ChunkItemIndex}). With item-chunk-cap set, the oldest items of a
+ * chunk with more items than that despawn early, at the same interval or
+ * every second if items are merged the vanilla way.
+ *
+ * Only used on the server thread.
+ */
+public class ItemMerger {
+
+    private final OWorld oworld;
+    private int          ticks;
+
+    public ItemMerger(OWorld oworld) {
+        this.oworld = oworld;
+    }
+
+    /**
+     * Called by {@link OWorld} every tick, before the entities are ticked.
+     */
+    public void tick() {
+        int interval = etc.getInstance().getItemMergeInterval();
+        int cap = etc.getInstance().getItemChunkCap();
+
+        if (interval <= 0 && cap <= 0) {
+            return;
+        }
+        if (++ticks < (interval > 0 ? interval : 20)) {
+            return;
+        }
+        ticks = 0;
+        double radius = etc.getInstance().getItemMergeRadius();
+        // SRG List<OChunk> chunks = ((OWorldServer) oworld).field_73059_b.field_73245_g;
+        List<OChunk> chunks = ((OWorldServer) oworld).b.g;
+
+        for (int i = 0; i < chunks.size(); i++) {
+            ChunkItemIndex items = chunks.get(i).items;
+
+            if (items.size() == 0) {
+                continue;
+            }
+            if (interval > 0) {
+                items.merge(radius);
+            }
+            if (cap > 0) {
+                items.despawnOverCap(cap);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * LoginData.java - Everything the login check needs to know about a player,
+ * fetched from the data source in one go.
+ */
+public class LoginData {
+
+    private final Player  player;
+    private final boolean known, whitelisted, reserved, error;
+
+    /**
+     * Creates the login data
+     *
+     * @param player
+     *            the player as returned by {@link DataSource#getPlayer(String)}
+     * @param known
+     *            whether the player exists in the data source
+     * @param whitelisted
+     *            whether the player is on the whitelist
+     * @param reserved
+     *            whether the player is on the reserve list
+     */
+    public LoginData(Player player, boolean known, boolean whitelisted, boolean reserved) {
+        this(player, known, whitelisted, reserved, false);
+    }
+
+    private LoginData(Player player, boolean known, boolean whitelisted, boolean reserved, boolean error) {
+        this.player = player;
+        this.known = known;
+        this.whitelisted = whitelisted;
+        this.reserved = reserved;
+        this.error = error;
+    }
+
+    /**
+     * Returns login data telling the data source couldn't be read. The player
+     * shouldn't be let in on it, nor should it be taken as "not found".
+     *
+     * @return the login data for a failed lookup
+     */
+    public static LoginData error() {
+        return new LoginData(null, false, false, false, true);
+    }
+
+    /**
+     * Returns the player
+     *
+     * @return the player
+     */
+    public Player getPlayer() {
+        return player;
+    }
+
+    /**
+     * Returns true if the player exists in the data source. Unknown players
+     * get the default group.
+     *
+     * @return true if the player is known
+     */
+    public boolean isKnown() {
+        return known;
+    }
+
+    /**
+     * Returns true if the player is on the whitelist
+     *
+     * @return true if whitelisted
+     */
+    public boolean isOnWhitelist() {
+        return whitelisted;
+    }
+
+    /**
+     * Returns true if the player or one of their groups is on the reserve list
+     *
+     * @return true if on the reserve list
+     */
+    public boolean isOnReserveList() {
+        return reserved;
+    }
+
+    /**
+     * Returns true if the data source couldn't be read. Everything else is
+     * meaningless then.
+     *
+     * @return true if the lookup failed
+     */
+    public boolean isError() {
+        return error;
+    }
+}
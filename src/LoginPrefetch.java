@@ -0,0 +1,228 @@
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * LoginPrefetch.java - Fetches the {@link LoginData} for a connecting player
+ * in the background, so the data source isn't queried on the server thread
+ * while the player logs in.
+ */
+public class LoginPrefetch {
+
+    private static final Logger                      log = Logger.getLogger("Minecraft-Server");
+    private static final ExecutorService             executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "CanaryMod login prefetch");
+
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    /**
+     * Players that are not in the data source, by lowercase name. Saves the
+     * lookup for players who reconnect over and over.
+     */
+    private static final Map<String, UnknownPlayer>  unknownPlayers = new ConcurrentHashMap<String, UnknownPlayer>();
+    /**
+     * Players that passed the login check, by lowercase name, so the player
+     * entity can be given the {@link Player} fetched for the check instead
+     * of looking it up again on the server thread.
+     */
+    private static final Map<String, AdmittedPlayer> admittedPlayers = new ConcurrentHashMap<String, AdmittedPlayer>();
+
+    /**
+     * How long an admitted player is kept for the player entity, in ms.
+     */
+    private static final long ADMITTED_TIME = 30000L;
+
+    private final String            name;
+    private final long              started;
+    private final Future<LoginData> data;
+
+    private LoginPrefetch(final String name) {
+        this.name = name;
+        this.started = System.currentTimeMillis();
+        this.data = executor.submit(new Callable<LoginData>() {
+            @Override
+            public LoginData call() {
+                return fetch(name);
+            }
+        });
+    }
+
+    /**
+     * Starts fetching the login data for the given player
+     *
+     * @param name
+     *            the player's name
+     * @return the pending fetch
+     */
+    public static LoginPrefetch start(String name) {
+        return new LoginPrefetch(name);
+    }
+
+    /**
+     * Returns true if the data has arrived or we stopped waiting for it.
+     *
+     * @return true if {@link #get()} won't wait on the data source
+     */
+    public boolean isReady() {
+        return data.isDone() || System.currentTimeMillis() - started >= etc.getInstance().getLoginPrefetchTimeout();
+    }
+
+    /**
+     * Returns the login data. If it didn't arrive in time, this either queries
+     * the data source directly or gives up, depending on the
+     * <tt>login-prefetch-fallback</tt> setting.
+     *
+     * @return the login data, or <tt>null</tt> if we gave up
+     */
+    public LoginData get() {
+        if (data.isDone()) {
+            try {
+                return data.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                log.log(Level.SEVERE, "Unable to fetch login data for " + name, ex.getCause());
+            }
+        } else {
+            data.cancel(false);
+            log.log(Level.WARNING, "Timed out while fetching login data for {0}", name);
+            if (etc.getInstance().getLoginPrefetchFallback().equalsIgnoreCase("kick")) {
+                return null;
+            }
+        }
+        return fetch(name);
+    }
+
+    /**
+     * Fetches the login data for the given player right away, using the
+     * unknown player cache.
+     *
+     * @param name
+     *            the player's name
+     * @return the login data
+     */
+    public static LoginData fetch(String name) {
+        String key = name.toLowerCase();
+        UnknownPlayer unknown = unknownPlayers.get(key);
+
+        if (unknown != null) {
+            if (unknown.expires > System.currentTimeMillis()) {
+                return unknown.copy();
+            }
+            unknownPlayers.remove(key);
+        }
+
+        LoginData loginData = etc.getDataSource().getLoginData(name);
+        int cacheTime = etc.getInstance().getLoginNegativeCacheTime();
+
+        // Only cache a confirmed "not found", not a failed lookup
+        if (!loginData.isKnown() && !loginData.isError() && cacheTime > 0) {
+            unknown = new UnknownPlayer(loginData, System.currentTimeMillis() + cacheTime * 1000L);
+            unknownPlayers.put(key, unknown);
+            return unknown.copy();
+        }
+        return loginData;
+    }
+
+    /**
+     * Remembers the player fetched for a login check the player passed, for
+     * {@link #takePlayer(String)}.
+     *
+     * @param name
+     *            the player's name
+     * @param player
+     *            the player from the login data
+     */
+    public static void admit(String name, Player player) {
+        if (player != null) {
+            admittedPlayers.put(name.toLowerCase(), new AdmittedPlayer(player, System.currentTimeMillis() + ADMITTED_TIME));
+        }
+    }
+
+    /**
+     * Returns the player fetched for the login check of the given player, if
+     * the player passed it just now. Every player is handed out once.
+     *
+     * @param name
+     *            the player's name
+     * @return the player, or <tt>null</tt> if it has to be looked up
+     */
+    public static Player takePlayer(String name) {
+        AdmittedPlayer admitted = admittedPlayers.remove(name.toLowerCase());
+
+        if (admitted == null || admitted.expires <= System.currentTimeMillis()) {
+            return null;
+        }
+        return admitted.player;
+    }
+
+    /**
+     * Drops the cached login data for the given player. Call this when the
+     * player is added to the data source or one of the lists. Passing a group
+     * entry (<tt>@group</tt>) drops everything.
+     *
+     * @param name
+     *            the player's name
+     */
+    public static void forget(String name) {
+        if (name == null) {
+            return;
+        }
+        if (name.startsWith("@")) {
+            unknownPlayers.clear();
+            admittedPlayers.clear();
+        } else {
+            unknownPlayers.remove(name.toLowerCase());
+            admittedPlayers.remove(name.toLowerCase());
+        }
+    }
+
+    private static class UnknownPlayer {
+        final LoginData data;
+        final long      expires;
+
+        UnknownPlayer(LoginData data, long expires) {
+            this.data = data;
+            this.expires = expires;
+        }
+
+        /**
+         * Copies the cached data, so every login gets a player of its own.
+         *
+         * @return a copy of the login data
+         */
+        LoginData copy() {
+            Player cached = data.getPlayer();
+            Player player = new Player();
+
+            player.setGroups(cached.getGroups());
+            player.setRestrictions(cached.getRestrictions());
+            player.setPrefix(cached.getPrefix());
+            player.setCommands(cached.getCommands());
+            player.setIps(cached.getIps());
+            return new LoginData(player, data.isKnown(), data.isOnWhitelist(), data.isOnReserveList());
+        }
+    }
+
+    private static class AdmittedPlayer {
+        final Player player;
+        final long   expires;
+
+        AdmittedPlayer(Player player, long expires) {
+            this.player = player;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+
+/**
+ * MerchantRecipeCache.java - A villager's trade list, as sent to players.
+ *
+ * The whole trade list is sent whenever a player opens the trade window of a
+ * villager. It only changes when trades are added, removed, replaced, used or
+ * restocked, so it is written out once and sent as is until one of these
+ * happens. Changes to a trade are counted by {@link OMerchantRecipe} itself.
+ */
+public class MerchantRecipeCache {
+
+    private OMerchantRecipe[] recipes = new OMerchantRecipe[0];
+    private int[]             changes = new int[0];
+    private byte[]            data;
+
+    /**
+     * Returns the given trade list as written by
+     * {@link OMerchantRecipeList#a(DataOutputStream)}, writing it out again
+     * only if it changed since the last call.
+     *
+     * @param omerchantrecipelist
+     * @return the written trade list
+     * @throws IOException
+     */
+    public byte[] get(OMerchantRecipeList omerchantrecipelist) throws IOException {
+        if (data != null && isCurrent(omerchantrecipelist)) {
+            return data;
+        }
+        ByteArrayOutputStream bytearrayoutputstream = new ByteArrayOutputStream();
+
+        // SRG omerchantrecipelist.func_77200_a(new DataOutputStream(bytearrayoutputstream));
+        omerchantrecipelist.a(new DataOutputStream(bytearrayoutputstream));
+        recipes = new OMerchantRecipe[omerchantrecipelist.size()];
+        changes = new int[recipes.length];
+        for (int i = 0; i < recipes.length; i++) {
+            recipes[i] = (OMerchantRecipe) omerchantrecipelist.get(i);
+            changes[i] = recipes[i].changes;
+        }
+        data = bytearrayoutputstream.toByteArray();
+        return data;
+    }
+
+    private boolean isCurrent(OMerchantRecipeList omerchantrecipelist) {
+        if (omerchantrecipelist.size() != recipes.length) {
+            return false;
+        }
+        for (int i = 0; i < recipes.length; i++) {
+            if (omerchantrecipelist.get(i) != recipes[i] || recipes[i].changes != changes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
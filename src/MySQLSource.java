@@ -4,7 +4,16 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 
@@ -16,6 +25,18 @@ import java.util.logging.Level;
 public class MySQLSource extends DataSource {
 
     private String table_groups, table_users, table_items, table_kits, table_warps, table_homes, table_reservelist, table_whitelist, table_bans, table_enderblocks, table_antixrayblocks, table_muted_players;
+    /**
+     * Updates that don't need anything back from the database are queued here
+     * and sent in batches, grouped by statement.
+     */
+    private final Map<String, Map<Object, Object[]>> pendingUpdates = new LinkedHashMap<String, Map<Object, Object[]>>();
+    private final Object flushLock = new Object();
+    /**
+     * The updates the running flush is writing, guarded by pendingUpdates.
+     */
+    private Map<String, Map<Object, Object[]>> writingUpdates;
+    private ScheduledExecutorService batchWriter;
+    private int batchDelay;
 
     @Override
     public void initialize() {
@@ -33,15 +54,212 @@ public class MySQLSource extends DataSource {
         table_enderblocks = properties.getString("enderblocks", "enderblocks");
         table_antixrayblocks = properties.getString("antixrayblocks", "antixrayblocks");
         table_muted_players = properties.getString("muted-players", "muted_players");
-        loadGroups();
-        loadKits();
-        loadHomes();
-        loadWarps();
-        loadItems();
-        loadEnderBlocks();
-        loadAntiXRayBlocks();
-        loadMutedPlayers();
-        loadBanList();
+        batchDelay = properties.getInt("batch-delay", 500);
+        if (batchDelay > 0 && batchWriter == null) {
+            batchWriter = Executors.newSingleThreadScheduledExecutor();
+            batchWriter.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, batchDelay, batchDelay, TimeUnit.MILLISECONDS);
+        }
+
+        // The tables are independent of each other, so load them side by side
+        ExecutorService loader = Executors.newFixedThreadPool(Math.max(1, properties.getInt("load-threads", 4)));
+        List<Future<?>> loads = new ArrayList<Future<?>>();
+
+        loads.add(loader.submit(new Runnable() { public void run() { loadGroups(); } }));
+        loads.add(loader.submit(new Runnable() { public void run() { loadKits(); } }));
+        loads.add(loader.submit(new Runnable() { public void run() { loadHomes(); } }));
+        loads.add(loader.submit(new Runnable() { public void run() { loadWarps(); } }));
+        loads.add(loader.submit(new Runnable() { public void run() { loadItems(); } }));
+        loads.add(loader.submit(new Runnable() { public void run() { loadEnderBlocks(); } }));
+        loads.add(loader.submit(new Runnable() { public void run() { loadAntiXRayBlocks(); } }));
+        loads.add(loader.submit(new Runnable() { public void run() { loadMutedPlayers(); } }));
+        loads.add(loader.submit(new Runnable() { public void run() { loadBanList(); } }));
+        loader.shutdown();
+        for (Future<?> load : loads) {
+            try {
+                load.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException ex) {
+                log.log(Level.SEVERE, "Unable to load data from the database", ex.getCause());
+            }
+        }
+    }
+
+    @Override
+    public DataSource newInstance() {
+        return new MySQLSource();
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        if (batchWriter != null) {
+            batchWriter.shutdown();
+        }
+        flush();
+    }
+
+    /**
+     * Queues an update to be sent with the next batch. A newer update with the
+     * same key replaces an older, still pending one.
+     *
+     * @param sql
+     *            the update statement
+     * @param key
+     *            identifies the updated row
+     * @param params
+     *            the statement parameters
+     */
+    private void queueUpdate(String sql, Object key, Object... params) {
+        synchronized (pendingUpdates) {
+            Map<Object, Object[]> queue = pendingUpdates.get(sql);
+
+            if (queue == null) {
+                queue = new LinkedHashMap<Object, Object[]>();
+                pendingUpdates.put(sql, queue);
+            }
+            queue.remove(key); // keep the order of the latest update
+            queue.put(key, params);
+        }
+        if (batchDelay <= 0) {
+            flush();
+        }
+    }
+
+    /**
+     * Drops a pending update, e.g. because the row is being deleted.
+     *
+     * @param sql
+     * @param key
+     */
+    private void cancelUpdate(String sql, Object key) {
+        synchronized (pendingUpdates) {
+            Map<Object, Object[]> queue = pendingUpdates.get(sql);
+
+            if (queue != null) {
+                queue.remove(key);
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+        synchronized (flushLock) {
+            Map<String, Map<Object, Object[]>> updates;
+
+            synchronized (pendingUpdates) {
+                if (pendingUpdates.isEmpty()) {
+                    return;
+                }
+                updates = new LinkedHashMap<String, Map<Object, Object[]>>(pendingUpdates);
+                pendingUpdates.clear();
+                writingUpdates = updates;
+            }
+
+            CanaryConnection conn = null;
+            Iterator<Map.Entry<String, Map<Object, Object[]>>> batches = updates.entrySet().iterator();
+
+            try {
+                conn = etc.leaseConnection();
+                while (batches.hasNext()) {
+                    Map.Entry<String, Map<Object, Object[]>> batch = batches.next();
+                    PreparedStatement ps = conn.prepareCachedStatement(batch.getKey());
+
+                    for (Object[] params : batch.getValue().values()) {
+                        for (int i = 0; i < params.length; i++) {
+                            ps.setObject(i + 1, params[i]);
+                        }
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                    batches.remove();
+                }
+            } catch (SQLException ex) {
+                log.log(Level.SEVERE, "Unable to write queued updates to the database, trying again with the next batch", ex);
+                requeue(updates);
+            } finally {
+                synchronized (pendingUpdates) {
+                    writingUpdates = null;
+                }
+                if (conn != null) {
+                    conn.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Puts updates that couldn't be written back in the queue, before the
+     * updates queued since. Updates queued since for the same row win.
+     *
+     * @param failed
+     *            the updates that weren't written
+     */
+    private void requeue(Map<String, Map<Object, Object[]>> failed) {
+        synchronized (pendingUpdates) {
+            for (Map.Entry<String, Map<Object, Object[]>> batch : failed.entrySet()) {
+                Map<Object, Object[]> queue = new LinkedHashMap<Object, Object[]>(batch.getValue());
+                Map<Object, Object[]> newer = pendingUpdates.get(batch.getKey());
+
+                if (newer != null) {
+                    for (Object key : newer.keySet()) {
+                        queue.remove(key);
+                    }
+                    queue.putAll(newer);
+                }
+                pendingUpdates.put(batch.getKey(), queue);
+            }
+        }
+    }
+
+    /**
+     * Returns the parameters of the latest queued or currently written update
+     * of the given row, or null if there is none.
+     *
+     * @param sql
+     * @param key
+     * @return the parameters
+     */
+    private Object[] getPendingUpdate(String sql, Object key) {
+        synchronized (pendingUpdates) {
+            Map<Object, Object[]> queue = pendingUpdates.get(sql);
+
+            if (queue != null && queue.containsKey(key)) {
+                return queue.get(key);
+            }
+            queue = writingUpdates != null ? writingUpdates.get(sql) : null;
+            return queue != null ? queue.get(key) : null;
+        }
+    }
+
+    /**
+     * Applies a queued modifyPlayer that may not be in the database yet to a
+     * player that was just read from it, so reads don't have to wait for the
+     * batch to be written.
+     *
+     * @param player
+     */
+    private void applyPendingUpdate(Player player) {
+        Object[] params = getPendingUpdate(getModifyPlayerStatement(), player.getSqlId());
+
+        if (params == null) {
+            return;
+        }
+        player.setGroups(((String) params[0]).split(","));
+        player.setPrefix((String) params[1]);
+        player.setCommands(((String) params[2]).split(","));
+        player.setRestrictions((Integer) params[3]);
+        player.setIps(((String) params[4]).isEmpty() ? null : ((String) params[4]).split(","));
+    }
+
+    private String getModifyPlayerStatement() {
+        return "UPDATE " + table_users + " SET groups = ?, prefix = ?, commands = ?, `admin/unrestricted` = ?, ip = ? WHERE id = ?";
     }
 
     @Override
@@ -53,9 +271,9 @@ public class MySQLSource extends DataSource {
 
             try {
                 //conn = etc.getSQLConnection();
-                conn = etc.getConnection(); //get canary connection
+                conn = etc.leaseConnection(); //get canary connection
                 groups = new ArrayList<Group>();
-                ps = conn.prepareStatement("SELECT * FROM " + table_groups);
+                ps = conn.prepareCachedStatement("SELECT * FROM " + table_groups);
                 rs = ps.executeQuery();
                 while (rs.next()) {
                     Group group = new Group();
@@ -80,9 +298,6 @@ public class MySQLSource extends DataSource {
                 log.log(Level.SEVERE, "Unable to retreive groups from group table", ex);
             } finally {
                 try {
-                    if (ps != null) {
-                        ps.close();
-                    }
                     if (rs != null) {
                         rs.close();
                     }
@@ -103,9 +318,9 @@ public class MySQLSource extends DataSource {
             ResultSet rs = null;
 
             try {
-                conn = etc.getConnection();
+                conn = etc.leaseConnection();
                 kits = new ArrayList<Kit>();
-                ps = conn.prepareStatement("SELECT * FROM " + table_kits);
+                ps = conn.prepareCachedStatement("SELECT * FROM " + table_kits);
                 rs = ps.executeQuery();
                 while (rs.next()) {
                     Kit kit = new Kit();
@@ -136,9 +351,6 @@ public class MySQLSource extends DataSource {
                 log.log(Level.SEVERE, "Unable to retreive kits from kit table", ex);
             } finally {
                 try {
-                    if (ps != null) {
-                        ps.close();
-                    }
                     if (rs != null) {
                         rs.close();
                     }
@@ -162,9 +374,9 @@ public class MySQLSource extends DataSource {
             ResultSet rs = null;
 
             try {
-                conn = etc.getConnection();
+                conn = etc.leaseConnection();
                 homes = new ArrayList<Warp>();
-                ps = conn.prepareStatement("SELECT * FROM " + table_homes);
+                ps = conn.prepareCachedStatement("SELECT * FROM " + table_homes);
                 rs = ps.executeQuery();
                 while (rs.next()) {
                     Location location = new Location();
@@ -191,9 +403,6 @@ public class MySQLSource extends DataSource {
                 log.log(Level.SEVERE, "Unable to retreive homes from home table", ex);
             } finally {
                 try {
-                    if (ps != null) {
-                        ps.close();
-                    }
                     if (rs != null) {
                         rs.close();
                     }
@@ -214,9 +423,9 @@ public class MySQLSource extends DataSource {
             ResultSet rs = null;
 
             try {
-                conn = etc.getConnection();
+                conn = etc.leaseConnection();
                 warps = new ArrayList<Warp>();
-                ps = conn.prepareStatement("SELECT * FROM " + table_warps);
+                ps = conn.prepareCachedStatement("SELECT * FROM " + table_warps);
                 rs = ps.executeQuery();
                 while (rs.next()) {
                     Location location = new Location();
@@ -243,9 +452,6 @@ public class MySQLSource extends DataSource {
                 log.log(Level.SEVERE, "Unable to retreive warps from warp table", ex);
             } finally {
                 try {
-                    if (ps != null) {
-                        ps.close();
-                    }
                     if (rs != null) {
                         rs.close();
                     }
@@ -266,9 +472,9 @@ public class MySQLSource extends DataSource {
             ResultSet rs = null;
 
             try {
-                conn = etc.getConnection();
+                conn = etc.leaseConnection();
                 items = new HashMap<String, Integer>();
-                ps = conn.prepareStatement("SELECT * FROM " + table_items);
+                ps = conn.prepareCachedStatement("SELECT * FROM " + table_items);
                 rs = ps.executeQuery();
                 while (rs.next()) {
                     items.put(rs.getString("name"), rs.getInt("itemid"));
@@ -277,9 +483,6 @@ public class MySQLSource extends DataSource {
                 log.log(Level.SEVERE, "Unable to retreive items from item table", ex);
             } finally {
                 try {
-                    if (ps != null) {
-                        ps.close();
-                    }
                     if (rs != null) {
                         rs.close();
                     }
@@ -301,8 +504,8 @@ public class MySQLSource extends DataSource {
             ResultSet rs = null;
 
             try {
-                conn = etc.getConnection();
-                ps = conn.prepareStatement("SELECT * FROM " + table_enderblocks);
+                conn = etc.leaseConnection();
+                ps = conn.prepareCachedStatement("SELECT * FROM " + table_enderblocks);
                 rs = ps.executeQuery();
                 while (rs.next()) {
                     enderBlocks.add(rs.getInt("blockid"));
@@ -311,9 +514,6 @@ public class MySQLSource extends DataSource {
                 log.log(Level.SEVERE, "Unable to retreive enderman blocks from enderblocks table", ex);
             } finally {
                 try {
-                    if (ps != null) {
-                        ps.close();
-                    }
                     if (rs != null) {
                         rs.close();
                     }
@@ -323,12 +523,7 @@ public class MySQLSource extends DataSource {
                     }
                 } catch (SQLException ex) {}
             }
-            for (int i = 0; i < 256; i += 1) {
-                OEntityEnderman.setHoldable(i, false);
-            }
-            for (Integer id : enderBlocks) {
-                OEntityEnderman.setHoldable(id, true);
-            }
+            applyEnderBlocks();
         }
     }
 
@@ -341,8 +536,8 @@ public class MySQLSource extends DataSource {
             ResultSet rs = null;
 
             try {
-                conn = etc.getConnection();
-                ps = conn.prepareStatement("SELECT * FROM " + table_antixrayblocks);
+                conn = etc.leaseConnection();
+                ps = conn.prepareCachedStatement("SELECT * FROM " + table_antixrayblocks);
                 rs = ps.executeQuery();
                 while (rs.next()) {
                     antiXRayBlocks.add(rs.getInt("blockid"));
@@ -351,9 +546,6 @@ public class MySQLSource extends DataSource {
                 log.log(Level.SEVERE, "Unable to retreive anti-xray blocks from anti-xray table", ex);
             } finally {
                 try {
-                    if (ps != null) {
-                        ps.close();
-                    }
                     if (rs != null) {
                         rs.close();
                     }
@@ -369,13 +561,14 @@ public class MySQLSource extends DataSource {
     // Users
     @Override
     public void addPlayer(Player player) {
+        LoginPrefetch.forget(player.getName());
         CanaryConnection conn = null;
         PreparedStatement ps = null;
         ResultSet rs = null;
 
         try {
-            conn = etc.getConnection();
-            ps = conn.prepareStatement("INSERT INTO " + table_users + " (name, groups, prefix, commands, `admin/unrestricted`, ip) VALUES (?,?,?,?,?,?)", Statement.RETURN_GENERATED_KEYS);
+            conn = etc.leaseConnection();
+            ps = conn.prepareCachedStatement("INSERT INTO " + table_users + " (name, groups, prefix, commands, `admin/unrestricted`, ip) VALUES (?,?,?,?,?,?)", Statement.RETURN_GENERATED_KEYS);
             ps.setString(1, player.getName());
             ps.setString(2, etc.combineSplit(0, player.getGroups(), ","));
             ps.setString(3, player.getPrefix());
@@ -392,9 +585,6 @@ public class MySQLSource extends DataSource {
             log.log(Level.SEVERE, "Unable to insert user into users table", ex);
         } finally {
             try {
-                if (ps != null) {
-                    ps.close();
-                }
                 if (rs != null) {
                     rs.close();
                 }
@@ -408,32 +598,10 @@ public class MySQLSource extends DataSource {
 
     @Override
     public void modifyPlayer(Player player) {
-        CanaryConnection conn = null;
-        PreparedStatement ps = null;
-
-        try {
-            conn = etc.getConnection();
-            ps = conn.prepareStatement("UPDATE " + table_users + " SET groups = ?, prefix = ?, commands = ?, `admin/unrestricted` = ?, ip = ? WHERE id = ?");
-            ps.setString(1, etc.combineSplit(0, player.getGroups(), ","));
-            ps.setString(2, player.getPrefix());
-            ps.setString(3, etc.combineSplit(0, player.getCommands(), ","));
-            ps.setInt(4, player.getRestrictions());
-            ps.setString(5, player.getIps() != null ? etc.combineSplit(0, player.getIps(), ",") : "");
-            ps.setInt(6, player.getSqlId());
-            ps.executeUpdate();
-        } catch (SQLException ex) {
-            log.log(Level.SEVERE, "Unable to update user in users table", ex);
-        } finally {
-            try {
-                if (ps != null) {
-                    ps.close();
-                }
-                if (conn != null) {
-                    //conn.close();
-                    conn.release();
-                }
-            } catch (SQLException ex) {}
-        }
+        LoginPrefetch.forget(player.getName());
+        queueUpdate(getModifyPlayerStatement(), player.getSqlId(),
+                etc.combineSplit(0, player.getGroups(), ","), player.getPrefix(), etc.combineSplit(0, player.getCommands(), ","),
+                player.getRestrictions(), player.getIps() != null ? etc.combineSplit(0, player.getIps(), ",") : "", player.getSqlId());
     }
 
     @Override
@@ -444,8 +612,8 @@ public class MySQLSource extends DataSource {
         ResultSet rs = null;
 
         try {
-            conn = etc.getConnection();
-            ps = conn.prepareStatement("SELECT * FROM " + table_users + " WHERE name = ?");
+            conn = etc.leaseConnection();
+            ps = conn.prepareCachedStatement("SELECT * FROM " + table_users + " WHERE name = ?");
             ps.setString(1, player);
             rs = ps.executeQuery();
             if (rs.next()) {
@@ -455,9 +623,6 @@ public class MySQLSource extends DataSource {
             log.log(Level.SEVERE, "Unable to check if user exists", ex);
         } finally {
             try {
-                if (ps != null) {
-                    ps.close();
-                }
                 if (rs != null) {
                     rs.close();
                 }
@@ -495,13 +660,14 @@ public class MySQLSource extends DataSource {
     // Homes
     @Override
     public void addHome(Warp home) {
+        changed(Table.HOMES);
         CanaryConnection conn = null;
         PreparedStatement ps = null;
         ResultSet rs = null;
 
         try {
-            conn = etc.getConnection();
-            ps = conn.prepareStatement("INSERT INTO " + table_homes + " (name, x, y, z, rotX, rotY, `group`, `world`,`dimension`) VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
+            conn = etc.leaseConnection();
+            ps = conn.prepareCachedStatement("INSERT INTO " + table_homes + " (name, x, y, z, rotX, rotY, `group`, `world`,`dimension`) VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
             ps.setString(1, home.Name);
             ps.setDouble(2, home.Location.x);
             ps.setDouble(3, home.Location.y);
@@ -525,9 +691,6 @@ public class MySQLSource extends DataSource {
             log.log(Level.SEVERE, "Unable to insert home into homes table", ex);
         } finally {
             try {
-                if (ps != null) {
-                    ps.close();
-                }
                 if (rs != null) {
                     rs.close();
                 }
@@ -541,60 +704,37 @@ public class MySQLSource extends DataSource {
 
     @Override
     public void changeHome(Warp home) {
-        CanaryConnection conn = null;
-        PreparedStatement ps = null;
+        changed(Table.HOMES);
+        queueUpdate("UPDATE " + table_homes + " SET x = ?, y = ?, z = ?, rotX = ?, rotY = ?, `group` = ?, `world` = ? WHERE name = ?", home.Name.toLowerCase(),
+                home.Location.x, home.Location.y, home.Location.z, home.Location.rotX, home.Location.rotY,
+                home.Group, home.Location.world, home.Name);
 
-        try {
-            conn = etc.getConnection();
-            ps = conn.prepareStatement("UPDATE " + table_homes + " SET x = ?, y = ?, z = ?, rotX = ?, rotY = ?, `group` = ?, `world` = ? WHERE name = ?");
-            ps.setDouble(1, home.Location.x);
-            ps.setDouble(2, home.Location.y);
-            ps.setDouble(3, home.Location.z);
-            ps.setFloat(4, home.Location.rotX);
-            ps.setFloat(5, home.Location.rotY);
-            ps.setString(6, home.Group);
-            ps.setString(7, home.Location.world);
-            ps.setString(8, home.Name);
-            ps.executeUpdate();
-
-            synchronized (homeLock) {
-                Warp toRem = null;
+        synchronized (homeLock) {
+            Warp toRem = null;
 
-                for (Warp h : homes) {
-                    if (h.Name.equalsIgnoreCase(home.Name)) {
-                        toRem = h;
-                    }
+            for (Warp h : homes) {
+                if (h.Name.equalsIgnoreCase(home.Name)) {
+                    toRem = h;
                 }
-                if (toRem != null) {
-                    homes.remove(toRem);
-                }
-                homes.add(home);
             }
-        } catch (SQLException ex) {
-            log.log(Level.SEVERE, "Unable to update home in homes table", ex);
-        } finally {
-            try {
-                if (ps != null) {
-                    ps.close();
-                }
-                if (conn != null) {
-                    //conn.close();
-                    conn.release();
-                }
-            } catch (SQLException ex) {}
+            if (toRem != null) {
+                homes.remove(toRem);
+            }
+            homes.add(home);
         }
     }
 
     // Warps
     @Override
     public void addWarp(Warp warp) {
+        changed(Table.WARPS);
         CanaryConnection conn = null;
         PreparedStatement ps = null;
         ResultSet rs = null;
 
         try {
-            conn = etc.getConnection();
-            ps = conn.prepareStatement("INSERT INTO " + table_warps + " (name, x, y, z, rotX, rotY, dimension, `group`, `world`) VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
+            conn = etc.leaseConnection();
+            ps = conn.prepareCachedStatement("INSERT INTO " + table_warps + " (name, x, y, z, rotX, rotY, dimension, `group`, `world`) VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
             ps.setString(1, warp.Name);
             ps.setDouble(2, warp.Location.x);
             ps.setDouble(3, warp.Location.y);
@@ -617,9 +757,6 @@ public class MySQLSource extends DataSource {
             log.log(Level.SEVERE, "Unable to insert warp into warps table", ex);
         } finally {
             try {
-                if (ps != null) {
-                    ps.close();
-                }
                 if (rs != null) {
                     rs.close();
                 }
@@ -633,73 +770,50 @@ public class MySQLSource extends DataSource {
 
     @Override
     public void changeWarp(Warp warp) {
-        CanaryConnection conn = null;
-        PreparedStatement ps = null;
+        changed(Table.WARPS);
+        queueUpdate(getChangeWarpStatement(), warp.Name.toLowerCase(),
+                warp.Location.x, warp.Location.y, warp.Location.z, warp.Location.rotX, warp.Location.rotY,
+                warp.Location.dimension, warp.Group, warp.Location.world, warp.Name);
 
-        try {
-            conn = etc.getConnection();
-            ps = conn.prepareStatement("UPDATE " + table_warps + " SET x = ?, y = ?, z = ?, rotX = ?, rotY = ?, dimension = ?, `group` = ?, `world` = ? WHERE name = ?");
-            ps.setDouble(1, warp.Location.x);
-            ps.setDouble(2, warp.Location.y);
-            ps.setDouble(3, warp.Location.z);
-            ps.setFloat(4, warp.Location.rotX);
-            ps.setFloat(5, warp.Location.rotY);
-            ps.setInt(6, warp.Location.dimension);
-            ps.setString(7, warp.Group);
-            ps.setString(8, warp.Location.world);
-            ps.setString(9, warp.Name);
-            ps.executeUpdate();
-
-            synchronized (warpLock) {
-                Warp toRem = null;
+        synchronized (warpLock) {
+            Warp toRem = null;
 
-                for (Warp h : warps) {
-                    if (h.Name.equalsIgnoreCase(warp.Name)) {
-                        toRem = h;
-                    }
-                }
-                if (toRem != null) {
-                    warps.remove(toRem);
+            for (Warp h : warps) {
+                if (h.Name.equalsIgnoreCase(warp.Name)) {
+                    toRem = h;
                 }
-                warps.add(warp);
             }
-        } catch (SQLException ex) {
-            log.log(Level.SEVERE, "Unable to update warp in warps table", ex);
-        } finally {
-            try {
-                if (ps != null) {
-                    ps.close();
-                }
-                if (conn != null) {
-                    //conn.close();
-                    conn.release();
-                }
-            } catch (SQLException ex) {}
+            if (toRem != null) {
+                warps.remove(toRem);
+            }
+            warps.add(warp);
         }
     }
 
+    private String getChangeWarpStatement() {
+        return "UPDATE " + table_warps + " SET x = ?, y = ?, z = ?, rotX = ?, rotY = ?, dimension = ?, `group` = ?, `world` = ? WHERE name = ?";
+    }
+
     @Override
     public void removeWarp(Warp warp) {
+        changed(Table.WARPS);
+        cancelUpdate(getChangeWarpStatement(), warp.Name.toLowerCase());
+
         CanaryConnection conn = null;
         PreparedStatement ps = null;
 
         try {
-            conn = etc.getConnection();
-            ps = conn.prepareStatement("DELETE FROM " + table_warps + " WHERE id = ?");
+            conn = etc.leaseConnection();
+            ps = conn.prepareCachedStatement("DELETE FROM " + table_warps + " WHERE id = ?");
             ps.setDouble(1, warp.ID);
             ps.executeUpdate();
         } catch (SQLException ex) {
             log.log(Level.SEVERE, "Unable to delete warp from warps table", ex);
         } finally {
-            try {
-                if (ps != null) {
-                    ps.close();
-                }
-                if (conn != null) {
-                    //conn.close();
-                    conn.release();
-                }
-            } catch (SQLException ex) {}
+            if (conn != null) {
+                //conn.close();
+                conn.release();
+            }
         }
         synchronized (warpLock) {
             warps.remove(warp);
@@ -709,6 +823,7 @@ public class MySQLSource extends DataSource {
     // Whitelist
     @Override
     public void addToWhitelist(String name) {
+        LoginPrefetch.forget(name);
         if (isUserOnWhitelist(name)) {
             return;
         }
@@ -717,27 +832,23 @@ public class MySQLSource extends DataSource {
         PreparedStatement ps = null;
 
         try {
-            conn = etc.getConnection();
-            ps = conn.prepareStatement("INSERT INTO " + table_whitelist + " VALUES(?)");
+            conn = etc.leaseConnection();
+            ps = conn.prepareCachedStatement("INSERT INTO " + table_whitelist + " VALUES(?)");
             ps.setString(1, name);
             ps.executeUpdate();
         } catch (SQLException ex) {
             log.log(Level.SEVERE, "Unable to update whitelist", ex);
         } finally {
-            try {
-                if (ps != null) {
-                    ps.close();
-                }
-                if (conn != null) {
-                    //conn.close();
-                    conn.release();
-                }
-            } catch (SQLException ex) {}
+            if (conn != null) {
+                //conn.close();
+                conn.release();
+            }
         }
     }
 
     @Override
     public void removeFromWhitelist(String name) {
+        LoginPrefetch.forget(name);
         if (!isUserOnWhitelist(name)) {
             return;
         }
@@ -746,22 +857,17 @@ public class MySQLSource extends DataSource {
         PreparedStatement ps = null;
 
         try {
-            conn = etc.getConnection();
-            ps = conn.prepareStatement("DELETE FROM " + table_whitelist + " WHERE name = ?");
+            conn = etc.leaseConnection();
+            ps = conn.prepareCachedStatement("DELETE FROM " + table_whitelist + " WHERE name = ?");
             ps.setString(1, name);
             ps.executeUpdate();
         } catch (SQLException ex) {
             log.log(Level.SEVERE, "Unable to update whitelist", ex);
         } finally {
-            try {
-                if (ps != null) {
-                    ps.close();
-                }
-                if (conn != null) {
-                    //conn.close();
-                    conn.release();
-                }
-            } catch (SQLException ex) {}
+            if (conn != null) {
+                //conn.close();
+                conn.release();
+            }
         }
     }
 
@@ -773,75 +879,140 @@ public class MySQLSource extends DataSource {
         ResultSet rs = null;
 
         try {
-            conn = etc.getConnection();
-            ps = conn.prepareStatement("SELECT * FROM " + table_users + " WHERE name = ?");
+            conn = etc.leaseConnection();
+            ps = conn.prepareCachedStatement("SELECT * FROM " + table_users + " WHERE name = ?");
             ps.setString(1, name);
             rs = ps.executeQuery();
             if (rs.next()) {
-                player.setSqlId(rs.getInt("id"));
-                player.setGroups(rs.getString("groups").split(","));
-                if(player.getGroups().length == 0){
-                    player.setGroups(new String[] {etc.getDataSource().getDefaultGroup().Name});
+                readPlayer(rs, player);
+                applyPendingUpdate(player); // queued changes to the user may not be written yet
+            } else {
+                applyDefaultGroup(player);
+            }
+        } catch (SQLException ex) {
+            log.log(Level.SEVERE, "Unable to retreive users from user table", ex);
+        } finally {
+            try {
+                if (rs != null) {
+                    rs.close();
                 }
-                player.setCommands(rs.getString("commands").split(","));
-                player.setPrefix(rs.getString("prefix"));
-                player.setRestrictions(rs.getInt("admin/unrestricted"));
-                if(rs.wasNull()) {
-                    for (String str : player.getGroups()) {
-                        Group group = etc.getDataSource().getGroup(str);
-
-                        if (group != null) {
-                            if (group.Administrator) {
-                                player.setRestrictions(2);
-                                break;
-                            } else if (group.IgnoreRestrictions) {
-                                player.setRestrictions(1);
-                            } else if (!group.CanModifyWorld && !player.canIgnoreRestrictions()) {
-                                player.setRestrictions(-1);
-                            }
-                        }
-                    }
+                if (conn != null) {
+                    // conn.close();
+                    conn.release();
                 }
-                StringBuilder ips = new StringBuilder();
-                for (String ip : rs.getString("ip").split(",")) {
-                    if (ip.isEmpty() || ip.equals(" ") || !ip.matches("\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}")) {
-                        continue;
+            } catch (SQLException ex) {}
+        }
+        return player;
+    }
+
+    /**
+     * Reads the player in the current row of a users table result.
+     *
+     * @param rs
+     * @param player
+     * @throws SQLException
+     */
+    private void readPlayer(ResultSet rs, Player player) throws SQLException {
+        player.setSqlId(rs.getInt("id"));
+        player.setGroups(rs.getString("groups").split(","));
+        if(player.getGroups().length == 0){
+            player.setGroups(new String[] {etc.getDataSource().getDefaultGroup().Name});
+        }
+        player.setCommands(rs.getString("commands").split(","));
+        player.setPrefix(rs.getString("prefix"));
+        player.setRestrictions(rs.getInt("admin/unrestricted"));
+        if(rs.wasNull()) {
+            for (String str : player.getGroups()) {
+                Group group = etc.getDataSource().getGroup(str);
+
+                if (group != null) {
+                    if (group.Administrator) {
+                        player.setRestrictions(2);
+                        break;
+                    } else if (group.IgnoreRestrictions) {
+                        player.setRestrictions(1);
+                    } else if (!group.CanModifyWorld && !player.canIgnoreRestrictions()) {
+                        player.setRestrictions(-1);
                     }
-                    ips.append(ip + ",");
-                }
-                if (!ips.toString().isEmpty()) {
-                    player.setIps(ips.toString().split(","));
                 }
-                player.setIps(null);
             }
-            else{
-                Group group = etc.getDataSource().getDefaultGroup();
-                player.setGroups(new String[] {group.Name});
-                if (group.Administrator) {
-                    player.setRestrictions(2);
-                } else if (group.IgnoreRestrictions) {
-                    player.setRestrictions(1);
-                } else if (!group.CanModifyWorld && !player.canIgnoreRestrictions()) {
-                    player.setRestrictions(-1);
+        }
+        StringBuilder ips = new StringBuilder();
+        for (String ip : rs.getString("ip").split(",")) {
+            if (ip.isEmpty() || ip.equals(" ") || !ip.matches("\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}")) {
+                continue;
             }
+            ips.append(ip + ",");
+        }
+        if (!ips.toString().isEmpty()) {
+            player.setIps(ips.toString().split(","));
+        }
+        player.setIps(null);
+    }
+
+    /**
+     * Puts a player that isn't in the users table in the default group.
+     *
+     * @param player
+     */
+    private void applyDefaultGroup(Player player) {
+        Group group = etc.getDataSource().getDefaultGroup();
+        player.setGroups(new String[] {group.Name});
+        if (group.Administrator) {
+            player.setRestrictions(2);
+        } else if (group.IgnoreRestrictions) {
+            player.setRestrictions(1);
+        } else if (!group.CanModifyWorld && !player.canIgnoreRestrictions()) {
+            player.setRestrictions(-1);
+        }
+    }
+
+    @Override
+    public LoginData getLoginData(String name) {
+        Player player = new Player();
+        boolean known = false, whitelisted = false, reserved = false;
+        CanaryConnection conn = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+
+        try {
+            conn = etc.leaseConnection();
+            // One round trip: the user row (if any) plus the whitelist and reservelist checks
+            ps = conn.prepareCachedStatement("SELECT u.*, "
+                    + "(SELECT COUNT(*) FROM " + table_whitelist + " AS w WHERE w.name = ?) AS canary_whitelisted, "
+                    + "(SELECT COUNT(*) FROM " + table_reservelist + " AS r WHERE r.name = ? OR (r.name LIKE '@%' AND FIND_IN_SET(SUBSTRING(r.name, 2), IFNULL(u.groups, ?)) > 0)) AS canary_reserved "
+                    + "FROM (SELECT 1) AS canary_dummy LEFT JOIN " + table_users + " AS u ON u.name = ?");
+            ps.setString(1, name);
+            ps.setString(2, name);
+            ps.setString(3, etc.getDataSource().getDefaultGroup().Name);
+            ps.setString(4, name);
+            rs = ps.executeQuery();
+            if (rs.next()) {
+                rs.getInt("id");
+                known = !rs.wasNull();
+                if (known) {
+                    readPlayer(rs, player);
+                    applyPendingUpdate(player); // queued changes to the user may not be written yet
+                } else {
+                    applyDefaultGroup(player);
+                }
+                whitelisted = rs.getInt("canary_whitelisted") > 0;
+                reserved = rs.getInt("canary_reserved") > 0;
             }
         } catch (SQLException ex) {
-            log.log(Level.SEVERE, "Unable to retreive users from user table", ex);
+            log.log(Level.SEVERE, "Unable to retreive login data for " + name, ex);
+            return LoginData.error();
         } finally {
             try {
-                if (ps != null) {
-                    ps.close();
-                }
                 if (rs != null) {
                     rs.close();
                 }
                 if (conn != null) {
-                    // conn.close();
                     conn.release();
                 }
             } catch (SQLException ex) {}
         }
-        return player;
+        return new LoginData(player, known, whitelisted, reserved);
     }
 
     @Override
@@ -853,8 +1024,8 @@ public class MySQLSource extends DataSource {
             ResultSet rs = null;
 
             try {
-                conn = etc.getConnection();
-                ps = conn.prepareStatement("SELECT * FROM " + table_bans);
+                conn = etc.leaseConnection();
+                ps = conn.prepareCachedStatement("SELECT * FROM " + table_bans);
                 rs = ps.executeQuery();
                 while (rs.next()) {
                     Ban ban = new Ban();
@@ -878,9 +1049,6 @@ public class MySQLSource extends DataSource {
                 log.log(Level.SEVERE, "Unable to retreive bans from ban table", ex);
             } finally {
                 try {
-                    if (ps != null) {
-                        ps.close();
-                    }
                     if (rs != null) {
                         rs.close();
                     }
@@ -890,6 +1058,7 @@ public class MySQLSource extends DataSource {
                     }
                 } catch (SQLException ex) {}
             }
+            indexBans();
         }
     }
 
@@ -901,8 +1070,8 @@ public class MySQLSource extends DataSource {
         ResultSet rs = null;
 
         try {
-            conn = etc.getConnection();
-            ps = conn.prepareStatement("SELECT * FROM " + table_whitelist + " WHERE name = ?");
+            conn = etc.leaseConnection();
+            ps = conn.prepareCachedStatement("SELECT * FROM " + table_whitelist + " WHERE name = ?");
             ps.setString(1, user);
             rs = ps.executeQuery();
             if (rs.next()) {
@@ -912,9 +1081,6 @@ public class MySQLSource extends DataSource {
             log.log(Level.SEVERE, "Unable to check if user is on whitelist", ex);
         } finally {
             try {
-                if (ps != null) {
-                    ps.close();
-                }
                 if (rs != null) {
                     rs.close();
                 }
@@ -929,14 +1095,15 @@ public class MySQLSource extends DataSource {
 
     @Override
     public void addBan(Ban ban) {
+        changed(Table.BANS);
         String user = ban.getIp().isEmpty() ? ban.getName() : ban.getIp();
         CanaryConnection conn = null;
         PreparedStatement ps = null;
         ResultSet rs = null;
 
         try {
-            conn = etc.getConnection();
-            ps = conn.prepareStatement("INSERT INTO " + table_bans + " (user, reason, timestamp) VALUES (?, ?, ?)");
+            conn = etc.leaseConnection();
+            ps = conn.prepareCachedStatement("INSERT INTO " + table_bans + " (user, reason, timestamp) VALUES (?, ?, ?)");
             ps.setString(1, user);
             ps.setString(2, ban.getReason());
             ps.setInt(3, ban.getTimestamp());
@@ -952,14 +1119,13 @@ public class MySQLSource extends DataSource {
             try {
                 if (rs != null)
                     rs.close();
-                if (ps != null)
-                    ps.close();
                 if (conn != null)
                     conn.release();
             } catch (SQLException ex) {}
         }
         synchronized (banLock) {
             bans.add(ban);
+            banIndex.add(ban);
         }
     }
 
@@ -971,8 +1137,8 @@ public class MySQLSource extends DataSource {
         ResultSet rs = null;
 
         try {
-            conn = etc.getConnection();
-            ps = conn.prepareStatement("SELECT * FROM " + table_reservelist + " WHERE name = ?");
+            conn = etc.leaseConnection();
+            ps = conn.prepareCachedStatement("SELECT * FROM " + table_reservelist + " WHERE name = ?");
             ps.setString(1, user);
             rs = ps.executeQuery();
             if (rs.next()) {
@@ -982,9 +1148,6 @@ public class MySQLSource extends DataSource {
             log.log(Level.SEVERE, "Unable to check if user is on reservelist", ex);
         } finally {
             try {
-                if (ps != null) {
-                    ps.close();
-                }
                 if (rs != null) {
                     rs.close();
                 }
@@ -1011,6 +1174,7 @@ public class MySQLSource extends DataSource {
     // Reservelist
     @Override
     public void addToReserveList(String name) {
+        LoginPrefetch.forget(name);
         if (isUserOnReserveList(name)) {
             return;
         }
@@ -1019,27 +1183,23 @@ public class MySQLSource extends DataSource {
         PreparedStatement ps = null;
 
         try {
-            conn = etc.getConnection();
-            ps = conn.prepareStatement("INSERT INTO " + table_reservelist + " VALUES(?)");
+            conn = etc.leaseConnection();
+            ps = conn.prepareCachedStatement("INSERT INTO " + table_reservelist + " VALUES(?)");
             ps.setString(1, name);
             ps.executeUpdate();
         } catch (SQLException ex) {
             log.log(Level.SEVERE, "Unable to update reservelist", ex);
         } finally {
-            try {
-                if (ps != null) {
-                    ps.close();
-                }
-                if (conn != null) {
-                    //conn.close();
-                    conn.release();
-                }
-            } catch (SQLException ex) {}
+            if (conn != null) {
+                //conn.close();
+                conn.release();
+            }
         }
     }
 
     @Override
     public void removeFromReserveList(String name) {
+        LoginPrefetch.forget(name);
         if (!isUserOnReserveList(name)) {
             return;
         }
@@ -1048,22 +1208,17 @@ public class MySQLSource extends DataSource {
         PreparedStatement ps = null;
 
         try {
-            conn = etc.getConnection();
-            ps = conn.prepareStatement("DELETE FROM " + table_reservelist + " WHERE name = ?");
+            conn = etc.leaseConnection();
+            ps = conn.prepareCachedStatement("DELETE FROM " + table_reservelist + " WHERE name = ?");
             ps.setString(1, name);
             ps.executeUpdate();
         } catch (SQLException ex) {
             log.log(Level.SEVERE, "Unable to update reservelist", ex);
         } finally {
-            try {
-                if (ps != null) {
-                    ps.close();
-                }
-                if (conn != null) {
-                    // conn.close();
-                    conn.release();
-                }
-            } catch (SQLException ex) {}
+            if (conn != null) {
+                // conn.close();
+                conn.release();
+            }
         }
     }
 
@@ -1071,11 +1226,12 @@ public class MySQLSource extends DataSource {
     public void loadMutedPlayers() {
         CanaryConnection conn = null;
         PreparedStatement ps = null;
+        ResultSet rs = null;
 
         try {
-            conn = etc.getConnection();
-            ps = conn.prepareStatement("SELECT * FROM " + table_muted_players);
-            ResultSet rs = ps.executeQuery();
+            conn = etc.leaseConnection();
+            ps = conn.prepareCachedStatement("SELECT * FROM " + table_muted_players);
+            rs = ps.executeQuery();
             while (rs.next()) {
                 this.mutedPlayers.add(rs.getString("name"));
             }
@@ -1083,26 +1239,27 @@ public class MySQLSource extends DataSource {
             log.log(Level.SEVERE, "Unable to load muted players list", ex);
         } finally {
             try {
-                if (ps != null) {
-                    ps.close();
-                }
-                if (conn != null) {
-                    //conn.close();
-                    conn.release();
+                if (rs != null) {
+                    rs.close();
                 }
             } catch (SQLException ex) {}
+            if (conn != null) {
+                //conn.close();
+                conn.release();
+            }
         }
 
     }
 
     @Override
     public void setPlayerToMuteList(String name) {
+        changed(Table.MUTED_PLAYERS);
         CanaryConnection conn = null;
         PreparedStatement ps = null;
 
         try {
-            conn = etc.getConnection();
-            ps = conn.prepareStatement("INSERT INTO " + table_muted_players + "(name) VALUES (?)");
+            conn = etc.leaseConnection();
+            ps = conn.prepareCachedStatement("INSERT INTO " + table_muted_players + "(name) VALUES (?)");
             ps.setString(1, name);
             ps.executeUpdate();
             this.mutedPlayers.add(name);
@@ -1110,27 +1267,23 @@ public class MySQLSource extends DataSource {
         } catch (SQLException ex) {
             log.log(Level.SEVERE, "Unable to add player to muted players list", ex);
         } finally {
-            try {
-                if (ps != null) {
-                    ps.close();
-                }
-                if (conn != null) {
-                    //conn.close();
-                    conn.release();
-                }
-            } catch (SQLException ex) {}
+            if (conn != null) {
+                //conn.close();
+                conn.release();
+            }
         }
 
     }
 
     @Override
     public void removePlayerFromMuteList(String name) {
+        changed(Table.MUTED_PLAYERS);
         CanaryConnection conn = null;
         PreparedStatement ps = null;
 
         try {
-            conn = etc.getConnection();
-            ps = conn.prepareStatement("DELETE FROM " + table_muted_players + " WHERE name = ?");
+            conn = etc.leaseConnection();
+            ps = conn.prepareCachedStatement("DELETE FROM " + table_muted_players + " WHERE name = ?");
             ps.setString(1, name);
             ps.executeUpdate();
             this.mutedPlayers.remove(name);
@@ -1138,26 +1291,23 @@ public class MySQLSource extends DataSource {
         } catch (SQLException ex) {
             log.log(Level.SEVERE, "Unable to add player to muted players list", ex);
         } finally {
-            try {
-                if (ps != null) {
-                    ps.close();
-                }
-                if (conn != null) {
-                    //conn.close();
-                    conn.release();
-                }
-            } catch (SQLException ex) {}
+            if (conn != null) {
+                //conn.close();
+                conn.release();
+            }
         }
     }
 
     @Override
     public void expireBan(Ban ban) {
+        changed(Table.BANS);
         int now = (int) (System.currentTimeMillis() / 1000);
 
         boolean found = false;
         synchronized (banLock) {
             for (Ban b: bans)
                 if (b.equals(ban)) {
+                    banIndex.remove(b);
                     found = true;
                     b.setTimestamp(now);
                     ban = b;
@@ -1167,24 +1317,6 @@ public class MySQLSource extends DataSource {
         if (!found)
             return;
 
-        CanaryConnection conn = null;
-        PreparedStatement ps = null;
-
-        try {
-            conn = etc.getConnection();
-            ps = conn.prepareStatement("UPDATE " + table_bans + " SET timestamp=? WHERE id=?");
-            ps.setInt(1, now);
-            ps.setInt(2, ban.getId());
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            log.log(Level.SEVERE, "Could not expire ban", e);
-        } finally {
-            try {
-                if (ps != null)
-                    ps.close();
-                if (conn != null)
-                    conn.release();
-            } catch (SQLException ex) {}
-        }
+        queueUpdate("UPDATE " + table_bans + " SET timestamp=? WHERE id=?", ban.getId(), now, ban.getId());
     }
 }
@@ -130,10 +130,7 @@ public class OBlockFire extends OBlock {
 
                                             // CanaryMod: dynamic spreading of fire.
                                             // avg call amount per placed block of fire ~ 4
-                                            Block block = new Block(oworld.world, oworld.world.getBlockIdAt(i1, k1, j1), i1, k1, j1);
-
-                                            block.setStatus(3);
-                                            if (!(Boolean) etc.getLoader().callHook(PluginLoader.Hook.IGNITE, block, null)) {
+                                            if (!etc.getLoader().hasListeners(PluginLoader.Hook.IGNITE) || !(Boolean) etc.getLoader().callHook(PluginLoader.Hook.IGNITE, this.igniteBlock(oworld, oworld.world.getBlockIdAt(i1, k1, j1), i1, k1, j1, 3), null)) {
                                                 oworld.f(i1, k1, j1, this.cF, k2, 3);
                                             }
                                         }
@@ -157,6 +154,11 @@ public class OBlockFire extends OBlock {
         if (random.nextInt(l) < j1) {
             boolean flag = oworld.a(i, j, k) == OBlock.ar.cF;
 
+            // CanaryMod: TNT in a chunk that can't take more primed TNT doesn't burn
+            if (flag && !EntityStacker.canPrime(oworld, i, k)) {
+                return;
+            }
+
             if (random.nextInt(i1 + 10) < 5 && !oworld.F(i, j, k)) {
                 int k1 = i1 + random.nextInt(5) / 4;
 
@@ -165,17 +167,12 @@ public class OBlockFire extends OBlock {
                 }
 
                 // CanaryMod: VERY SLOW dynamic spreading of fire.
-                Block block = new Block(oworld.world, oworld.world.getBlockIdAt(i, j, k), i, j, k);
-
-                block.setStatus(3);
-                if (!(Boolean) etc.getLoader().callHook(PluginLoader.Hook.IGNITE, block, null)) {
+                if (!etc.getLoader().hasListeners(PluginLoader.Hook.IGNITE) || !(Boolean) etc.getLoader().callHook(PluginLoader.Hook.IGNITE, this.igniteBlock(oworld, oworld.world.getBlockIdAt(i, j, k), i, j, k, 3), null)) {
                     oworld.f(i, j, k, this.cF, k1, 3);
                 }
             } else {
                 // CanaryMod: fire destroying a block.
-                Block block = new Block(oworld.world, oworld.a(i, j, k), i, j, k);
-                block.setStatus(4);
-                if (!(Boolean) etc.getLoader().callHook(PluginLoader.Hook.IGNITE, block, null)) {
+                if (!etc.getLoader().hasListeners(PluginLoader.Hook.IGNITE) || !(Boolean) etc.getLoader().callHook(PluginLoader.Hook.IGNITE, this.igniteBlock(oworld, oworld.a(i, j, k), i, j, k, 4), null)) {
                     oworld.i(i, j, k);
                 }
             }
@@ -240,4 +237,12 @@ public class OBlockFire extends OBlock {
             }
         }
     }
+
+    // CanaryMod: the block handed to the IGNITE hook, only built if a plugin listens
+    private Block igniteBlock(OWorld oworld, int id, int i, int j, int k, int status) {
+        Block block = new Block(oworld.world, id, i, j, k);
+
+        block.setStatus(status);
+        return block;
+    }
 }
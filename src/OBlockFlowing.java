@@ -21,9 +21,16 @@ public class OBlockFlowing extends OBlockFluid {
     }
 
     public void a(OWorld oworld, int i, int j, int k, Random random) {
-        // CanaryMod: Store originating block
+        // CanaryMod: put the update off if this chunk's fluid used up its budget
+        if (!oworld.fluidFlow.tryUpdate(i, k)) {
+            oworld.a(i, j, k, this.cF, 1);
+            return;
+        }
+
+        // CanaryMod: Store originating block, only needed if a plugin listens
         World world = oworld.world;
-        Block blockFrom = world.getBlockAt(i, j, k);
+        boolean flowHooked = !etc.getInstance().isFluidFlowBatching() && etc.getLoader().hasListeners(PluginLoader.Hook.FLOW);
+        Block blockFrom = flowHooked ? world.getBlockAt(i, j, k) : null;
 
         int l = this.l_(oworld, i, j, k);
         byte b0 = 1;
@@ -97,9 +104,7 @@ public class OBlockFlowing extends OBlockFluid {
                 return;
             }
             // CanaryMod: downwards flow.
-            Block blockTo = new Block(world, 0, i, j - 1, k);
-
-            if (!((Boolean) etc.getLoader().callHook(PluginLoader.Hook.FLOW, blockFrom, blockTo))) {
+            if (this.canFlow(oworld, blockFrom, i, j - 1, k)) {
                 if (l >= 8) {
                     this.e(oworld, i, j - 1, k, l);
                 } else {
@@ -120,33 +125,25 @@ public class OBlockFlowing extends OBlockFluid {
 
             // CanaryMod: sidewards flow.
             if (aboolean[0]) {
-                Block blockTo = new Block(world, 0, i - 1, j, k);
-
-                if (!((Boolean) etc.getLoader().callHook(PluginLoader.Hook.FLOW, blockFrom, blockTo))) {
+                if (this.canFlow(oworld, blockFrom, i - 1, j, k)) {
                     this.e(oworld, i - 1, j, k, j1);
                 }
             }
 
             if (aboolean[1]) {
-                Block blockTo = new Block(world, 0, i + 1, j, k);
-
-                if (!((Boolean) etc.getLoader().callHook(PluginLoader.Hook.FLOW, blockFrom, blockTo))) {
+                if (this.canFlow(oworld, blockFrom, i + 1, j, k)) {
                     this.e(oworld, i + 1, j, k, j1);
                 }
             }
 
             if (aboolean[2]) {
-                Block blockTo = new Block(world, 0, i, j, k - 1);
-
-                if (!((Boolean) etc.getLoader().callHook(PluginLoader.Hook.FLOW, blockFrom, blockTo))) {
+                if (this.canFlow(oworld, blockFrom, i, j, k - 1)) {
                     this.e(oworld, i, j, k - 1, j1);
                 }
             }
 
             if (aboolean[3]) {
-                Block blockTo = new Block(world, 0, i, j, k + 1);
-
-                if (!((Boolean) etc.getLoader().callHook(PluginLoader.Hook.FLOW, blockFrom, blockTo))) {
+                if (this.canFlow(oworld, blockFrom, i, j, k + 1)) {
                     this.e(oworld, i, j, k + 1, j1);
                 }
             }
@@ -295,16 +292,26 @@ public class OBlockFlowing extends OBlockFluid {
         }
     }
 
+    // CanaryMod: asks plugins whether the fluid may flow into the given block
+    private boolean canFlow(OWorld oworld, Block blockFrom, int i, int j, int k) {
+        if (etc.getInstance().isFluidFlowBatching()) {
+            return oworld.fluidFlow.canFlowInto(i, k);
+        }
+        return blockFrom == null || !(Boolean) etc.getLoader().callHook(PluginLoader.Hook.FLOW, blockFrom, new Block(oworld.world, 0, i, j, k));
+    }
+
     private boolean o(OWorld oworld, int i, int j, int k) {
         // CanaryMod: See if this liquid can destroy this block.
-        Block block = new Block(oworld.world, oworld.world.getBlockIdAt(i, j, k), i, j, k);
-        PluginLoader.HookResult ret = (PluginLoader.HookResult) etc.getLoader().callHook(PluginLoader.Hook.LIQUID_DESTROY, this.cF, block);
+        if (etc.getLoader().hasListeners(PluginLoader.Hook.LIQUID_DESTROY)) {
+            Block block = new Block(oworld.world, oworld.world.getBlockIdAt(i, j, k), i, j, k);
+            PluginLoader.HookResult ret = (PluginLoader.HookResult) etc.getLoader().callHook(PluginLoader.Hook.LIQUID_DESTROY, this.cF, block);
 
-        if (ret == PluginLoader.HookResult.PREVENT_ACTION) {
-            return false;
-        }
-        if (ret == PluginLoader.HookResult.ALLOW_ACTION) {
-            return true;
+            if (ret == PluginLoader.HookResult.PREVENT_ACTION) {
+                return false;
+            }
+            if (ret == PluginLoader.HookResult.ALLOW_ACTION) {
+                return true;
+            }
         }
 
         OMaterial omaterial = oworld.g(i, j, k);
@@ -119,9 +119,8 @@ public class OBlockLeaves extends OBlockLeavesBase {
     private void k(OWorld oworld, int i, int j, int k) {
         // CanaryMod: stop leaves from decaying
         World world = oworld.world;
-        Block block = new Block(world, world.getBlockIdAt(i, j, k), i, j, k);
 
-        if (!(Boolean) etc.getLoader().callHook(PluginLoader.Hook.LEAF_DECAY, block)) {
+        if (!etc.getLoader().hasListeners(PluginLoader.Hook.LEAF_DECAY) || !(Boolean) etc.getLoader().callHook(PluginLoader.Hook.LEAF_DECAY, new Block(world, world.getBlockIdAt(i, j, k), i, j, k))) {
             this.c(oworld, i, j, k, oworld.h(i, j, k), 0);
             oworld.i(i, j, k);
         }
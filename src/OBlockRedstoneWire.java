@@ -7,6 +7,7 @@ public class OBlockRedstoneWire extends OBlock {
 
     private boolean a = true;
     private Set b = new HashSet();
+    private final RedstoneWireEngine engine = new RedstoneWireEngine(this); // CanaryMod
 
     public OBlockRedstoneWire(int i) {
         super(i, OMaterial.q);
@@ -34,6 +35,11 @@ public class OBlockRedstoneWire extends OBlock {
     }
 
     private void k(OWorld oworld, int i, int j, int k) {
+        // CanaryMod: update the whole wire network at once if the world wants that
+        if (oworld.fastRedstone) {
+            this.engine.update(oworld, i, j, k);
+            return;
+        }
         this.a(oworld, i, j, k, i, j, k);
         ArrayList arraylist = new ArrayList(this.b);
 
@@ -107,7 +113,7 @@ public class OBlockRedstoneWire extends OBlock {
         }
 
         // CanaryMod start: Allow redstone wire current changes
-        if (k1 != l1) {
+        if (k1 != l1 && etc.getLoader().hasListeners(PluginLoader.Hook.REDSTONE_CHANGE)) {
             l1 = (Integer) etc.getLoader().callHook(PluginLoader.Hook.REDSTONE_CHANGE, oworld.world.getBlockAt(i, j, k), k1, l1);
         } // CanaryMod end
 
@@ -123,6 +129,15 @@ public class OBlockRedstoneWire extends OBlock {
         }
     }
 
+    // CanaryMod: the power a wire gets from other blocks than wire
+    int getBlockPower(OWorld oworld, int i, int j, int k) {
+        this.a = false;
+        int l = oworld.D(i, j, k);
+
+        this.a = true;
+        return l;
+    }
+
     private void m(OWorld oworld, int i, int j, int k) {
         if (oworld.a(i, j, k) == this.cF) {
             oworld.f(i, j, k, this.cF);
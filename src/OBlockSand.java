@@ -15,14 +15,14 @@ public class OBlockSand extends OBlock {
 
     public void a(OWorld oworld, int i, int j, int k) {
         // CanaryMod: Physics
-        if (!(Boolean) etc.getLoader().callHook(PluginLoader.Hook.BLOCK_PHYSICS, oworld.world.getBlockAt(i, j, k), true)) {
+        if (!etc.getLoader().hasListeners(PluginLoader.Hook.BLOCK_PHYSICS) || !(Boolean) etc.getLoader().callHook(PluginLoader.Hook.BLOCK_PHYSICS, oworld.world.getBlockAt(i, j, k), true)) {
             oworld.a(i, j, k, this.cF, this.a(oworld));
         }
     }
 
     public void a(OWorld oworld, int i, int j, int k, int l) {
         // CanaryMod: Physics
-        if (!(Boolean) etc.getLoader().callHook(PluginLoader.Hook.BLOCK_PHYSICS, oworld.world.getBlockAt(i, j, k), true)) {
+        if (!etc.getLoader().hasListeners(PluginLoader.Hook.BLOCK_PHYSICS) || !(Boolean) etc.getLoader().callHook(PluginLoader.Hook.BLOCK_PHYSICS, oworld.world.getBlockAt(i, j, k), true)) {
             oworld.a(i, j, k, this.cF, this.a(oworld));
         }
     }
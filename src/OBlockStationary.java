@@ -33,12 +33,14 @@ public class OBlockStationary extends OBlockFluid {
             int l = random.nextInt(3);
 
             // CanaryMod: prevent lava from putting something on fire.
-            World world = oworld.world;
-            Block block = new Block(world, world.getBlockIdAt(i, j, k), i, j, k);
+            if (etc.getLoader().hasListeners(PluginLoader.Hook.IGNITE)) {
+                World world = oworld.world;
+                Block block = new Block(world, world.getBlockIdAt(i, j, k), i, j, k);
 
-            block.setStatus(1);
-            if ((Boolean) etc.getLoader().callHook(PluginLoader.Hook.IGNITE, block, null)) {
-                return;
+                block.setStatus(1);
+                if ((Boolean) etc.getLoader().callHook(PluginLoader.Hook.IGNITE, block, null)) {
+                    return;
+                }
             }
 
             int i1;
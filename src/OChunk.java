@@ -33,6 +33,9 @@ public class OChunk {
 
     // CanaryMod
     public final Chunk chunk = new Chunk(this);
+    public final ChunkItemIndex items = new ChunkItemIndex();
+    public final ChunkMinecartIndex minecarts = new ChunkMinecartIndex();
+    public final ChunkCollisionIndex collisions = new ChunkCollisionIndex();
 
     public OChunk(OWorld oworld, int i, int j) {
         this.r = new OExtendedBlockStorage[16];
@@ -654,6 +657,13 @@ public class OChunk {
         oentity.ak = k;
         oentity.al = this.h;
         this.j[k].add(oentity);
+        // CanaryMod: keep track of dropped items, minecarts and entities with a collision box
+        if (oentity instanceof OEntityItem) {
+            this.items.add((OEntityItem) oentity);
+        } else if (oentity instanceof OEntityMinecart) {
+            this.minecarts.add((OEntityMinecart) oentity);
+        }
+        this.collisions.add(oentity);
     }
 
     public void b(OEntity oentity) {
@@ -670,6 +680,13 @@ public class OChunk {
         }
 
         this.j[i].remove(oentity);
+        // CanaryMod: keep track of dropped items, minecarts and entities with a collision box
+        if (oentity instanceof OEntityItem) {
+            this.items.remove((OEntityItem) oentity);
+        } else if (oentity instanceof OEntityMinecart) {
+            this.minecarts.remove((OEntityMinecart) oentity);
+        }
+        this.collisions.remove(oentity);
     }
 
     public boolean d(int i, int j, int k) {
@@ -728,6 +745,7 @@ public class OChunk {
 
             otileentity.s();
             this.i.put(ochunkposition, otileentity);
+            ++this.e.tileEntityGeneration; // CanaryMod
         }
     }
 
@@ -739,12 +757,14 @@ public class OChunk {
 
             if (otileentity != null) {
                 otileentity.w_();
+                ++this.e.tileEntityGeneration; // CanaryMod
             }
         }
     }
 
     public void c() {
         this.d = true;
+        ++this.e.tileEntityGeneration; // CanaryMod
         this.e.a(this.i.values());
 
         for (int i = 0; i < this.j.length; ++i) {
@@ -762,6 +782,7 @@ public class OChunk {
 
     public void d() {
         this.d = false;
+        ++this.e.tileEntityGeneration; // CanaryMod
         Iterator iterator = this.i.values().iterator();
 
         while (iterator.hasNext()) {
@@ -82,6 +82,7 @@ public abstract class OEntity {
     public static PluginLoader manager = etc.getLoader();
     NBTTagCompound metadata;
     MobSpawnerLogic spawner;
+    long activatedTick = Long.MIN_VALUE;
     // CanaryMod end
 
     public OEntity(OWorld oworld) {
@@ -1549,6 +1550,16 @@ public abstract class OEntity {
         return this.an();
     }
 
+    /**
+     * CanaryMod: Ticks the entity while it is out of the activation range of
+     * all players, see {@link ActivationRange}. Only lets fire burn out.
+     */
+    public void inactiveTick() {
+        if (this.d > 0) {
+            --this.d;
+        }
+    }
+
     // CanaryMod start: add getEntity
     @SuppressWarnings("deprecation")
     public BaseEntity getEntity() {
@@ -62,7 +62,7 @@ public abstract class OEntityAnimal extends OEntityAgeable implements OIAnimals
                     this.bn = true;
                 }
             } else if (this.bp > 0 && oentityanimal.bp > 0) {
-                if (oentityanimal.j == null && !(Boolean) manager.callHook(PluginLoader.Hook.MOB_TARGET, this.getEntity(), oentityanimal.getEntity())) {
+                if (oentityanimal.j == null && !(manager.hasListeners(PluginLoader.Hook.MOB_TARGET) && (Boolean) manager.callHook(PluginLoader.Hook.MOB_TARGET, this.getEntity(), oentityanimal.getEntity()))) {
                     oentityanimal.j = this;
                 }
 
@@ -111,7 +111,9 @@ public class OEntityBoat extends OEntity {
     public void l_() {
         super.l_();
         // CanaryMod: Update of the boat
-        manager.callHook(PluginLoader.Hook.VEHICLE_UPDATE, boat);
+        if (boat.isHooked(PluginLoader.Hook.VEHICLE_UPDATE)) {
+            manager.callHook(PluginLoader.Hook.VEHICLE_UPDATE, boat);
+        }
 
         double prevX = this.r;
         double prevY = this.s;
@@ -286,7 +288,7 @@ public class OEntityBoat extends OEntity {
             this.A = (float) ((double) this.A + d12);
             this.b(this.A, this.B);
             if (!this.q.I) {
-                if ((int) this.u != (int) prevX || (int) this.v != (int) prevY || (int) this.w != (int) prevZ) {
+                if (((int) this.u != (int) prevX || (int) this.v != (int) prevY || (int) this.w != (int) prevZ) && boat.isHooked(PluginLoader.Hook.VEHICLE_POSITIONCHANGE)) { // CanaryMod: only if someone listens
                     manager.callHook(PluginLoader.Hook.VEHICLE_POSITIONCHANGE, boat, (int) this.u, (int) this.v, (int) this.w);
                 }
 
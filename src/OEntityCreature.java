@@ -34,7 +34,7 @@ public abstract class OEntityCreature extends OEntityLiving {
 
         if (this.j == null) {
             OEntity target = this.bL(); // CanaryMod: invoke once
-            if (target == null || !(Boolean) manager.callHook(PluginLoader.Hook.MOB_TARGET, target.getEntity(), this.getEntity())) { // CanaryMod: call hook
+            if (target == null || !(manager.hasListeners(PluginLoader.Hook.MOB_TARGET) && (Boolean) manager.callHook(PluginLoader.Hook.MOB_TARGET, target.getEntity(), this.getEntity()))) { // CanaryMod: call hook
                 this.j = target;
             } //
             if (this.j != null) {
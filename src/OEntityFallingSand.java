@@ -12,6 +12,7 @@ public class OEntityFallingSand extends OEntity {
     private int h;
     private float i;
     public ONBTTagCompound e;
+    public int count = 1; // CanaryMod: number of falling blocks stacked into this one
 
     public OEntityFallingSand(OWorld oworld) {
         super(oworld);
@@ -78,6 +79,12 @@ public class OEntityFallingSand extends OEntity {
                     }
 
                     this.q.i(i, j, k);
+
+                    // CanaryMod: join a falling block that took the same way
+                    if (EntityStacker.stack(this)) {
+                        this.x();
+                        return;
+                    }
                 }
 
                 if (this.F) {
@@ -112,13 +119,18 @@ public class OEntityFallingSand extends OEntity {
                                     otileentity.e();
                                 }
                             }
+
+                            // CanaryMod: the stacked blocks can't land here anymore
+                            if (this.d) {
+                                this.dropStacked(this.count - 1);
+                            }
                         } else if (this.d && !this.f) {
-                            this.a(new OItemStack(this.a, 1, OBlock.s[this.a].a(this.b)), 0.0F);
+                            this.dropStacked(this.count); // CanaryMod
                         }
                     }
                 } else if (this.c > 100 && !this.q.I && (j < 1 || j > 256) || this.c > 600) {
                     if (this.d) {
-                        this.a(new OItemStack(this.a, 1, OBlock.s[this.a].a(this.b)), 0.0F);
+                        this.dropStacked(this.count); // CanaryMod
                     }
 
                     this.x();
@@ -127,6 +139,28 @@ public class OEntityFallingSand extends OEntity {
         }
     }
 
+    // CanaryMod: drops the given number of blocks as items
+    private void dropStacked(int amount) {
+        while (amount > 0) {
+            int size = Math.min(amount, 64);
+
+            this.a(new OItemStack(this.a, size, OBlock.s[this.a].a(this.b)), 0.0F);
+            amount -= size;
+        }
+    }
+
+    /**
+     * CanaryMod: Checks whether the given falling block would do exactly the
+     * same as this one, so it can be stacked into this one. Both must have
+     * left their original block already and must not hurt entities.
+     *
+     * @param other
+     * @return true if it can be stacked into this one
+     */
+    public boolean canStack(OEntityFallingSand other) {
+        return other != this && !this.M && !other.M && this.a == other.a && this.b == other.b && this.c >= 1 && other.c >= 1 && !this.g && !other.g && this.d == other.d && this.e == null && other.e == null && Math.abs(this.u - other.u) < 0.001D && Math.abs(this.v - other.v) < 0.001D && Math.abs(this.w - other.w) < 0.001D && Math.abs(this.x - other.x) < 0.001D && Math.abs(this.y - other.y) < 0.001D && Math.abs(this.z - other.z) < 0.001D;
+    }
+
     protected void b(float f) {
         if (this.g) {
             int i = OMathHelper.f(f - 1.0F);
@@ -171,6 +205,11 @@ public class OEntityFallingSand extends OEntity {
         if (this.e != null) {
             onbttagcompound.a("TileEntityData", this.e);
         }
+
+        // CanaryMod: keep stacked blocks
+        if (this.count > 1) {
+            onbttagcompound.a("CanaryCount", this.count);
+        }
     }
 
     protected void a(ONBTTagCompound onbttagcompound) {
@@ -198,6 +237,11 @@ public class OEntityFallingSand extends OEntity {
             this.e = onbttagcompound.l("TileEntityData");
         }
 
+        // CanaryMod: stacked blocks
+        if (onbttagcompound.b("CanaryCount")) {
+            this.count = onbttagcompound.e("CanaryCount");
+        }
+
         if (this.a == 0) {
             this.a = OBlock.J.cF;
         }
@@ -79,7 +79,7 @@ public class OEntityGhast extends OEntityFlying implements OIMob {
             OEntityPlayer oentityplayer = this.q.b(this, 100.0D);
 
             // CanaryMod: MOB_TARGET Hook for ghasts.
-            if (oentityplayer != null && !(Boolean) etc.getLoader().callHook(PluginLoader.Hook.MOB_TARGET, oentityplayer.getEntity(), this.getEntity())) {
+            if (oentityplayer != null && !(etc.getLoader().hasListeners(PluginLoader.Hook.MOB_TARGET) && (Boolean) etc.getLoader().callHook(PluginLoader.Hook.MOB_TARGET, oentityplayer.getEntity(), this.getEntity()))) {
                 this.bq = oentityplayer;
             }
             if (this.bq != null) {
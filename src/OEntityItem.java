@@ -8,6 +8,8 @@ public class OEntityItem extends OEntity {
     public float c;
     // CanaryMod Start
     ItemEntity item = new ItemEntity(this);
+    ChunkItemIndex index; // the index of the chunk the item is in
+    int indexKey;
     // CanaryMod End
 
     public OEntityItem(OWorld oworld, double d0, double d1, double d2) {
@@ -67,7 +69,8 @@ public class OEntityItem extends OEntity {
                 this.a("random.fizz", 0.4F, 2.0F + this.ab.nextFloat() * 0.4F);
             }
 
-            if (!this.q.I) {
+            // CanaryMod: unless items are merged in batches, see ItemMerger
+            if (!this.q.I && etc.getInstance().getItemMergeInterval() <= 0) {
                 this.e();
             }
         }
@@ -84,7 +87,7 @@ public class OEntityItem extends OEntity {
 
             // CanaryMod start
             // It does touch the ground now, but didn't in last tick
-            if (!tmpTouchesGround) {
+            if (!tmpTouchesGround && etc.getLoader().hasListeners(PluginLoader.Hook.ITEM_TOUCH_GROUND)) {
                 if ((Boolean) etc.getLoader().callHook(PluginLoader.Hook.ITEM_TOUCH_GROUND, item)) {
                     this.x(); // kill the item
                 }
@@ -98,6 +101,11 @@ public class OEntityItem extends OEntity {
             this.y *= -0.5D;
         }
 
+        this.age(); // CanaryMod: moved to age()
+    }
+
+    // CanaryMod start
+    private void age() {
         ++this.a;
         if (!this.q.I && this.a >= 6000) {
             // CanaryMod onEntityDespawn
@@ -109,8 +117,21 @@ public class OEntityItem extends OEntity {
         }
     }
 
-    private void e() {
-        Iterator iterator = this.q.a(OEntityItem.class, this.E.b(0.5D, 0.0D, 0.5D)).iterator();
+    @Override
+    public void inactiveTick() {
+        super.inactiveTick();
+        this.age();
+    }
+
+    /**
+     * Merges this item with the items of the same kind around it.
+     *
+     * @param radius
+     *            how far apart (horizontally) items may be to merge
+     */
+    void mergeNearby(double radius) {
+        // SRG Iterator iterator = ChunkItemIndex.getSameType(this.field_70170_p, this, this.field_70121_D.func_72314_b(radius, 0.0D, radius)).iterator();
+        Iterator iterator = ChunkItemIndex.getSameType(this.q, this, this.E.b(radius, 0.0D, radius)).iterator();
 
         while (iterator.hasNext()) {
             OEntityItem oentityitem = (OEntityItem) iterator.next();
@@ -119,6 +140,17 @@ public class OEntityItem extends OEntity {
         }
     }
 
+    /**
+     * Lets this item despawn on its next tick.
+     */
+    void despawnEarly() {
+        this.a = Math.max(this.a, 5999);
+    } // CanaryMod end
+
+    private void e() {
+        this.mergeNearby(etc.getInstance().getItemMergeRadius()); // CanaryMod: look through the chunk item index
+    }
+
     public boolean a(OEntityItem oentityitem) {
         if (oentityitem == this) {
             return false;
@@ -264,6 +296,10 @@ public class OEntityItem extends OEntity {
     public void a(OItemStack oitemstack) {
         this.v().b(10, oitemstack);
         this.v().h(10);
+        // CanaryMod: file the item under its new kind
+        if (this.index != null) {
+            this.index.update(this);
+        }
     }
 
     // CanaryMod start: add getEntity
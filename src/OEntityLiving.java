@@ -27,6 +27,7 @@ public abstract class OEntityLiving extends OEntityLivingBase {
     private ONBTTagCompound bx;
 
     private LivingEntity livingEntity = new LivingEntity(this);
+    private Mob mob; // CanaryMod: cached Mob wrapper, see getMob()
 
     public OEntityLiving(OWorld oworld) {
         super(oworld);
@@ -75,7 +76,7 @@ public abstract class OEntityLiving extends OEntityLivingBase {
 
     public void d(OEntityLivingBase oentitylivingbase) {
         // CanaryMod start: MOB_TARGET hook
-        if (oentitylivingbase != null && (Boolean) manager.callHook(PluginLoader.Hook.MOB_TARGET, oentitylivingbase.getEntity(), this.getEntity())) {
+        if (oentitylivingbase != null && manager.hasListeners(PluginLoader.Hook.MOB_TARGET) && (Boolean) manager.callHook(PluginLoader.Hook.MOB_TARGET, oentitylivingbase.getEntity(), this.getEntity())) {
             return;
         } // CanaryMod end
         this.bp = oentitylivingbase;
@@ -378,20 +379,34 @@ public abstract class OEntityLiving extends OEntityLivingBase {
         }
     }
 
+    // CanaryMod start
+    @Override
+    public void inactiveTick() {
+        super.inactiveTick();
+        ++this.aV;
+        // Mobs far from players must still despawn
+        this.u();
+    } // CanaryMod end
+
     protected void bi() {
         ++this.aV;
         this.q.C.a("checkDespawn");
         this.u();
         this.q.C.b();
-        this.q.C.a("sensing");
-        this.bq.a();
-        this.q.C.b();
-        this.q.C.a("targetSelector");
-        this.d.a();
-        this.q.C.b();
-        this.q.C.a("goalSelector");
-        this.c.a();
-        this.q.C.b();
+        // CanaryMod: with an AI tick interval, mobs without a target take turns choosing what to do.
+        // The goal selector picks new goals and carries on the running ones in one go, so the
+        // running goals are throttled as well. Moving along the path isn't.
+        if (this.q.aiTickInterval <= 1 || this.bp != null || (this.ac + this.k) % this.q.aiTickInterval == 0) {
+            this.q.C.a("sensing");
+            this.bq.a();
+            this.q.C.b();
+            this.q.C.a("targetSelector");
+            this.d.a();
+            this.q.C.b();
+            this.q.C.a("goalSelector");
+            this.goalSelector().a(); // CanaryMod: was this.c
+            this.q.C.b();
+        }
         this.q.C.a("navigation");
         this.bo.f();
         this.q.C.b();
@@ -409,6 +424,11 @@ public abstract class OEntityLiving extends OEntityLivingBase {
         this.q.C.b();
     }
 
+    // CanaryMod: the goals run by bi(), villagers have fewer while stationary
+    protected OEntityAITasks goalSelector() {
+        return this.c;
+    }
+
     protected void bl() {
         super.bl();
         this.be = 0.0F;
@@ -858,4 +878,21 @@ public abstract class OEntityLiving extends OEntityLivingBase {
     public LivingEntity getEntity() {
         return livingEntity;
     } // CanaryMod end
+
+    // CanaryMod start: add getMob
+    /**
+     * Returns the {@link Mob} wrapper of this entity. Mobs that already have
+     * one return that, for the others one is made once and kept.
+     *
+     * @return the Mob wrapper
+     */
+    public Mob getMob() {
+        if (getEntity() instanceof Mob) {
+            return (Mob) getEntity();
+        }
+        if (mob == null) {
+            mob = new Mob(this);
+        }
+        return mob;
+    } // CanaryMod end
 }
@@ -1,5 +1,3 @@
-import java.util.List;
-
 public abstract class OEntityMinecart extends OEntity {
 
     private boolean a;
@@ -14,6 +12,10 @@ public abstract class OEntityMinecart extends OEntity {
     private double j;
 
     Minecart cart = new Minecart(this); // CanaryMod: Reference to the cart
+    // CanaryMod: parked carts, see etc#getMinecartSleepTicks()
+    private int restTicks;
+    private boolean parked;
+    private int railX, railY, railZ, rail;
 
     public OEntityMinecart(OWorld oworld) {
         super(oworld);
@@ -97,6 +99,7 @@ public abstract class OEntityMinecart extends OEntity {
         if ((Boolean) manager.callHook(PluginLoader.Hook.VEHICLE_DAMAGE, this.getEntity(), entity, f)) {
             return true;
         }
+        this.unpark(); // CanaryMod
 
         if (!this.q.I && !this.M) {
             if (this.ar()) {
@@ -152,7 +155,17 @@ public abstract class OEntityMinecart extends OEntity {
 
     public void l_() {
         // CanaryMod: call update hook
-        manager.callHook(PluginLoader.Hook.VEHICLE_UPDATE, this.getEntity());
+        if (this.cart.isHooked(PluginLoader.Hook.VEHICLE_UPDATE)) {
+            manager.callHook(PluginLoader.Hook.VEHICLE_UPDATE, this.getEntity());
+        }
+
+        // CanaryMod: parked carts stay put until they are pushed or their rail changes
+        if (this.parked) {
+            if (this.canStayParked()) {
+                return;
+            }
+            this.unpark();
+        }
 
         if (this.b != null) {
             this.b.a();
@@ -245,7 +258,7 @@ public abstract class OEntityMinecart extends OEntity {
             int k = OMathHelper.c(this.w);
 
             // CanaryMod: Change of the cart
-            if ((int) i != (int) prevX || (int) j != (int) prevY || (int) k != (int) prevZ) {
+            if (((int) i != (int) prevX || (int) j != (int) prevY || (int) k != (int) prevZ) && this.cart.isHooked(PluginLoader.Hook.VEHICLE_POSITIONCHANGE)) {
                 manager.callHook(PluginLoader.Hook.VEHICLE_POSITIONCHANGE, this.getEntity(), i, j, k);
             }
 
@@ -263,7 +276,7 @@ public abstract class OEntityMinecart extends OEntity {
                 this.a(j, i, k, d4, d5, l, i1);
                 if (l == OBlock.cy.cF) {
                     // CanaryMod: call MINECART_ACTIVATE hook
-                    if (!(Boolean) manager.callHook(PluginLoader.Hook.MINECART_ACTIVATE, this.getEntity(), (i1 & 8) != 0)) {
+                    if (!manager.hasListeners(PluginLoader.Hook.MINECART_ACTIVATE) || !(Boolean) manager.callHook(PluginLoader.Hook.MINECART_ACTIVATE, this.getEntity(), (i1 & 8) != 0)) {
                         this.a(j, i, k, (i1 & 8) != 0);
                     }
                 }
@@ -291,17 +304,8 @@ public abstract class OEntityMinecart extends OEntity {
             }
 
             this.b(this.A, this.B);
-            List list = this.q.b((OEntity) this, this.E.b(0.20000000298023224D, 0.0D, 0.20000000298023224D));
-
-            if (list != null && !list.isEmpty()) {
-                for (int j1 = 0; j1 < list.size(); ++j1) {
-                    OEntity oentity = (OEntity) list.get(j1);
-
-                    if (oentity != this.n && oentity.M() && oentity instanceof OEntityMinecart) {
-                        oentity.f((OEntity) this);
-                    }
-                }
-            }
+            // CanaryMod: only minecarts get pushed, look them up by chunk instead of going through all entities
+            ChunkMinecartIndex.collide(this, this.E.b(0.20000000298023224D, 0.0D, 0.20000000298023224D));
 
             if (this.n != null && this.n.M) {
                 if (this.n.o == this) {
@@ -309,9 +313,99 @@ public abstract class OEntityMinecart extends OEntity {
                 }
                 this.n = null;
             }
+            this.rest(); // CanaryMod
+        }
+    }
+
+    // CanaryMod start: parked carts
+    /**
+     * Parks this cart once it stood still on a rail without a rider for
+     * long enough. Called at the end of every server tick.
+     */
+    private void rest() {
+        int ticks = etc.getInstance().getMinecartSleepTicks();
+
+        if (ticks <= 0 || this.n != null || this.x * this.x + this.y * this.y + this.z * this.z > 1.0E-6D || !this.canPark()) {
+            this.restTicks = 0;
+            return;
+        }
+        if (++this.restTicks < ticks) {
+            return;
+        }
+        int i = OMathHelper.c(this.u);
+        int j = OMathHelper.c(this.v);
+        int k = OMathHelper.c(this.w);
+
+        if (OBlockRailBase.d_(this.q, i, j - 1, k)) {
+            --j;
         }
+        int l = this.rail(i, j, k);
+
+        if (l < 0) {
+            this.restTicks = 0;
+            return;
+        }
+        this.railX = i;
+        this.railY = j;
+        this.railZ = k;
+        this.rail = l;
+        this.x = this.y = this.z = 0.0D;
+        this.parked = true;
+    }
+
+    /**
+     * Returns whether this cart may stay parked: it wasn't pushed, has no
+     * rider, wasn't hit and its rail didn't change.
+     */
+    private boolean canStayParked() {
+        if (this.x != 0.0D || this.y != 0.0D || this.z != 0.0D || this.n != null || this.j() > 0 || this.ap || !this.canPark()) {
+            return false;
+        }
+        if (OMathHelper.c(this.u) != this.railX || OMathHelper.c(this.w) != this.railZ) {
+            return false;
+        }
+        int j = OMathHelper.c(this.v);
+
+        return (j == this.railY || j - 1 == this.railY) && this.rail(this.railX, this.railY, this.railZ) == this.rail;
     }
 
+    /**
+     * Returns the id and data of the rail at the given position, or -1 if
+     * there is none.
+     */
+    private int rail(int i, int j, int k) {
+        int l = this.q.a(i, j, k);
+
+        return OBlockRailBase.e_(l) ? l << 4 | this.q.h(i, j, k) : -1;
+    }
+
+    /**
+     * Wakes this cart, if it is parked.
+     */
+    public void unpark() {
+        this.parked = false;
+        this.restTicks = 0;
+    }
+
+    /**
+     * Returns whether this cart is parked.
+     *
+     * @return true if it is parked
+     */
+    public boolean isParked() {
+        return this.parked;
+    }
+
+    /**
+     * Returns whether this kind of cart may park at the moment.
+     *
+     * @return true by default
+     */
+    protected boolean canPark() {
+        return !this.q.I;
+    }
+    // CanaryMod end
+
     public void a(int i, int j, int k, boolean flag) {}
 
     protected void b(double d0) {
@@ -561,7 +655,9 @@ public abstract class OEntityMinecart extends OEntity {
 
         // CanaryMod: Change of the cart
         if ((int) i != (int) lastX || (int) j != (int) lastY || (int) k != (int) lastZ) {
-            manager.callHook(PluginLoader.Hook.VEHICLE_POSITIONCHANGE, this.getEntity(), i, j, k);
+            if (this.cart.isHooked(PluginLoader.Hook.VEHICLE_POSITIONCHANGE)) {
+                manager.callHook(PluginLoader.Hook.VEHICLE_POSITIONCHANGE, this.getEntity(), i, j, k);
+            }
             lastX = i;
             lastY = j;
             lastZ = k;
@@ -656,7 +752,7 @@ public abstract class OEntityMinecart extends OEntity {
         if (!this.q.I) {
             if (oentity != this.n) {
                 // CanaryMod: Collision of a cart
-                if ((Boolean) manager.callHook(PluginLoader.Hook.VEHICLE_COLLISION, this.getEntity(), oentity.getEntity())) {
+                if (this.cart.isHooked(PluginLoader.Hook.VEHICLE_COLLISION) && (Boolean) manager.callHook(PluginLoader.Hook.VEHICLE_COLLISION, this.getEntity(), oentity.getEntity())) {
                     return;
                 }
                 if (oentity instanceof OEntityLivingBase && !(oentity instanceof OEntityPlayer) && !(oentity instanceof OEntityIronGolem) && this.l() == 0 && this.x * this.x + this.z * this.z > 0.01D && this.n == null && oentity.o == null) {
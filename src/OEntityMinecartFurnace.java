@@ -37,6 +37,11 @@ public class OEntityMinecartFurnace extends OEntityMinecart {
         }
     }
 
+    // CanaryMod: don't park while there is fuel left
+    protected boolean canPark() {
+        return super.canPark() && this.c <= 0;
+    }
+
     public void a(ODamageSource odamagesource) {
         super.a(odamagesource);
         if (!odamagesource.c()) {
@@ -43,7 +43,7 @@ public abstract class OEntityMob extends OEntityCreature implements OIMob {
             if (this.n != oentity && this.o != oentity) {
                 if (oentity != this) {
                     // CanaryMod start - MOB_TARGET hook
-                    if (!(Boolean) etc.getLoader().callHook(PluginLoader.Hook.MOB_TARGET, oentity.getEntity(), this.getEntity())) {
+                    if (!(etc.getLoader().hasListeners(PluginLoader.Hook.MOB_TARGET) && (Boolean) etc.getLoader().callHook(PluginLoader.Hook.MOB_TARGET, oentity.getEntity(), this.getEntity()))) {
                         this.j = oentity;
                     } // CanaryMod end
                 }
@@ -68,7 +68,7 @@ public class OEntityPigZombie extends OEntityZombie {
             OEntity oentity = odamagesource.i();
 
             if (oentity instanceof OEntityPlayer) {
-                if (!(Boolean) etc.getLoader().callHook(PluginLoader.Hook.MOB_TARGET, oentity.getEntity(), this.getEntity())) { // CanaryMod: MOB_TARGET
+                if (!(etc.getLoader().hasListeners(PluginLoader.Hook.MOB_TARGET) && (Boolean) etc.getLoader().callHook(PluginLoader.Hook.MOB_TARGET, oentity.getEntity(), this.getEntity()))) { // CanaryMod: MOB_TARGET
                     List list = this.q.b((OEntity) this, this.E.b(32.0D, 32.0D, 32.0D));
 
                     for (int i = 0; i < list.size(); ++i) {
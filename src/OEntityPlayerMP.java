@@ -64,8 +64,11 @@ public class OEntityPlayerMP extends OEntityPlayer implements OICrafting {
         }
 
 
-        // CanaryMod: Store player
-        player = etc.getDataSource().getPlayer(s);
+        // CanaryMod: Store player, as fetched for the login check if we just let it in
+        player = LoginPrefetch.takePlayer(s);
+        if (player == null) {
+            player = etc.getDataSource().getPlayer(s);
+        }
         player.setUser(this);
     }
 
@@ -675,7 +678,12 @@ public class OEntityPlayerMP extends OEntityPlayer implements OICrafting {
                 DataOutputStream dataoutputstream = new DataOutputStream(bytearrayoutputstream);
 
                 dataoutputstream.writeInt(this.bY);
-                omerchantrecipelist.a(dataoutputstream);
+                // CanaryMod: villagers keep their trade list written out until it changes
+                if (oimerchant instanceof OEntityVillager) {
+                    dataoutputstream.write(((OEntityVillager) oimerchant).tradeCache.get(omerchantrecipelist));
+                } else {
+                    omerchantrecipelist.a(dataoutputstream);
+                }
                 this.a.b(new OPacket250CustomPayload("MC|TrList", bytearrayoutputstream.toByteArray()));
             } catch (IOException ioexception) {
                 ioexception.printStackTrace();
@@ -94,7 +94,7 @@ public class OEntitySlime extends OEntityLiving implements OIMob {
         this.u();
         OEntityPlayer oentityplayer = this.q.b(this, 16.0D);
 
-        if (oentityplayer != null && !(Boolean) etc.getLoader().callHook(PluginLoader.Hook.MOB_TARGET, oentityplayer.getEntity(), this.getEntity())) { // CanaryMod - MOB_TARGET
+        if (oentityplayer != null && !(etc.getLoader().hasListeners(PluginLoader.Hook.MOB_TARGET) && (Boolean) etc.getLoader().callHook(PluginLoader.Hook.MOB_TARGET, oentityplayer.getEntity(), this.getEntity()))) { // CanaryMod - MOB_TARGET
             this.a(oentityplayer, 10.0F, 20.0F);
         }
 
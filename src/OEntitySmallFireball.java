@@ -53,9 +53,14 @@ public class OEntitySmallFireball extends OEntityFireball {
 
                 if (this.q.c(i, j, k)) {
                     // CanaryMod start: IGNITE hook
-                    Block b = new Block(this.q.world, 0, i, j, k);
-                    b.setStatus(7); // Fireball explosion
-                    if (!(Boolean) etc.getLoader().callHook(PluginLoader.Hook.IGNITE, b, null)) {
+                    boolean ignite = true;
+
+                    if (etc.getLoader().hasListeners(PluginLoader.Hook.IGNITE)) {
+                        Block b = new Block(this.q.world, 0, i, j, k);
+                        b.setStatus(7); // Fireball explosion
+                        ignite = !(Boolean) etc.getLoader().callHook(PluginLoader.Hook.IGNITE, b, null);
+                    }
+                    if (ignite) {
                         this.q.c(i, j, k, OBlock.aw.cF);
                     } // CanaryMod end
                 }
@@ -22,6 +22,11 @@ public class OEntityVillager extends OEntityAgeable implements OIMerchant, OINpc
     private static final Map bC = new HashMap();
 
     private Villager villager = new Villager(this);
+    // CanaryMod start: stationary villagers, see etc#isStationaryVillagers()
+    private final OEntityAITasks stationaryTasks;
+    private boolean stationary;
+    final MerchantRecipeCache tradeCache = new MerchantRecipeCache();
+    // CanaryMod end
 
     public OEntityVillager(OWorld oworld) {
         this(oworld, 0);
@@ -48,6 +53,12 @@ public class OEntityVillager extends OEntityAgeable implements OIMerchant, OINpc
         this.c.a(9, new OEntityAIWatchClosest2(this, OEntityVillager.class, 5.0F, 0.02F));
         this.c.a(9, new OEntityAIWander(this, 0.6D));
         this.c.a(10, new OEntityAIWatchClosest(this, OEntityLiving.class, 8.0F));
+        // CanaryMod: all a villager that can't leave its spot still does
+        this.stationaryTasks = new OEntityAITasks(oworld != null && oworld.C != null ? oworld.C : null);
+        this.stationaryTasks.a(0, new OEntityAISwimming(this));
+        this.stationaryTasks.a(1, new OEntityAITradePlayer(this));
+        this.stationaryTasks.a(1, new OEntityAILookAtTradePlayer(this));
+        this.stationaryTasks.a(9, new OEntityAIWatchClosest2(this, OEntityPlayer.class, 3.0F, 1.0F));
     }
 
     protected void az() {
@@ -60,7 +71,12 @@ public class OEntityVillager extends OEntityAgeable implements OIMerchant, OINpc
     }
 
     protected void bk() {
-        if (--this.bq <= 0) {
+        // CanaryMod: villagers that can't leave their spot don't wander or look for villages
+        if ((this.ac + this.k) % 20 == 0) {
+            this.stationary = etc.getInstance().isStationaryVillagers() && this.isConfined();
+        }
+
+        if (!this.stationary && --this.bq <= 0) {
             this.q.A.a(OMathHelper.c(this.u), OMathHelper.c(this.v), OMathHelper.c(this.w));
             this.bq = 70 + this.ab.nextInt(50);
             this.bp = this.q.A.a(OMathHelper.c(this.u), OMathHelper.c(this.v), OMathHelper.c(this.w), 32);
@@ -110,7 +126,7 @@ public class OEntityVillager extends OEntityAgeable implements OIMerchant, OINpc
 
     public boolean a(OEntityPlayer oentityplayer) {
         OItemStack oitemstack = oentityplayer.bn.h();
-        if ((PluginLoader.HookResult) etc.getLoader().callHook(PluginLoader.Hook.ENTITY_RIGHTCLICKED,
+        if (etc.getLoader().hasListeners(PluginLoader.Hook.ENTITY_RIGHTCLICKED) && (PluginLoader.HookResult) etc.getLoader().callHook(PluginLoader.Hook.ENTITY_RIGHTCLICKED,
                 ((OEntityPlayerMP) oentityplayer).getPlayer(), this.getEntity(),
                 oitemstack == null ? null : new Item(oitemstack)) == PluginLoader.HookResult.PREVENT_ACTION) {
             return false;
@@ -420,7 +436,7 @@ public class OEntityVillager extends OEntityAgeable implements OIMerchant, OINpc
         for (int j1 = 0; j1 < i && j1 < omerchantrecipelist.size(); ++j1) {
             //CanaryMod
             OMerchantRecipe recipe = (OMerchantRecipe) omerchantrecipelist.get(j1);
-            if (!(Boolean) etc.getLoader().callHook(PluginLoader.Hook.VILLAGER_TRADE_UNLOCK, this.getEntity(), recipe.getVillagerTrade())) {
+            if (!etc.getLoader().hasListeners(PluginLoader.Hook.VILLAGER_TRADE_UNLOCK) || !(Boolean) etc.getLoader().callHook(PluginLoader.Hook.VILLAGER_TRADE_UNLOCK, this.getEntity(), recipe.getVillagerTrade())) {
                 this.bu.a((OMerchantRecipe) omerchantrecipelist.get(j1));
             }
         }
@@ -497,6 +513,32 @@ public class OEntityVillager extends OEntityAgeable implements OIMerchant, OINpc
         return villager;
     } // CanaryMod end
 
+    // CanaryMod start: stationary villagers
+    protected OEntityAITasks goalSelector() {
+        return this.stationary ? this.stationaryTasks : super.goalSelector();
+    }
+
+    /**
+     * Returns whether this villager is walled in: the blocks at head height
+     * on all four sides block movement.
+     */
+    private boolean isConfined() {
+        int i = OMathHelper.c(this.u);
+        int j = OMathHelper.c(this.v) + 1;
+        int k = OMathHelper.c(this.w);
+
+        return this.q.g(i - 1, j, k).c() && this.q.g(i + 1, j, k).c() && this.q.g(i, j, k - 1).c() && this.q.g(i, j, k + 1).c();
+    }
+
+    /**
+     * Returns whether this villager is stationary.
+     *
+     * @return true if it is stationary
+     */
+    public boolean isStationary() {
+        return this.stationary;
+    } // CanaryMod end
+
     static {
         bB.put(Integer.valueOf(OItem.o.cv), new OTuple(Integer.valueOf(16), Integer.valueOf(24)));
         bB.put(Integer.valueOf(OItem.q.cv), new OTuple(Integer.valueOf(8), Integer.valueOf(10)));
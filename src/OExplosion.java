@@ -32,20 +32,7 @@ public class OExplosion {
 
     public void a() {
         float f = this.g;
-        HashSet hashset = new HashSet();
-        // CanaryMod: allow explosion
-        Block block = new Block(this.k.world, this.k.world.getBlockIdAt((int) this.c, (int) this.d, (int) this.e), (int) this.c, (int) this.d, (int) this.e);
-
-        if (this.f instanceof OEntityTNTPrimed || this.f instanceof OEntityMinecartTNT) {
-            block.setStatus(1);
-        } else if (this.f instanceof OEntityCreeper) {
-            block.setStatus(2);
-        } else if (this.f == null) {
-            block.setStatus(3);
-        } else if (this.f instanceof OEntityWitherSkull) {
-            block.setStatus(4);
-        }
-
+        BlockPositionSet affected = new BlockPositionSet(); // CanaryMod: packed positions instead of OChunkPositions
         int i;
         int j;
         int k;
@@ -85,7 +72,7 @@ public class OExplosion {
                             }
 
                             if (f1 > 0.0F && (this.f == null || this.f.a(this, this.k, l, i1, j1, k1, f1))) {
-                                hashset.add(new OChunkPosition(l, i1, j1));
+                                affected.add(l, i1, j1);
                             }
 
                             d0 += d3 * (double) f2;
@@ -97,29 +84,32 @@ public class OExplosion {
             }
         }
 
-        // CanaryMod start
-        @SuppressWarnings("deprecation")
-        boolean cancel = (Boolean) etc.getLoader().callHook(PluginLoader.Hook.EXPLODE, block, this.f, hashset); // Call deprecated hook first; it may remove blocks from hashset.
+        // CanaryMod start: allow explosion, only build what the plugins listening need
+        boolean cancel = false;
+        Block block = null;
 
-        // Add affected blocks into a List of Blocks.
-        List<Block> blocksAffected = new ArrayList<Block>(hashset.size());
-        for (OChunkPosition ocp : (HashSet<OChunkPosition>) hashset) {
-            blocksAffected.add(new Block(this.k.world, this.k.world.getBlockIdAt(ocp.a, ocp.b, ocp.c), ocp.a, ocp.b, ocp.c));
+        if (etc.getLoader().hasListeners(PluginLoader.Hook.EXPLODE) || etc.getLoader().hasListeners(PluginLoader.Hook.EXPLOSION)) {
+            block = this.getExplosionBlock();
         }
+        if (etc.getLoader().hasListeners(PluginLoader.Hook.EXPLODE)) {
+            cancel = this.callExplodeHook(block, affected); // Call deprecated hook first; it may remove blocks.
+        }
+        if (etc.getLoader().hasListeners(PluginLoader.Hook.EXPLOSION)) {
+            ExplosionBlockList blocksAffected = new ExplosionBlockList(this.k.world, affected);
 
-        cancel = (Boolean) etc.getLoader().callHook(PluginLoader.Hook.EXPLOSION, block, (this.f != null ? this.f.getEntity() : null), blocksAffected) || cancel;
-
-        // Repopulate hashset according to blocksAffected.
-        hashset.clear();
-        for (Block affected : blocksAffected) {
-            hashset.add(new OChunkPosition(affected.getX(), affected.getY(), affected.getZ()));
+            cancel = (Boolean) etc.getLoader().callHook(PluginLoader.Hook.EXPLOSION, block, (this.f != null ? this.f.getEntity() : null), blocksAffected) || cancel;
+            affected = blocksAffected.toPositionSet();
         }
-        // CanaryMod end
 
         // CanaryMod: if cancelled, don't populate this.h at all.
         if (!cancel) {
-            this.h.addAll(hashset);
+            for (int n = 0; n < affected.size(); ++n) {
+                long position = affected.get(n);
+
+                this.h.add(new OChunkPosition(BlockPositionSet.unpackX(position), BlockPositionSet.unpackY(position), BlockPositionSet.unpackZ(position)));
+            }
         }
+        // CanaryMod end
 
         this.g *= 2.0F;
         i = OMathHelper.c(this.c - (double) this.g - 1.0D);
@@ -151,12 +141,17 @@ public class OExplosion {
 
                     // CanaryMod Damage hook: Explosions
                     float damage = (float) ((int) ((d10 * d10 + d10) / 2.0D * 8.0D * (double) this.g + 1.0D));
-                    DamageSource damageSource = ODamageSource.a(this).damageSource;
 
-                    HookParametersDamage ev = (HookParametersDamage) etc.getLoader().callHook(PluginLoader.Hook.DAMAGE, new HookParametersDamage(damageSource.getSourceEntity(), oentity.getEntity(), damageSource, damage));
-                    if (!cancel && !ev.isCanceled()) {
-                        //Cannot add a random damage source here, only damage applies
-                        oentity.a(ev.getDamageSource().getDamageSource(), ev.getDamageAmountFloat());
+                    if (etc.getLoader().hasListeners(PluginLoader.Hook.DAMAGE)) {
+                        DamageSource damageSource = ODamageSource.a(this).damageSource;
+
+                        HookParametersDamage ev = (HookParametersDamage) etc.getLoader().callHook(PluginLoader.Hook.DAMAGE, new HookParametersDamage(damageSource.getSourceEntity(), oentity.getEntity(), damageSource, damage));
+                        if (!cancel && !ev.isCanceled()) {
+                            //Cannot add a random damage source here, only damage applies
+                            oentity.a(ev.getDamageSource().getDamageSource(), ev.getDamageAmountFloat());
+                        }
+                    } else if (!cancel) {
+                        oentity.a(ODamageSource.a(this), damage);
                     }
                     double d11 = OEnchantmentProtection.a(oentity, d10);
 
@@ -173,6 +168,41 @@ public class OExplosion {
         this.g = f;
     }
 
+    // CanaryMod: the block passed to the explosion hooks
+    private Block getExplosionBlock() {
+        Block block = new Block(this.k.world, this.k.world.getBlockIdAt((int) this.c, (int) this.d, (int) this.e), (int) this.c, (int) this.d, (int) this.e);
+
+        if (this.f instanceof OEntityTNTPrimed || this.f instanceof OEntityMinecartTNT) {
+            block.setStatus(1);
+        } else if (this.f instanceof OEntityCreeper) {
+            block.setStatus(2);
+        } else if (this.f == null) {
+            block.setStatus(3);
+        } else if (this.f instanceof OEntityWitherSkull) {
+            block.setStatus(4);
+        }
+        return block;
+    }
+
+    // CanaryMod: calls the deprecated EXPLODE hook, which takes a HashSet of OChunkPositions
+    @SuppressWarnings("deprecation")
+    private boolean callExplodeHook(Block block, BlockPositionSet affected) {
+        HashSet<OChunkPosition> hashset = new HashSet<OChunkPosition>();
+
+        for (int n = 0; n < affected.size(); ++n) {
+            long position = affected.get(n);
+
+            hashset.add(new OChunkPosition(BlockPositionSet.unpackX(position), BlockPositionSet.unpackY(position), BlockPositionSet.unpackZ(position)));
+        }
+        boolean cancel = (Boolean) etc.getLoader().callHook(PluginLoader.Hook.EXPLODE, block, this.f, hashset);
+
+        affected.clear();
+        for (OChunkPosition ocp : hashset) {
+            affected.add(ocp.a, ocp.b, ocp.c);
+        }
+        return cancel;
+    }
+
     public void a(boolean flag) {
         this.k.a(this.c, this.d, this.e, "random.explode", 4.0F, (1.0F + (this.k.s.nextFloat() - this.k.s.nextFloat()) * 0.2F) * 0.7F);
         if (this.g >= 2.0F && this.b) {
@@ -220,6 +250,10 @@ public class OExplosion {
                 }
 
                 if (l > 0) {
+                    // CanaryMod: leave TNT alone if its chunk can't take more primed TNT
+                    if (l == OBlock.ar.cF && !EntityStacker.canPrime(this.k, i, k)) {
+                        continue;
+                    }
                     OBlock oblock = OBlock.s[l];
 
                     if (oblock.a(this)) {
@@ -245,9 +279,14 @@ public class OExplosion {
 
                 if (l == 0 && OBlock.t[i1] && this.j.nextInt(3) == 0) {
                     // CanaryMod start: IGNITE hook
-                    Block block = new Block(this.k.world, 0, i, j, k);
-                    block.setStatus(7); // Fireball explosion
-                    if (!(Boolean) etc.getLoader().callHook(PluginLoader.Hook.IGNITE, block, null)) {
+                    boolean ignite = true;
+
+                    if (etc.getLoader().hasListeners(PluginLoader.Hook.IGNITE)) {
+                        Block block = new Block(this.k.world, 0, i, j, k);
+                        block.setStatus(7); // Fireball explosion
+                        ignite = !(Boolean) etc.getLoader().callHook(PluginLoader.Hook.IGNITE, block, null);
+                    }
+                    if (ignite) {
                         this.k.c(i, j, k, OBlock.aw.cF);
                     } // CanaryMod end
                 }
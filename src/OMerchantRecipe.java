@@ -7,6 +7,7 @@ public class OMerchantRecipe {
     private int e;
 
     private VillagerTrade trade = new VillagerTrade(this); // CanaryMod: reference to wrapper
+    int changes; // CanaryMod: counts changes, see MerchantRecipeCache
 
     public OMerchantRecipe(ONBTTagCompound onbttagcompound) {
         this.a(onbttagcompound);
@@ -53,10 +54,12 @@ public class OMerchantRecipe {
 
     public void f() {
         ++this.d;
+        ++this.changes; // CanaryMod
     }
 
     public void a(int i) {
         this.e += i;
+        ++this.changes; // CanaryMod
     }
 
     public boolean g() {
@@ -64,6 +67,7 @@ public class OMerchantRecipe {
     }
 
     public void a(ONBTTagCompound onbttagcompound) {
+        ++this.changes; // CanaryMod
         ONBTTagCompound onbttagcompound1 = onbttagcompound.l("buy");
 
         this.a = OItemStack.a(onbttagcompound1);
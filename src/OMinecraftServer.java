@@ -255,6 +255,7 @@ public abstract class OMinecraftServer implements OICommandSender, Runnable, OIP
                 this.t.g();
                 this.t.r(stopMsg); // CanaryMod: custom stop message added
             }
+            etc.getDataSource().flush(); // CanaryMod: write out queued data
 
             this.an().a("Saving worlds");
             this.a(false);
@@ -23,6 +23,7 @@ public class ONetLoginHandler extends ONetHandler {
     private String i = "";
     private boolean j;
     private SecretKey k;
+    private LoginPrefetch prefetch; // CanaryMod: login data, fetched while the client authenticates
 
     public ONetLoginHandler(OMinecraftServer ominecraftserver, Socket socket, String s) throws IOException {
         this.e = ominecraftserver;
@@ -31,7 +32,7 @@ public class ONetLoginHandler extends ONetHandler {
     }
 
     public void d() {
-        if (this.h) {
+        if (this.h && (this.prefetch == null || this.prefetch.isReady())) { // CanaryMod: don't wait on the data source here
             this.e();
         }
 
@@ -74,6 +75,7 @@ public class ONetLoginHandler extends ONetHandler {
                     this.d = new byte[4];
                     c.nextBytes(this.d);
                     this.a.a((OPacket) (new OPacket253ServerAuthData(this.i, publickey, this.d)));
+                    this.prefetch = LoginPrefetch.start(this.g); // CanaryMod
                 }
             }
         }
@@ -109,7 +111,7 @@ public class ONetLoginHandler extends ONetHandler {
     public void a(OPacket1Login opacket1login) {}
 
     public void e() {
-        String s = this.e.af().a(this.a.c(), this.g);
+        String s = this.e.af().a(this.a.c(), this.g, this.prefetch); // CanaryMod: pass prefetched data
 
         if (s != null) {
             this.a(s);
@@ -243,6 +243,11 @@ public abstract class OServerConfigurationManager {
     }
 
     public String a(SocketAddress socketaddress, String s) {
+        return this.a(socketaddress, s, null);
+    }
+
+    // CanaryMod: check the login against prefetched data
+    public String a(SocketAddress socketaddress, String s, LoginPrefetch prefetch) {
         if (!etc.getLoader().isLoaded()) {
             return "The server is not finished loading yet!";
         }
@@ -263,7 +268,15 @@ public abstract class OServerConfigurationManager {
         // CanaryMod: Store for later usage.
         this.playerWorld.put(hook.getPlayerName(), hook.getWorldName());
 
-        Player player = etc.getDataSource().getPlayer(s);
+        LoginData data = prefetch != null ? prefetch.get() : LoginPrefetch.fetch(s);
+
+        if (data == null) {
+            return "Took too long to log in, please try again.";
+        }
+        if (data.isError()) {
+            return "Unable to check your login, please try again.";
+        }
+        Player player = data.getPlayer();
 
         if (etc.getDataSource().isOnBanList(s, s2)) {
             Ban ban = etc.getDataSource().getBan(s, s2);
@@ -283,7 +296,7 @@ public abstract class OServerConfigurationManager {
             }
 
             return s1;
-        } else if (etc.getInstance().isWhitelistEnabled() && !(etc.getDataSource().isUserOnWhitelist(s) || player.isAdmin())) {
+        } else if (etc.getInstance().isWhitelistEnabled() && !(data.isOnWhitelist() || player.isAdmin())) {
             return etc.getInstance().getWhitelistMessage();
         } else {
             if (this.g.a(s2)) {
@@ -295,7 +308,7 @@ public abstract class OServerConfigurationManager {
                 }
 
                 return s3;
-            } else if (this.a.size() >= this.b && !etc.getDataSource().isUserOnReserveList(s)) {
+            } else if (this.a.size() >= this.b && !data.isOnReserveList()) {
                 return "The server is full!";
             } else {
                 if (player.getIps() != null && !player.getIps()[0].equals("")) {
@@ -317,6 +330,8 @@ public abstract class OServerConfigurationManager {
                 }
             }
         }
+        // CanaryMod: hand the fetched player to the player entity
+        LoginPrefetch.admit(s, player);
         return null;
     }
 
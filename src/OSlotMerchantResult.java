@@ -40,7 +40,7 @@ public class OSlotMerchantResult extends OSlot {
 
     public boolean a(OEntityPlayer oentityplayer, OItemStack oitemstack, boolean heldShift) { // CanaryMod: add heldShift parameter
         OMerchantRecipe omerchantrecipe = this.a.i();
-        if ((Boolean) etc.getLoader().callHook(PluginLoader.Hook.VILLAGER_TRADE, ((OEntityPlayerMP) oentityplayer).getPlayer(),
+        if (etc.getLoader().hasListeners(PluginLoader.Hook.VILLAGER_TRADE) && (Boolean) etc.getLoader().callHook(PluginLoader.Hook.VILLAGER_TRADE, ((OEntityPlayerMP) oentityplayer).getPlayer(),
                     ((OEntityVillager) this.d).getEntity(), omerchantrecipe.getVillagerTrade())) {
             if (heldShift) {
                 ((OEntityPlayerMP) oentityplayer).getPlayer().getInventory().removeItemOverStacks(new Item(omerchantrecipe.d()));
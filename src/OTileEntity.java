@@ -14,6 +14,7 @@ public class OTileEntity {
     public int p = -1;
     public OBlock q;
     NBTTagCompound metadata = new NBTTagCompound("Canary"); // Canary metadata
+    long sleepUntil; // CanaryMod: see TileEntityScheduler
 
     public OTileEntity() {}
 
@@ -95,6 +96,7 @@ public class OTileEntity {
 
     public void e() {
         if (this.k != null) {
+            this.k.tileEntityScheduler.wake(this); // CanaryMod
             this.p = this.k.h(this.l, this.m, this.n);
             this.k.b(this.l, this.m, this.n, this);
             if (this.q() != null) {
@@ -121,6 +123,10 @@ public class OTileEntity {
 
     public void w_() {
         this.o = true;
+        // CanaryMod: don't keep a removed tile entity around
+        if (this.k != null) {
+            this.k.tileEntityScheduler.wake(this);
+        }
     }
 
     public void s() {
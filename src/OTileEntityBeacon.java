@@ -20,6 +20,10 @@ public class OTileEntityBeacon extends OTileEntity implements OIInventory, Conta
             this.v();
             this.u();
         }
+        // CanaryMod: nothing to do until the next update
+        if (!this.k.I) {
+            this.k.tileEntityScheduler.sleep(this, 80L - this.k.I() % 80L);
+        }
     }
 
     private void u() {
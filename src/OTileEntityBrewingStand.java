@@ -56,6 +56,10 @@ public class OTileEntityBrewingStand extends OTileEntity implements OISidedInven
             this.k.b(this.l, this.m, this.n, i, 2);
         }
 
+        // CanaryMod: nothing brewing, sleep until the inventory changes
+        if (this.d == 0 && !this.k.I) {
+            this.k.tileEntityScheduler.sleep(this, 0L);
+        }
         super.h();
     }
 
@@ -206,6 +210,10 @@ public class OTileEntityBrewingStand extends OTileEntity implements OISidedInven
     public void a(int i, OItemStack oitemstack) {
         if (i >= 0 && i < this.c.length) {
             this.c[i] = oitemstack;
+            // CanaryMod: there may be something to brew now
+            if (this.k != null) {
+                this.k.tileEntityScheduler.wake(this);
+            }
         }
     }
 
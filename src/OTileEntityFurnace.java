@@ -61,6 +61,10 @@ public class OTileEntityFurnace extends OTileEntity implements OISidedInventory,
             oitemstack.b = this.d();
         }
 
+        // CanaryMod: there may be something to smelt now
+        if (this.k != null) {
+            this.k.tileEntityScheduler.wake(this);
+        }
     }
 
     public String b() {
@@ -173,6 +177,10 @@ public class OTileEntityFurnace extends OTileEntity implements OISidedInventory,
             this.e();
         }
 
+        // CanaryMod: nothing burning and nothing to smelt, sleep until the inventory changes
+        if (!this.k.I && this.a == 0 && this.c == 0) {
+            this.k.tileEntityScheduler.sleep(this, 0L);
+        }
     }
 
     private boolean u() {
@@ -8,6 +8,10 @@ public class OTileEntityHopper extends OTileEntity implements OHopper, Container
     int c = -1; // CanaryMod: private -> package-private
 
     private final HopperBlock hopper = new HopperBlock(this); // CanaryMod: reference to wrapper
+    // CanaryMod: the tile entities below/beside (0) and above (1) as last looked up
+    private final OTileEntity[] cachedTileEntities = new OTileEntity[2];
+    private final long[] cachedPositions = new long[2];
+    private final int[] cachedGenerations = { -1, -1 };
 
     public OTileEntityHopper() {}
 
@@ -102,6 +106,10 @@ public class OTileEntityHopper extends OTileEntity implements OHopper, Container
         if (oitemstack != null && oitemstack.b > this.d()) {
             oitemstack.b = this.d();
         }
+        // CanaryMod: there may be something to move now
+        if (this.k != null) {
+            this.k.tileEntityScheduler.wake(this);
+        }
     }
 
     public String b() {
@@ -137,7 +145,10 @@ public class OTileEntityHopper extends OTileEntity implements OHopper, Container
             --this.c;
             if (!this.l()) {
                 this.c(0);
-                this.j();
+                // CanaryMod: nothing moved, check again in a while or when woken
+                if (!this.j()) {
+                    this.k.tileEntityScheduler.sleep(this, etc.getInstance().getTileEntityIdleTicks());
+                }
             }
         }
     }
@@ -171,7 +182,7 @@ public class OTileEntityHopper extends OTileEntity implements OHopper, Container
                 if (this.a(i) != null) {
                     OItemStack oitemstack = this.a(i).m();
                     // CanaryMod: Hopper Transfer hook
-                    if ((Boolean) etc.getLoader().callHook(PluginLoader.Hook.HOPPER_TRANSFER, hopper, new Item(oitemstack), false)) {
+                    if (etc.getLoader().hasListeners(PluginLoader.Hook.HOPPER_TRANSFER) && (Boolean) etc.getLoader().callHook(PluginLoader.Hook.HOPPER_TRANSFER, hopper, new Item(oitemstack), false)) {
                         return false;
                     } //
                     OItemStack oitemstack1 = a(oiinventory, this.a(i, 1), OFacing.a[OBlockHopper.c(this.p())]);
@@ -230,14 +241,16 @@ public class OTileEntityHopper extends OTileEntity implements OHopper, Container
         if (oitemstack != null && b(oiinventory, oitemstack, i, j)) {
             OItemStack oitemstack1 = oitemstack.m();
             // CanaryMod: Hopper Transfer hook.
-            Hopper hopper = null;
-            if (ohopper instanceof OTileEntityHopper) {
-                hopper = ((OTileEntityHopper) ohopper).hopper;
-            } else if (ohopper instanceof OEntityMinecartHopper) {
-                hopper = ((OEntityMinecartHopper) ohopper).getEntity();
-            }
-            if ((Boolean) etc.getLoader().callHook(PluginLoader.Hook.HOPPER_TRANSFER, hopper, new Item(oitemstack), true)) {
-                return false;
+            if (etc.getLoader().hasListeners(PluginLoader.Hook.HOPPER_TRANSFER)) {
+                Hopper hopper = null;
+                if (ohopper instanceof OTileEntityHopper) {
+                    hopper = ((OTileEntityHopper) ohopper).hopper;
+                } else if (ohopper instanceof OEntityMinecartHopper) {
+                    hopper = ((OEntityMinecartHopper) ohopper).getEntity();
+                }
+                if ((Boolean) etc.getLoader().callHook(PluginLoader.Hook.HOPPER_TRANSFER, hopper, new Item(oitemstack), true)) {
+                    return false;
+                }
             } //
             OItemStack oitemstack2 = a(ohopper, oiinventory.a(i, 1), -1);
 
@@ -337,26 +350,63 @@ public class OTileEntityHopper extends OTileEntity implements OHopper, Container
 
     private OIInventory v() {
         int i = OBlockHopper.c(this.p());
+        // CanaryMod start: look up the tile entity through the cache
+        int j = this.l + OFacing.b[i];
+        int k = this.m + OFacing.c[i];
+        int l = this.n + OFacing.d[i];
 
-        return b(this.az(), (double) (this.l + OFacing.b[i]), (double) (this.m + OFacing.c[i]), (double) (this.n + OFacing.d[i]));
+        return b(this.az(), (double) j, (double) k, (double) l, this.getCachedTileEntity(0, j, k, l));
+        // CanaryMod end
     }
 
     public static OIInventory b(OHopper ohopper) {
+        // CanaryMod: hoppers remember the tile entity above them
+        if (ohopper instanceof OTileEntityHopper) {
+            OTileEntityHopper otileentityhopper = (OTileEntityHopper) ohopper;
+
+            return b(otileentityhopper.k, (double) otileentityhopper.l, (double) (otileentityhopper.m + 1), (double) otileentityhopper.n, otileentityhopper.getCachedTileEntity(1, otileentityhopper.l, otileentityhopper.m + 1, otileentityhopper.n));
+        }
         return b(ohopper.az(), ohopper.aA(), ohopper.aB() + 1.0D, ohopper.aC());
     }
 
     public static OEntityItem a(OWorld oworld, double d0, double d1, double d2) {
-        List list = oworld.a(OEntityItem.class, OAxisAlignedBB.a().a(d0, d1, d2, d0 + 1.0D, d1 + 1.0D, d2 + 1.0D), OIEntitySelector.a);
-
-        return list.size() > 0 ? (OEntityItem) list.get(0) : null;
+        // CanaryMod: only look at the dropped items, not at all entities around
+        return ChunkItemIndex.getFirst(oworld, OAxisAlignedBB.a().a(d0, d1, d2, d0 + 1.0D, d1 + 1.0D, d2 + 1.0D));
     }
 
     public static OIInventory b(OWorld oworld, double d0, double d1, double d2) {
+        // CanaryMod: moved to b(OWorld, double, double, double, OTileEntity)
+        return b(oworld, d0, d1, d2, oworld.r(OMathHelper.c(d0), OMathHelper.c(d1), OMathHelper.c(d2)));
+    }
+
+    // CanaryMod start
+    /**
+     * Returns the tile entity at the given position, looking it up only if a
+     * tile entity was added or removed in the world since the last time.
+     *
+     * @param index
+     *            0 for the inventory items are moved to, 1 for the one above
+     */
+    private OTileEntity getCachedTileEntity(int index, int i, int j, int k) {
+        long position = BlockPositionSet.pack(i, j, k);
+        int generation = this.k.tileEntityGeneration;
+        OTileEntity otileentity = this.cachedTileEntities[index];
+
+        if (this.cachedGenerations[index] != generation || this.cachedPositions[index] != position || otileentity != null && otileentity.r()) {
+            otileentity = this.k.r(i, j, k);
+            this.cachedTileEntities[index] = otileentity;
+            this.cachedPositions[index] = position;
+            this.cachedGenerations[index] = generation;
+        }
+        return otileentity;
+    }
+
+    private static OIInventory b(OWorld oworld, double d0, double d1, double d2, OTileEntity otileentity) {
         OIInventory oiinventory = null;
         int i = OMathHelper.c(d0);
         int j = OMathHelper.c(d1);
         int k = OMathHelper.c(d2);
-        OTileEntity otileentity = oworld.r(i, j, k);
+        // CanaryMod end
 
         if (otileentity != null && otileentity instanceof OIInventory) {
             oiinventory = (OIInventory) otileentity;
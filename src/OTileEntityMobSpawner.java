@@ -16,6 +16,11 @@ public class OTileEntityMobSpawner extends OTileEntity {
     }
 
     public void h() {
+        // CanaryMod: without a player nearby, check again in a while
+        if (!this.k.I && etc.getInstance().getTileEntityIdleTicks() > 0 && !this.a.f()) {
+            this.k.tileEntityScheduler.sleep(this, etc.getInstance().getTileEntityIdleTicks());
+            return;
+        }
         this.a.g();
         super.h();
     }
@@ -54,8 +54,20 @@ public abstract class OWorld implements OIBlockAccess {
 
     // CanaryMod
     public final World world = new World((OWorldServer) this);
+    public final EntityLists entityLists = new EntityLists();
+    public final FluidFlow fluidFlow = new FluidFlow(this); // CanaryMod
+    public final ActivationRange activationRange = new ActivationRange(this); // CanaryMod
+    public final TileEntityScheduler tileEntityScheduler = new TileEntityScheduler(this); // CanaryMod
+    public int tileEntityGeneration; // CanaryMod: changes whenever a tile entity is added or removed
+    public final ItemMerger itemMerger = new ItemMerger(this); // CanaryMod
+    public final SpawnController spawnController = new SpawnController(this); // CanaryMod
     boolean loadedpreload = false;
     public final String name;
+    public boolean fastRedstone;
+    public int aiTickInterval = etc.getInstance().getAITickInterval(); // CanaryMod: see World#setAITickInterval(int)
+    public final PathfindingBudget pathfinding = new PathfindingBudget(this); // CanaryMod
+    public boolean vehicleHooks = etc.getInstance().isVehicleHooks(); // CanaryMod: see World#setVehicleHooks(boolean)
+    private final List collisionEntities = new ArrayList(); // CanaryMod: reused by a(OEntity, OAxisAlignedBB)
 
     public OBiomeGenBase a(int i, int j) {
         if (this.f(i, 0, j)) {
@@ -129,6 +141,7 @@ public abstract class OWorld implements OIBlockAccess {
         this.a();
 
         this.name = s; // CanaryMod: store world name in an accessible place.
+        this.fastRedstone = etc.getInstance().isFastRedstoneWorld(s); // CanaryMod
     }
 
     protected abstract OIChunkProvider j();
@@ -245,10 +258,8 @@ public abstract class OWorld implements OIBlockAccess {
                 }
 
                 boolean flag = false;
-                // CanaryMod: Get Block Info
-                Block block = this.world.getBlockAt(i, j, k);
-                // CanaryMod ignore if new block is air
-                if (l == 0 || !(Boolean) OEntity.manager.callHook(PluginLoader.Hook.BLOCK_UPDATE, block, l)) {
+                // CanaryMod ignore if new block is air, only get the block info if a plugin listens
+                if (l == 0 || !OEntity.manager.hasListeners(PluginLoader.Hook.BLOCK_UPDATE) || !(Boolean) OEntity.manager.callHook(PluginLoader.Hook.BLOCK_UPDATE, this.world.getBlockAt(i, j, k), l)) {
                     flag = ochunk.a(i & 15, j, k & 15, l, i1);
                 }
 
@@ -433,6 +444,7 @@ public abstract class OWorld implements OIBlockAccess {
 
     public void g(int i, int j, int k, int l) {
         if (!this.I) {
+            this.tileEntityScheduler.wake(i, j, k); // CanaryMod: a neighbour changed
             int i1 = this.a(i, j, k);
             OBlock oblock = OBlock.s[i1];
 
@@ -832,7 +844,13 @@ public abstract class OWorld implements OIBlockAccess {
     public boolean d(OEntity oentity) {
         // CanaryMod: mob spawn hook
         if (oentity instanceof OEntityLiving && !(oentity instanceof OEntityPlayer)) {
-            if ((etc.getInstance().getMobSpawnRate() < 100 && etc.getInstance().getMobSpawnRate() > 0 && etc.getInstance().getMobSpawnRate() > this.s.nextInt(100)) || etc.getInstance().getMobSpawnRate() <= 0 || (Boolean) (etc.getLoader().callHook(PluginLoader.Hook.MOB_SPAWN, new Mob((OEntityLiving) oentity)))) {
+            // Spawns over the limits are turned down before the Mob is created
+            if (!this.spawnController.admit(oentity)) {
+                return false;
+            }
+            int rate = etc.getInstance().getMobSpawnRate();
+
+            if ((rate < 100 && rate > 0 && rate > this.s.nextInt(100)) || rate <= 0 || etc.getLoader().hasListeners(PluginLoader.Hook.MOB_SPAWN) && (Boolean) (etc.getLoader().callHook(PluginLoader.Hook.MOB_SPAWN, ((OEntityLiving) oentity).getMob()))) {
                 return false;
             }
         }
@@ -855,9 +873,15 @@ public abstract class OWorld implements OIBlockAccess {
                 this.c();
             }
 
+            // CanaryMod: stack falling blocks, cap TNT and falling blocks per chunk
+            if (!EntityStacker.admit(this.e(i, j), oentity)) {
+                return false;
+            }
+
             this.e(i, j).a(oentity);
             this.e.add(oentity);
             this.a(oentity);
+            this.spawnController.spawned(oentity); // CanaryMod
             return true;
         }
     }
@@ -866,12 +890,20 @@ public abstract class OWorld implements OIBlockAccess {
         for (int i = 0; i < this.u.size(); ++i) {
             ((OIWorldAccess) this.u.get(i)).a(oentity);
         }
+        // CanaryMod start
+        this.entityLists.add(oentity); // keep the entity lists of World
+        this.spawnController.add(oentity);
+        // CanaryMod end
     }
 
     protected void b(OEntity oentity) {
         for (int i = 0; i < this.u.size(); ++i) {
             ((OIWorldAccess) this.u.get(i)).b(oentity);
         }
+        // CanaryMod start
+        this.entityLists.remove(oentity);
+        this.spawnController.remove(oentity);
+        // CanaryMod end
     }
 
     public void e(OEntity oentity) {
@@ -924,8 +956,11 @@ public abstract class OWorld implements OIBlockAccess {
         for (int k1 = i; k1 < j; ++k1) {
             for (int l1 = i1; l1 < j1; ++l1) {
                 if (this.f(k1, 64, l1)) {
+                    // CanaryMod: look the chunk up once per column instead of once per block
+                    OChunk ochunk = k1 >= -30000000 && l1 >= -30000000 && k1 < 30000000 && l1 < 30000000 ? this.e(k1 >> 4, l1 >> 4) : null;
+
                     for (int i2 = k - 1; i2 < l; ++i2) {
-                        OBlock oblock = OBlock.s[this.a(k1, i2, l1)];
+                        OBlock oblock = ochunk != null && i2 >= 0 && i2 < 256 ? OBlock.s[ochunk.a(k1 & 15, i2, l1 & 15)] : null;
 
                         if (oblock != null) {
                             oblock.a(this, k1, i2, l1, oaxisalignedbb, this.M, oentity);
@@ -943,9 +978,26 @@ public abstract class OWorld implements OIBlockAccess {
         } else if (oentity instanceof OEntityBoat) {
             vehicle = ((OEntityBoat) oentity).boat;
         }
+        if (vehicle != null && !vehicle.isHooked(PluginLoader.Hook.VEHICLE_COLLISION)) {
+            vehicle = null; // CanaryMod: nobody listens, don't call the hook twice per entity
+        }
 
         double d0 = 0.25D;
-        List list = this.b(oentity, oaxisalignedbb.b(d0, d0, d0));
+
+        // CanaryMod start: entities that don't collide with others only need the entities with a collision box
+        if (vehicle == null && !ChunkCollisionIndex.collidesWithEntities(oentity)) {
+            ChunkCollisionIndex.collect(this, oentity, oaxisalignedbb.b(d0, d0, d0), oaxisalignedbb, this.M);
+            return this.M;
+        }
+        List list;
+
+        if (vehicle == null) {
+            // No hooks are called below, so the list can't be in use already
+            list = this.collisionEntities;
+            ChunkCollisionIndex.getEntities(this, oentity, oaxisalignedbb.b(d0, d0, d0), list);
+        } else {
+            list = this.b(oentity, oaxisalignedbb.b(d0, d0, d0));
+        } // CanaryMod end
 
         for (int j2 = 0; j2 < list.size(); ++j2) {
             OEntity oentity1 = (OEntity) list.get(j2); // CanaryMod: split these two lines
@@ -968,6 +1020,7 @@ public abstract class OWorld implements OIBlockAccess {
                 this.M.add(oaxisalignedbb1);
             }
         }
+        this.collisionEntities.clear(); // CanaryMod
 
         return this.M;
     }
@@ -1091,7 +1144,7 @@ public abstract class OWorld implements OIBlockAccess {
         }
 
         this.C.c("remove");
-        this.e.removeAll(this.f);
+        removeAll(this.e, this.f); // CanaryMod: one pass instead of a lookup in this.f per entity
 
         int j;
         int k;
@@ -1111,6 +1164,11 @@ public abstract class OWorld implements OIBlockAccess {
 
         this.f.clear();
         this.C.c("regular");
+        // CanaryMod start
+        this.activationRange.activateEntities();
+        this.itemMerger.tick();
+        // CanaryMod end
+        Set removed = new HashSet(); // CanaryMod: dead entities, taken out of this.e in one go below
 
         for (i = 0; i < this.e.size(); ++i) {
             oentity = (OEntity) this.e.get(i);
@@ -1144,21 +1202,27 @@ public abstract class OWorld implements OIBlockAccess {
                     this.e(j, k).b(oentity);
                 }
 
-                this.e.remove(i--);
+                removed.add(oentity); // CanaryMod: was this.e.remove(i--)
                 this.b(oentity);
             }
 
             this.C.b();
         }
 
+        // CanaryMod: keeps the order of the remaining entities
+        if (!removed.isEmpty()) {
+            removeAll(this.e, removed);
+        }
+
         this.C.c("tileEntities");
         this.N = true;
-        Iterator iterator = this.g.iterator();
+        int kept = 0; // CanaryMod: tile entities are kept by moving them down instead of removing the others
 
-        while (iterator.hasNext()) {
-            OTileEntity otileentity = (OTileEntity) iterator.next();
+        for (int l = 0; l < this.g.size(); ++l) {
+            OTileEntity otileentity = (OTileEntity) this.g.get(l);
 
-            if (!otileentity.r() && otileentity.o() && this.f(otileentity.l, otileentity.m, otileentity.n)) {
+            // CanaryMod: skip sleeping tile entities before looking up their chunk
+            if (!otileentity.r() && otileentity.o() && !this.tileEntityScheduler.isSleeping(otileentity) && this.f(otileentity.l, otileentity.m, otileentity.n)) {
                 try {
                     otileentity.h();
                 } catch (Throwable throwable2) {
@@ -1170,7 +1234,6 @@ public abstract class OWorld implements OIBlockAccess {
             }
 
             if (otileentity.r()) {
-                iterator.remove();
                 if (this.c(otileentity.l >> 4, otileentity.n >> 4)) {
                     OChunk ochunk = this.e(otileentity.l >> 4, otileentity.n >> 4);
 
@@ -1178,22 +1241,37 @@ public abstract class OWorld implements OIBlockAccess {
                         ochunk.f(otileentity.l & 15, otileentity.m, otileentity.n & 15);
                     }
                 }
+            } else {
+                this.g.set(kept++, otileentity); // CanaryMod
             }
         }
 
+        // CanaryMod start
+        if (kept < this.g.size()) {
+            this.g.subList(kept, this.g.size()).clear();
+        }
+        // CanaryMod end
+
         this.N = false;
         if (!this.b.isEmpty()) {
-            this.g.removeAll(this.b);
+            // CanaryMod start
+            for (int l = 0; l < this.b.size(); ++l) {
+                this.tileEntityScheduler.wake((OTileEntity) this.b.get(l));
+            }
+            removeAll(this.g, this.b);
+            // CanaryMod end
             this.b.clear();
         }
 
         this.C.c("pendingTileEntities");
         if (!this.a.isEmpty()) {
+            Set ticking = new HashSet(this.g); // CanaryMod: instead of this.g.contains for every pending tile entity
+
             for (int l = 0; l < this.a.size(); ++l) {
                 OTileEntity otileentity1 = (OTileEntity) this.a.get(l);
 
                 if (!otileentity1.r()) {
-                    if (!this.g.contains(otileentity1)) {
+                    if (ticking.add(otileentity1)) {
                         this.g.add(otileentity1);
                     }
 
@@ -1216,6 +1294,30 @@ public abstract class OWorld implements OIBlockAccess {
         this.C.b();
     }
 
+    /**
+     * CanaryMod: Removes all elements that are in the given collection from
+     * a list in one pass, keeping the order of the rest.
+     *
+     * @param list
+     * @param toRemove
+     */
+    private static void removeAll(List list, Collection toRemove) {
+        if (toRemove.isEmpty()) {
+            return;
+        }
+        Set set = toRemove instanceof Set ? (Set) toRemove : new HashSet(toRemove);
+        int kept = 0;
+
+        for (int i = 0; i < list.size(); ++i) {
+            Object object = list.get(i);
+
+            if (!set.contains(object)) {
+                list.set(kept++, object);
+            }
+        }
+        list.subList(kept, list.size()).clear();
+    }
+
     public void a(Collection collection) {
         if (this.N) {
             this.a.addAll(collection);
@@ -1241,7 +1343,10 @@ public abstract class OWorld implements OIBlockAccess {
             oentity.D = oentity.B;
             if (flag && oentity.ai) {
                 ++oentity.ac;
-                if (oentity.o != null) {
+                // CanaryMod: entities far from all players only get an inactive tick
+                if (!this.activationRange.isActive(oentity)) {
+                    oentity.inactiveTick();
+                } else if (oentity.o != null) {
                     oentity.V();
                 } else {
                     oentity.l_();
@@ -2254,6 +2359,15 @@ public abstract class OWorld implements OIBlockAccess {
     }
 
     public OPathEntity a(OEntity oentity, OEntity oentity1, float f, boolean flag, boolean flag1, boolean flag2, boolean flag3) {
+        // CanaryMod start: skip searches that failed a moment ago and keep to the budget
+        long from = BlockPositionSet.pack(OMathHelper.c(oentity.u), OMathHelper.c(oentity.v), OMathHelper.c(oentity.w));
+        long to = BlockPositionSet.pack(OMathHelper.c(oentity1.u), OMathHelper.c(oentity1.v), OMathHelper.c(oentity1.w));
+        int options = pathOptions(flag, flag1, flag2, flag3) | 16;
+
+        if (this.pathfinding.isKnownFailure(from, to, f, options) || !this.pathfinding.tryFind(oentity)) {
+            return null;
+        }
+        // CanaryMod end
         this.C.a("pathfind");
         int i = OMathHelper.c(oentity.u);
         int j = OMathHelper.c(oentity.v + 1.0D);
@@ -2268,11 +2382,25 @@ public abstract class OWorld implements OIBlockAccess {
         OChunkCache ochunkcache = new OChunkCache(this, i1, j1, k1, l1, i2, j2, 0);
         OPathEntity opathentity = (new OPathFinder(ochunkcache, flag, flag1, flag2, flag3)).a(oentity, oentity1, f);
 
+        // CanaryMod start
+        if (opathentity == null) {
+            this.pathfinding.addFailure(from, to, f, options);
+        }
+        // CanaryMod end
         this.C.b();
         return opathentity;
     }
 
     public OPathEntity a(OEntity oentity, int i, int j, int k, float f, boolean flag, boolean flag1, boolean flag2, boolean flag3) {
+        // CanaryMod start: skip searches that failed a moment ago and keep to the budget
+        long from = BlockPositionSet.pack(OMathHelper.c(oentity.u), OMathHelper.c(oentity.v), OMathHelper.c(oentity.w));
+        long to = BlockPositionSet.pack(i, j, k);
+        int options = pathOptions(flag, flag1, flag2, flag3);
+
+        if (this.pathfinding.isKnownFailure(from, to, f, options) || !this.pathfinding.tryFind(oentity)) {
+            return null;
+        }
+        // CanaryMod end
         this.C.a("pathfind");
         int l = OMathHelper.c(oentity.u);
         int i1 = OMathHelper.c(oentity.v);
@@ -2287,10 +2415,20 @@ public abstract class OWorld implements OIBlockAccess {
         OChunkCache ochunkcache = new OChunkCache(this, l1, i2, j2, k2, l2, i3, 0);
         OPathEntity opathentity = (new OPathFinder(ochunkcache, flag, flag1, flag2, flag3)).a(oentity, i, j, k, f);
 
+        // CanaryMod start
+        if (opathentity == null) {
+            this.pathfinding.addFailure(from, to, f, options);
+        }
+        // CanaryMod end
         this.C.b();
         return opathentity;
     }
 
+    // CanaryMod: the path finder options as bits, see PathfindingBudget
+    private static int pathOptions(boolean flag, boolean flag1, boolean flag2, boolean flag3) {
+        return (flag ? 1 : 0) | (flag1 ? 2 : 0) | (flag2 ? 4 : 0) | (flag3 ? 8 : 0);
+    }
+
     public int j(int i, int j, int k, int l) {
         int i1 = this.a(i, j, k);
 
@@ -78,7 +78,13 @@ public class OWorldServer extends OWorld {
 
         this.C.a("mobSpawner");
         if (this.O().b("doMobSpawning")) {
-            this.Q.a(this, this.E, this.F, this.x.f() % 400L == 0L);
+            // CanaryMod start: spawn intervals and limits, see SpawnController
+            boolean animals = this.spawnController.isSpawnTick(SpawnController.Type.ANIMALS);
+
+            this.spawnController.setNaturalSpawning(true);
+            this.Q.a(this, this.E && this.spawnController.isSpawnTick(SpawnController.Type.MONSTERS), this.F && (animals || this.spawnController.isSpawnTick(SpawnController.Type.AMBIENT)), animals);
+            this.spawnController.setNaturalSpawning(false);
+            // CanaryMod end
         }
 
         this.C.c("chunkSource");
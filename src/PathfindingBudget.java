@@ -0,0 +1,187 @@
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * PathfindingBudget.java - Limits the path searches in a world per tick.
+ *
+ * With a budget set, no more than that many paths are searched per tick.
+ * Mobs that were turned down are queued, and the queue is served first: a
+ * mob that isn't queued only gets to search if there is room left for all
+ * queued mobs. Queued mobs that don't fit stay in the queue, in order. A mob
+ * without a path just tries again, like when no path was found.
+ *
+ * Searches that found no path are remembered for a while, so mobs standing
+ * on the same block and heading for the same place (like a crowd in a mob
+ * farm trying to reach a player behind a wall) don't all search the whole
+ * area again. Paths that were found aren't shared, mobs move along their
+ * paths on their own.
+ *
+ * Only used on the server thread.
+ */
+public class PathfindingBudget {
+
+    private static final int             QUEUE_TIMEOUT = 20; // ticks
+
+    private final OWorld                 oworld;
+    private int                          budget;
+    private int                          failureTicks;
+    private long                         tick = Long.MIN_VALUE;
+    private int                          used;
+    /**
+     * Mobs turned down, in the order they were, with the tick they last
+     * asked. Mobs that stop asking drop out after {@link #QUEUE_TIMEOUT}.
+     */
+    private final Map<OEntity, Long>     queued = new LinkedHashMap<OEntity, Long>();
+    private final Map<FailedPath, Long>  failures = new HashMap<FailedPath, Long>();
+
+    public PathfindingBudget(OWorld oworld) {
+        this.oworld = oworld;
+        budget = etc.getInstance().getPathfindingBudget();
+        failureTicks = etc.getInstance().getPathFailureTicks();
+    }
+
+    /**
+     * Checks whether the given entity may search a path this tick, and
+     * counts the search if so.
+     *
+     * @param oentity
+     * @return <tt>false</tt> if the budget is used up
+     */
+    public boolean tryFind(OEntity oentity) {
+        if (budget <= 0) {
+            return true;
+        }
+        nextTick();
+        if (queued.containsKey(oentity)) {
+            if (used < budget) {
+                queued.remove(oentity);
+                used++;
+                return true;
+            }
+            queued.put(oentity, tick); // keeps its place
+            return false;
+        }
+        // Leave room for everyone queued before
+        if (used + queued.size() < budget) {
+            used++;
+            return true;
+        }
+        queued.put(oentity, tick);
+        return false;
+    }
+
+    /**
+     * Returns whether a search with the same start, end and options found no
+     * path a short while ago.
+     *
+     * @param from
+     *            the packed start position, see {@link BlockPositionSet#pack(int, int, int)}
+     * @param to
+     *            the packed end position
+     * @param range
+     * @param options
+     *            the path finder options, as bits
+     * @return <tt>true</tt> if there is no point in searching again yet
+     */
+    public boolean isKnownFailure(long from, long to, float range, int options) {
+        if (failureTicks <= 0 || failures.isEmpty()) {
+            return false;
+        }
+        nextTick();
+        Long until = failures.get(new FailedPath(from, to, range, options));
+
+        return until != null && until > tick;
+    }
+
+    /**
+     * Remembers that a search found no path.
+     *
+     * @param from
+     * @param to
+     * @param range
+     * @param options
+     */
+    public void addFailure(long from, long to, float range, int options) {
+        if (failureTicks <= 0) {
+            return;
+        }
+        nextTick();
+        failures.put(new FailedPath(from, to, range, options), tick + failureTicks);
+    }
+
+    public int getBudget() {
+        return budget;
+    }
+
+    public void setBudget(int budget) {
+        this.budget = budget;
+    }
+
+    public int getFailureTicks() {
+        return failureTicks;
+    }
+
+    public void setFailureTicks(int failureTicks) {
+        this.failureTicks = failureTicks;
+        if (failureTicks <= 0) {
+            failures.clear();
+        }
+    }
+
+    private void nextTick() {
+        // SRG long now = oworld.func_82737_E();
+        long now = oworld.I();
+
+        if (now == tick) {
+            return;
+        }
+        tick = now;
+        used = 0;
+        for (Iterator<Map.Entry<OEntity, Long>> iterator = queued.entrySet().iterator(); iterator.hasNext();) {
+            Map.Entry<OEntity, Long> entry = iterator.next();
+
+            // SRG if (entry.getKey().field_70128_L || entry.getValue() + QUEUE_TIMEOUT <= now) {
+            if (entry.getKey().M || entry.getValue() + QUEUE_TIMEOUT <= now) {
+                iterator.remove();
+            }
+        }
+        for (Iterator<Map.Entry<FailedPath, Long>> iterator = failures.entrySet().iterator(); iterator.hasNext();) {
+            if (iterator.next().getValue() <= now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static class FailedPath {
+        private final long  from, to;
+        private final float range;
+        private final int   options;
+
+        FailedPath(long from, long to, float range, int options) {
+            this.from = from;
+            this.to = to;
+            this.range = range;
+            this.options = options;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof FailedPath)) {
+                return false;
+            }
+            FailedPath other = (FailedPath) obj;
+
+            return from == other.from && to == other.to && range == other.range && options == other.options;
+        }
+
+        @Override
+        public int hashCode() {
+            long hash = from * 31 + to;
+
+            return (int) (hash ^ hash >>> 32) * 31 + Float.floatToIntBits(range) * 7 + options;
+        }
+    }
+}
@@ -1570,4 +1570,16 @@ public class PluginListener {
     public boolean onMinecartActivate(Minecart cart, boolean powered) {
         return false;
     }
+
+    /**
+     * Called once per chunk and tick when fluid wants to flow into the chunk
+     * and fluid-flow-batching is on. In that case this is called instead of
+     * {@link #onFlow(Block, Block)}.
+     * @param chunk The chunk the fluid wants to flow into
+     * @return <tt>true</tt> if fluid shouldn't flow into this chunk during
+     * this tick, <tt>false</tt> otherwise.
+     */
+    public boolean onFlowChunk(Chunk chunk) {
+        return false;
+    }
 }
@@ -400,6 +400,10 @@ public class PluginLoader {
          * Calls {@link PluginListener#onMinecartActivate(Minecart, boolean)}
          */
         MINECART_ACTIVATE, //
+        /**
+         * Calls {@link PluginListener#onFlowChunk(Chunk)}
+         */
+        FLOW_CHUNK, //
         /**
          * For internal use only.
          */
@@ -570,6 +574,7 @@ public class PluginLoader {
     private List<Plugin> plugins = new ArrayList<Plugin>();
     private EnumMap<Hook, List<PluginRegisteredListener>> listeners =
         new EnumMap<Hook, List<PluginRegisteredListener>>(Hook.class);
+    private volatile boolean[] hooked = new boolean[Hook.values().length];
     private HashMap<String, PluginInterface> customListeners = new HashMap<String, PluginInterface>();
     private Server server;
     private PropertiesFile properties;
@@ -689,6 +694,7 @@ public class PluginLoader {
                         }
                     }
                 }
+                updateHooked();
             }
 
             ((MyClassLoader) toNull.getClass().getClassLoader()).close();
@@ -1391,6 +1397,12 @@ public class PluginLoader {
 
                             case MINECART_ACTIVATE:
                                 toRet = listener.onMinecartActivate((Minecart) parameters[0], (Boolean) parameters[1]);
+                                break;
+
+                            case FLOW_CHUNK:
+                                if (listener.onFlowChunk((Chunk) parameters[0])) {
+                                    toRet = true;
+                                }
                         }
                     } catch (UnsupportedOperationException ex) {}
                 }
@@ -1473,6 +1485,7 @@ public class PluginLoader {
             }
 
             regListeners.add(pos, reg);
+            updateHooked();
         }
 
         return reg;
@@ -1505,7 +1518,30 @@ public class PluginLoader {
 
         synchronized (lock) {
             regListeners.remove(reg);
+            updateHooked();
+        }
+    }
+
+    /**
+     * Returns whether any plugin listens to the given hook. Hot code paths
+     * use this to skip building the hook's parameters, e.g. {@link Block}s
+     * during liquid flow, when nobody would see them.
+     *
+     * @param h
+     *            Hook to check
+     * @return <tt>true</tt> if calling the hook may do something
+     */
+    public boolean hasListeners(Hook h) {
+        return (loaded || loadedpreload) && hooked[h.ordinal()];
+    }
+
+    private void updateHooked() {
+        boolean[] newHooked = new boolean[Hook.values().length];
+
+        for (Map.Entry<Hook, List<PluginRegisteredListener>> entry : listeners.entrySet()) {
+            newHooked[entry.getKey().ordinal()] = !entry.getValue().isEmpty();
         }
+        hooked = newHooked;
     }
 
     /**
@@ -0,0 +1,234 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * RedstoneWireEngine.java - Updates redstone wire power a network at a time.
+ *
+ * The vanilla wire recalculates one wire at a time and every change notifies
+ * the neighbours of all neighbours, which makes the next wire recalculate,
+ * and so on. This engine instead collects all wire that can be affected by a
+ * change (power fades by one per wire, so that's every wire at most 15 steps
+ * away), works out the new power of all of it in one breadth-first pass and
+ * then sets the changed wires. Every block next to a changed wire is notified
+ * once.
+ *
+ * {@link PluginLoader.Hook#REDSTONE_CHANGE} is called once per changed wire,
+ * as its power is settled in that pass. If a plugin returns a different
+ * power, the wire is queued again with that power and the wire next to it is
+ * worked out from there, like the vanilla wire would.
+ *
+ * For plain wire networks the power should match the vanilla wire, but this
+ * isn't checked against vanilla. Wire that connects in one direction only
+ * (e.g. wire on glowstone) may end up different. The order in which
+ * neighbouring blocks are notified differs.
+ *
+ * @see World#setFastRedstone(boolean)
+ */
+public class RedstoneWireEngine {
+
+    private static final int      MAX_DISTANCE = 15;
+    private static final int[]    DX = { -1, 1, 0, 0 };
+    private static final int[]    DZ = { 0, 0, -1, 1 };
+
+    private final OBlockRedstoneWire wire;
+
+    public RedstoneWireEngine(OBlockRedstoneWire wire) {
+        this.wire = wire;
+    }
+
+    /**
+     * Updates the wire at the given position and all wire it can power. If
+     * there is no wire there (anymore), the wire connected to it is updated.
+     *
+     * @param oworld
+     * @param x
+     * @param y
+     * @param z
+     */
+    public void update(OWorld oworld, int x, int y, int z) {
+        // SRG int id = wire.field_71990_ca;
+        int id = wire.cF;
+        Map<Long, Node> nodes = new LinkedHashMap<Long, Node>();
+        List<Node> region = new ArrayList<Node>();
+        LinkedList<Node> queue = new LinkedList<Node>();
+        // SRG Node start = new Node(x, y, z, 0, oworld.func_72805_g(x, y, z));
+        Node start = new Node(x, y, z, 0, oworld.h(x, y, z));
+
+        // SRG start.inside = oworld.func_72798_a(x, y, z) == id;
+        start.inside = oworld.a(x, y, z) == id;
+        nodes.put(key(x, y, z), start);
+        queue.add(start);
+
+        // Find all wire within reach of the change. Wire just out of reach
+        // keeps its power, it can't have been powered through the change.
+        while (!queue.isEmpty()) {
+            Node node = queue.removeFirst();
+
+            if (node.inside) {
+                region.add(node);
+            }
+            for (int dir = 0; dir < 4; dir++) {
+                int nx = node.x + DX[dir], nz = node.z + DZ[dir];
+
+                link(oworld, nodes, queue, node, nx, node.y, nz);
+                // SRG if (oworld.func_72809_s(nx, node.y, nz) && !oworld.func_72809_s(node.x, node.y + 1, node.z)) {
+                if (oworld.u(nx, node.y, nz) && !oworld.u(node.x, node.y + 1, node.z)) {
+                    link(oworld, nodes, queue, node, nx, node.y + 1, nz);
+                // SRG } else if (!oworld.func_72809_s(nx, node.y, nz)) {
+                } else if (!oworld.u(nx, node.y, nz)) {
+                    link(oworld, nodes, queue, node, nx, node.y - 1, nz);
+                }
+            }
+        }
+
+        // Spread the power, strongest first, so every wire is settled only once
+        @SuppressWarnings("unchecked")
+        List<Node>[] buckets = new List[16];
+
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new ArrayList<Node>();
+        }
+        for (Node node : nodes.values()) {
+            if (node.inside) {
+                node.power = wire.getBlockPower(oworld, node.x, node.y, node.z);
+            } else if (node.distance > 0) {
+                node.power = node.oldPower;
+            }
+            if (node.inside || node.power > 0) {
+                buckets[Math.min(node.power, 15)].add(node);
+            }
+        }
+        boolean hooked = etc.getLoader().hasListeners(PluginLoader.Hook.REDSTONE_CHANGE);
+
+        for (int power = 15; power >= 0; power--) {
+            for (int i = 0; i < buckets[power].size(); i++) {
+                Node node = buckets[power].get(i);
+
+                if (node.power != power) {
+                    continue;
+                }
+                if (node.inside && !node.settled) {
+                    node.settled = true;
+                    if (hooked && power != node.oldPower) {
+                        int changed = (Integer) etc.getLoader().callHook(PluginLoader.Hook.REDSTONE_CHANGE, oworld.world.getBlockAt(node.x, node.y, node.z), node.oldPower, power);
+
+                        changed = Math.max(0, Math.min(changed, 15));
+                        if (changed != power) {
+                            // Spread the power the plugin chose instead
+                            node.power = changed;
+                            buckets[changed].add(node);
+                            if (changed > power) {
+                                power = changed + 1;
+                                break;
+                            }
+                            continue;
+                        }
+                    }
+                }
+                if (power <= 1) {
+                    continue;
+                }
+                for (Node other : node.links) {
+                    if (other.inside && other.power < power - 1) {
+                        // Wire settled already is worked out again, a plugin raised the power next to it
+                        other.settled = false;
+                        other.power = power - 1;
+                        buckets[power - 1].add(other);
+                    }
+                }
+            }
+        }
+
+        // Set the wire that changed, then notify the blocks around it once
+        BlockPositionSet notify = new BlockPositionSet();
+
+        for (Node node : region) {
+            // SRG if (node.power == node.oldPower || oworld.func_72798_a(node.x, node.y, node.z) != id) {
+            if (node.power == node.oldPower || oworld.a(node.x, node.y, node.z) != id) {
+                continue;
+            }
+            // SRG oworld.func_72921_c(node.x, node.y, node.z, node.power, 2);
+            oworld.b(node.x, node.y, node.z, node.power, 2);
+            // Same blocks as the vanilla wire: the neighbours of the wire
+            // and of the blocks next to it
+            addNeighbours(notify, node.x, node.y, node.z);
+            for (int dir = 0; dir < 4; dir++) {
+                addNeighbours(notify, node.x + DX[dir], node.y, node.z + DZ[dir]);
+            }
+            addNeighbours(notify, node.x, node.y - 1, node.z);
+            addNeighbours(notify, node.x, node.y + 1, node.z);
+        }
+        for (int i = 0; i < notify.size(); i++) {
+            long pos = notify.get(i);
+            Node node = nodes.get(pos);
+
+            // The wire found above is up to date already
+            if (node != null && (node.inside || node.distance > 0)) {
+                continue;
+            }
+            int nx = BlockPositionSet.unpackX(pos), ny = BlockPositionSet.unpackY(pos), nz = BlockPositionSet.unpackZ(pos);
+
+            // SRG oworld.func_72821_m(nx, ny, nz, id);
+            oworld.g(nx, ny, nz, id);
+        }
+    }
+
+    /**
+     * Links a node to the wire at the given position, if there is any
+     */
+    private void link(OWorld oworld, Map<Long, Node> nodes, LinkedList<Node> queue, Node from, int x, int y, int z) {
+        // SRG if (oworld.func_72798_a(x, y, z) != wire.field_71990_ca) {
+        if (oworld.a(x, y, z) != wire.cF) {
+            return;
+        }
+        Long key = key(x, y, z);
+        Node node = nodes.get(key);
+
+        if (node == null) {
+            // SRG node = new Node(x, y, z, from.distance + 1, oworld.func_72805_g(x, y, z));
+            node = new Node(x, y, z, from.distance + 1, oworld.h(x, y, z));
+            node.inside = node.distance <= MAX_DISTANCE;
+            nodes.put(key, node);
+            if (node.inside) {
+                queue.add(node);
+            }
+        }
+        from.links.add(node);
+        if (!node.inside) {
+            // Wire out of reach isn't searched, but may still power this one
+            node.links.add(from);
+        }
+    }
+
+    private static void addNeighbours(BlockPositionSet positions, int x, int y, int z) {
+        positions.add(x - 1, y, z);
+        positions.add(x + 1, y, z);
+        positions.add(x, y - 1, z);
+        positions.add(x, y + 1, z);
+        positions.add(x, y, z - 1);
+        positions.add(x, y, z + 1);
+    }
+
+    private static Long key(int x, int y, int z) {
+        return BlockPositionSet.pack(x, y, z);
+    }
+
+    private static class Node {
+        final int        x, y, z, distance, oldPower;
+        final List<Node> links = new ArrayList<Node>(4);
+        boolean          inside, settled;
+        int              power;
+
+        Node(int x, int y, int z, int distance, int oldPower) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.distance = distance;
+            this.oldPower = oldPower;
+        }
+    }
+}
@@ -1,3 +1,5 @@
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -36,6 +38,10 @@ public class ServerConsoleCommands extends CommandHandler {
         add("weather", weather);
         add("toggledownfall", weather);
         add("thunder", thunder);
+        add("migrate-flatfile", migrateflatfile);
+        add("backupdb", backupdb);
+        add("activation", activation);
+        add("spawnstats", spawnstats);
     }
 
     /**
@@ -69,15 +75,23 @@ public class ServerConsoleCommands extends CommandHandler {
     public static final BaseCommand reload = new BaseCommand("- Reloads CanaryMod") {
 
         @Override
-        protected void execute(MessageReceiver caller, String[] parameters) {
-            etc.getInstance().load();
-            etc.getInstance().loadData();
-            etc.getDataSource().loadGroups();
-            for (Player p : etc.getServer().getPlayerList()) {
-                p.getUser().reloadPlayer();
+        protected void execute(final MessageReceiver caller, String[] parameters) {
+            // The files are read in the background, the server keeps running meanwhile
+            boolean started = etc.getInstance().reload(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (Player p : etc.getServer().getPlayerList()) {
+                        p.getUser().reloadPlayer();
+                    }
+                    log.log(Level.INFO, "CanaryMod reloaded by {0}", caller.getName());
+                    caller.notify("Successfully reloaded config");
+                }
+            });
+
+            if (!started) {
+                caller.notify(Colors.Rose + "A reload is already running.");
             }
-            log.log(Level.INFO, "CanaryMod reloaded by {0}", caller.getName());
-            caller.notify("Successfully reloaded config");
         }
 
         @Override
@@ -918,6 +932,77 @@ public class ServerConsoleCommands extends CommandHandler {
             return weather.autoComplete(caller, currentText);
         }
     };
+    public static final BaseCommand migrateflatfile = new BaseCommand("- Replaces the embedded database with the flat files") {
+
+        @Override
+        protected void execute(MessageReceiver caller, String[] args) {
+            if (!(etc.getDataSource() instanceof EmbeddedSource)) {
+                caller.notify(Colors.Rose + "The server isn't using the embedded data source.");
+                return;
+            }
+            if (((EmbeddedSource) etc.getDataSource()).importFlatFile()) {
+                caller.notify(Colors.Rose + "Imported the flat files.");
+            } else {
+                caller.notify(Colors.Rose + "Unable to import the flat files, check the server log.");
+            }
+        }
+    };
+    public static final BaseCommand activation = new BaseCommand("- Lists the active and inactive entities per world") {
+
+        @Override
+        protected void execute(MessageReceiver caller, String[] parameters) {
+            for (World[] worlds : etc.getServer().getLoadedWorld()) {
+                for (World world : worlds) {
+                    caller.notify(Colors.Gold + world.getName() + " " + world.getType() + Colors.White + ": " + world.getActiveEntityCount() + " active, " + world.getInactiveEntityCount() + " inactive");
+                }
+            }
+        }
+
+        @Override
+        public List<String> autoComplete(MessageReceiver caller, String currentText) {
+            return null;
+        }
+    };
+    public static final BaseCommand spawnstats = new BaseCommand("- Lists the mob spawn attempts and spawns per world") {
+
+        @Override
+        protected void execute(MessageReceiver caller, String[] parameters) {
+            for (World[] worlds : etc.getServer().getLoadedWorld()) {
+                for (World world : worlds) {
+                    StringBuilder line = new StringBuilder(Colors.Gold + world.getName() + " " + world.getType() + Colors.White + ":");
+
+                    for (SpawnController.Type type : SpawnController.Type.values()) {
+                        line.append(" ").append(type.name().toLowerCase()).append(" ").append(world.getSpawnSuccesses(type)).append("/").append(world.getSpawnAttempts(type));
+                    }
+                    caller.notify(line.toString());
+                }
+            }
+        }
+
+        @Override
+        public List<String> autoComplete(MessageReceiver caller, String currentText) {
+            return null;
+        }
+    };
+    public static final BaseCommand backupdb = new BaseCommand("[file] - Writes a backup of the embedded database", "Correct usage is: /backupdb [file]", 1, 2) {
+
+        @Override
+        protected void execute(MessageReceiver caller, String[] args) {
+            if (!(etc.getDataSource() instanceof EmbeddedSource)) {
+                caller.notify(Colors.Rose + "The server isn't using the embedded data source.");
+                return;
+            }
+            File target = new File(args.length > 1 ? args[1] : etc.getInstance().getEmbeddedDbLocation() + "." + System.currentTimeMillis() / 1000 + ".bak");
+
+            try {
+                ((EmbeddedSource) etc.getDataSource()).backup(target);
+                caller.notify(Colors.Rose + "Backup written to " + target.getPath());
+            } catch (IOException ex) {
+                log.log(Level.SEVERE, "Unable to write backup " + target, ex);
+                caller.notify(Colors.Rose + "Unable to write the backup, check the server log.");
+            }
+        }
+    };
 
     static {
         // CanaryMod: Initialize *after* all the commands
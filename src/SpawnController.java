@@ -0,0 +1,199 @@
+import java.util.List;
+
+
+/**
+ * SpawnController.java - Keeps natural mob spawning in a world in check.
+ *
+ * Mobs are sorted into monsters, animals and ambient mobs (bats and squid),
+ * like the natural spawner does. For each type the settings say every how
+ * many ticks they spawn naturally (<tt>spawn-interval-&lt;type&gt;</tt>),
+ * how many of them may live in a world (<tt>spawn-world-cap-&lt;type&gt;</tt>)
+ * and in a chunk (<tt>spawn-chunk-cap-&lt;type&gt;</tt>) for more to spawn
+ * naturally. <tt>spawn-budget</tt> limits how many mobs spawn naturally per
+ * tick. Spawns over these limits are turned down in
+ * {@link OWorld#d(OEntity)} before any hooks are called.
+ *
+ * Mobs spawned any other way, like from spawners, eggs or plugins, count
+ * towards the caps but are never turned down.
+ *
+ * Only used on the server thread.
+ */
+public class SpawnController {
+
+    public enum Type {
+        MONSTERS, ANIMALS, AMBIENT;
+    }
+
+    private final OWorld oworld;
+    private final int[]  living    = new int[Type.values().length];
+    private final long[] attempts  = new long[Type.values().length];
+    private final long[] successes = new long[Type.values().length];
+    private boolean      natural;
+    private int          spawned;
+
+    public SpawnController(OWorld oworld) {
+        this.oworld = oworld;
+    }
+
+    /**
+     * Called by {@link OWorldServer} around the natural spawner.
+     *
+     * @param natural
+     *            <tt>true</tt> before, <tt>false</tt> after
+     */
+    public void setNaturalSpawning(boolean natural) {
+        this.natural = natural;
+        spawned = 0;
+    }
+
+    /**
+     * Returns whether mobs of the given type spawn naturally this tick.
+     *
+     * @param type
+     * @return true if they do
+     */
+    public boolean isSpawnTick(Type type) {
+        int interval = etc.getInstance().getSpawnInterval(type);
+
+        // SRG return interval <= 1 || oworld.func_82737_E() % interval == 0L;
+        return interval <= 1 || oworld.I() % interval == 0L;
+    }
+
+    /**
+     * Counts a spawn attempt and checks it against the limits.
+     *
+     * @param oentity
+     *            the entity about to be spawned
+     * @return <tt>false</tt> if it shouldn't be spawned
+     */
+    public boolean admit(OEntity oentity) {
+        Type type = getType(oentity);
+
+        if (type == null) {
+            return true;
+        }
+        attempts[type.ordinal()]++;
+        if (!natural) {
+            return true;
+        }
+        int budget = etc.getInstance().getSpawnBudget();
+
+        if (budget > 0 && spawned >= budget || !isSpawnTick(type)) {
+            return false;
+        }
+        int worldCap = etc.getInstance().getSpawnWorldCap(type);
+
+        if (worldCap > 0 && living[type.ordinal()] >= worldCap) {
+            return false;
+        }
+        int chunkCap = etc.getInstance().getSpawnChunkCap(type);
+
+        // SRG if (chunkCap > 0 && count(oworld.func_72964_e(OMathHelper.func_76128_c(oentity.field_70165_t / 16.0D), OMathHelper.func_76128_c(oentity.field_70161_v / 16.0D)), type) >= chunkCap) {
+        if (chunkCap > 0 && count(oworld.e(OMathHelper.c(oentity.u / 16.0D), OMathHelper.c(oentity.w / 16.0D)), type) >= chunkCap) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Called by {@link OWorld} when an entity starts being tracked.
+     *
+     * @param oentity
+     */
+    public void add(OEntity oentity) {
+        Type type = getType(oentity);
+
+        if (type != null) {
+            living[type.ordinal()]++;
+        }
+    }
+
+    /**
+     * Called by {@link OWorld} when an entity stops being tracked.
+     *
+     * @param oentity
+     */
+    public void remove(OEntity oentity) {
+        Type type = getType(oentity);
+
+        if (type != null && living[type.ordinal()] > 0) {
+            living[type.ordinal()]--;
+        }
+    }
+
+    /**
+     * Counts a spawn that went through.
+     *
+     * @param oentity
+     */
+    public void spawned(OEntity oentity) {
+        Type type = getType(oentity);
+
+        if (type != null) {
+            successes[type.ordinal()]++;
+            if (natural) {
+                spawned++;
+            }
+        }
+    }
+
+    /**
+     * Returns how many mobs of the given type were about to be spawned in
+     * this world since it was loaded.
+     *
+     * @param type
+     * @return the number of spawn attempts
+     */
+    public long getAttempts(Type type) {
+        return attempts[type.ordinal()];
+    }
+
+    /**
+     * Returns how many mobs of the given type were spawned in this world
+     * since it was loaded.
+     *
+     * @param type
+     * @return the number of spawns
+     */
+    public long getSuccesses(Type type) {
+        return successes[type.ordinal()];
+    }
+
+    private static int count(OChunk ochunk, Type type) {
+        // SRG List[] slices = ochunk.field_76645_j;
+        List[] slices = ochunk.j;
+        int count = 0;
+
+        for (int n = 0; n < slices.length; n++) {
+            for (int m = 0; m < slices[n].size(); m++) {
+                if (getType((OEntity) slices[n].get(m)) == type) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the type the given entity spawns as, or <tt>null</tt> if it
+     * isn't a mob the natural spawner spawns.
+     *
+     * @param oentity
+     * @return the type
+     */
+    public static Type getType(OEntity oentity) {
+        if (!(oentity instanceof OEntityLiving)) {
+            return null;
+        }
+        if (oentity instanceof OIMob) {
+            return Type.MONSTERS;
+        }
+        if (oentity instanceof OEntityAnimal) {
+            return Type.ANIMALS;
+        }
+        if (oentity instanceof OEntityWaterMob || oentity instanceof OEntityBat) {
+            return Type.AMBIENT;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,110 @@
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * TileEntityScheduler.java - Lets idle tile entities sleep.
+ *
+ * A tile entity that has nothing to do, like a furnace without anything to
+ * smelt or a hopper that couldn't move an item, can go to sleep until a given
+ * tick or until it is woken. {@link OWorld} doesn't tick sleeping tile
+ * entities. They are woken when a neighbouring block changes, when their
+ * inventory changes and when they are removed.
+ *
+ * Tile entities only sleep with tile-entity-idle-ticks set, see
+ * {@link etc#getTileEntityIdleTicks()}.
+ *
+ * Only used on the server thread.
+ */
+public class TileEntityScheduler {
+
+    private final OWorld                 oworld;
+    private final Map<Long, OTileEntity> sleeping = new HashMap<Long, OTileEntity>();
+
+    public TileEntityScheduler(OWorld oworld) {
+        this.oworld = oworld;
+    }
+
+    /**
+     * Puts a tile entity to sleep.
+     *
+     * @param otileentity
+     * @param ticks
+     *            the number of ticks to sleep, or 0 to sleep until woken
+     */
+    public void sleep(OTileEntity otileentity, long ticks) {
+        if (etc.getInstance().getTileEntityIdleTicks() <= 0) {
+            return;
+        }
+        // SRG otileentity.sleepUntil = ticks > 0 ? oworld.func_82737_E() + ticks : Long.MAX_VALUE;
+        otileentity.sleepUntil = ticks > 0 ? oworld.I() + ticks : Long.MAX_VALUE;
+        sleeping.put(key(otileentity), otileentity);
+    }
+
+    /**
+     * Returns whether a tile entity is sleeping. Wakes it if its time is up.
+     *
+     * @param otileentity
+     * @return <tt>true</tt> if it shouldn't be ticked
+     */
+    public boolean isSleeping(OTileEntity otileentity) {
+        if (otileentity.sleepUntil == 0L) {
+            return false;
+        }
+        // SRG if (oworld.func_82737_E() < otileentity.sleepUntil) {
+        if (oworld.I() < otileentity.sleepUntil) {
+            return true;
+        }
+        wake(otileentity);
+        return false;
+    }
+
+    /**
+     * Wakes a tile entity, if it is sleeping.
+     *
+     * @param otileentity
+     */
+    public void wake(OTileEntity otileentity) {
+        if (otileentity.sleepUntil == 0L) {
+            return;
+        }
+        otileentity.sleepUntil = 0L;
+        Long key = key(otileentity);
+
+        if (sleeping.get(key) == otileentity) {
+            sleeping.remove(key);
+        }
+    }
+
+    /**
+     * Wakes the tile entity at the given position, if there is a sleeping one.
+     *
+     * @param x
+     * @param y
+     * @param z
+     */
+    public void wake(int x, int y, int z) {
+        if (sleeping.isEmpty()) {
+            return;
+        }
+        OTileEntity otileentity = sleeping.remove(BlockPositionSet.pack(x, y, z));
+
+        if (otileentity != null) {
+            otileentity.sleepUntil = 0L;
+        }
+    }
+
+    /**
+     * Returns the number of sleeping tile entities.
+     *
+     * @return the number of sleeping tile entities
+     */
+    public int getSleepingCount() {
+        return sleeping.size();
+    }
+
+    private static Long key(OTileEntity otileentity) {
+        // SRG return BlockPositionSet.pack(otileentity.field_70329_l, otileentity.field_70330_m, otileentity.field_70327_n);
+        return BlockPositionSet.pack(otileentity.l, otileentity.m, otileentity.n);
+    }
+}
@@ -73,6 +73,16 @@ public class Villager extends Mob {
         return (OEntityVillager) entity;
     }
 
+    /**
+     * Returns whether this villager is walled in and only trades and looks
+     * at players. See <tt>stationary-villagers</tt>.
+     *
+     * @return true if this villager is stationary
+     */
+    public boolean isStationary() {
+        return getEntity().isStationary();
+    }
+
     /**
      * Returns an immutable array of this villager's trades
      *
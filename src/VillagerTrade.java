@@ -73,6 +73,7 @@ public class VillagerTrade {
     public void setBuyingOne(Item item) {
         // SRG getRecipe().field_77403_a = item.getBaseItem();
         getRecipe().a = item.getBaseItem();
+        getRecipe().changes++;
     }
 
     /**
@@ -93,6 +94,7 @@ public class VillagerTrade {
     public void setBuyingTwo(Item item) {
         // SRG getRecipe().func_77396_b = item.getBaseItem();
         getRecipe().b = item.getBaseItem();
+        getRecipe().changes++;
     }
 
     /**
@@ -123,6 +125,7 @@ public class VillagerTrade {
     public void setSelling(Item item) {
         // SRG getRecipe().field_77402_c = item.getBaseItem();
         getRecipe().c = item.getBaseItem();
+        getRecipe().changes++;
     }
 
     /**
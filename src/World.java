@@ -1,5 +1,6 @@
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -15,6 +16,9 @@ import java.util.Map;
 public class World {
 
     private final OWorldServer world;
+    // The chunk each thread read blocks from last, saves the chunk lookup
+    // when reading many blocks that are close together.
+    private final ThreadLocal<OChunk> lastChunk = new ThreadLocal<OChunk>();
 
     public enum Dimension {
 
@@ -182,15 +186,7 @@ public class World {
      * @return list of mobs
      */
     public List<Mob> getMobList() {
-        List<Mob> toRet = new ArrayList<Mob>();
-
-        // SRG for (OEntity oent : (ArrayList<OEntity>) ((ArrayList<OEntity>) world.field_72996_f).clone()) {
-        for (OEntity oent : (ArrayList<OEntity>) ((ArrayList<OEntity>) world.e).clone()) {
-            if (oent instanceof OEntityMob || oent instanceof OEntityGhast || oent instanceof OEntitySlime || oent instanceof OEntityDragon) {
-                toRet.add(new Mob((OEntityLiving) oent));
-            }
-        }
-        return toRet;
+        return world.entityLists.copy(world.entityLists.getMobs());
     }
 
     /**
@@ -199,15 +195,7 @@ public class World {
      * @return list of animals
      */
     public List<Mob> getAnimalList() {
-        List<Mob> toRet = new ArrayList<Mob>();
-
-        // SRG for (OEntity oent : (ArrayList<OEntity>) ((ArrayList<OEntity>) world.field_72996_f).clone()) {
-        for (OEntity oent : (ArrayList<OEntity>) ((ArrayList<OEntity>) world.e).clone()) {
-            if (oent instanceof OEntityAnimal || oent instanceof OEntitySquid || oent instanceof OEntitySnowman || oent instanceof OEntityBat) {
-                toRet.add(new Mob((OEntityLiving) oent));
-            }
-        }
-        return toRet;
+        return world.entityLists.copy(world.entityLists.getAnimals());
     }
 
     /**
@@ -216,15 +204,7 @@ public class World {
      * @return list of minecarts
      */
     public List<Minecart> getMinecartList() {
-        List<Minecart> toRet = new ArrayList<Minecart>();
-
-        // SRG for (OEntity oent : (ArrayList<OEntity>) ((ArrayList<OEntity>) world.field_72996_f).clone()) {
-        for (OEntity oent : (ArrayList<OEntity>) ((ArrayList<OEntity>) world.e).clone()) {
-            if (oent instanceof OEntityMinecart) {
-                toRet.add(((OEntityMinecart) oent).cart);
-            }
-        }
-        return toRet;
+        return world.entityLists.copy(world.entityLists.getMinecarts());
     }
 
     /**
@@ -233,15 +213,7 @@ public class World {
      * @return list of boats
      */
     public List<Boat> getBoatList() {
-        List<Boat> toRet = new ArrayList<Boat>();
-
-        // SRG for (OEntity oent : (ArrayList<OEntity>) ((ArrayList<OEntity>) world.field_72996_f).clone()) {
-        for (OEntity oent : (ArrayList<OEntity>) ((ArrayList<OEntity>) world.e).clone()) {
-            if (oent instanceof OEntityBoat) {
-                toRet.add(((OEntityBoat) oent).boat);
-            }
-        }
-        return toRet;
+        return world.entityLists.copy(world.entityLists.getBoats());
     }
 
     /**
@@ -250,17 +222,7 @@ public class World {
      * @return list of entities
      */
     public List<BaseEntity> getEntityList() {
-        List<BaseEntity> toRet = new ArrayList<BaseEntity>();
-
-        // SRG for (OEntity oent : (ArrayList<OEntity>) ((ArrayList<OEntity>) world.field_72996_f).clone()) {
-        for (OEntity oent : (ArrayList<OEntity>) ((ArrayList<OEntity>) world.e).clone()) {
-            if (oent instanceof OEntityMob || oent instanceof OEntityGhast || oent instanceof OEntityAnimal || oent instanceof OEntitySlime || oent instanceof OEntityDragon || oent instanceof OEntityMagmaCube || oent instanceof OEntityVillager || oent instanceof OEntitySquid || oent instanceof OEntitySnowman) {
-                toRet.add(new Mob((OEntityLiving) oent));
-            } else {
-                toRet.add(oent.getEntity());
-            }
-        }
-        return toRet;
+        return world.entityLists.copy(world.entityLists.getEntities());
     }
 
     /**
@@ -269,15 +231,7 @@ public class World {
      * @return list of items
      */
     public List<ItemEntity> getItemList() {
-        List<ItemEntity> toRet = new ArrayList<ItemEntity>();
-
-        // SRG for (OEntity oent : (ArrayList<OEntity>) ((ArrayList<OEntity>) world.field_72996_f).clone()) {
-        for (OEntity oent : (ArrayList<OEntity>) ((ArrayList<OEntity>) world.e).clone()) {
-            if (oent instanceof OEntityItem) {
-                toRet.add(((OEntityItem) oent).item);
-            }
-        }
-        return toRet;
+        return world.entityLists.copy(world.entityLists.getItems());
     }
 
     /**
@@ -287,15 +241,7 @@ public class World {
      * @return list of living entities
      */
     public List<LivingEntity> getLivingEntityList() {
-        List<LivingEntity> toRet = new ArrayList<LivingEntity>();
-
-        // SRG for (OEntity oent : (ArrayList<OEntity>) ((ArrayList<OEntity>) world.field_72996_f).clone()) {
-        for (OEntity oent : (ArrayList<OEntity>) ((ArrayList<OEntity>) world.e).clone()) {
-            if (oent instanceof OEntityLiving) {
-                toRet.add(((OEntityLiving) oent).getEntity());
-            }
-        }
-        return toRet;
+        return world.entityLists.copy(world.entityLists.getLivingEntities());
     }
 
     /**
@@ -306,15 +252,231 @@ public class World {
     public List<BaseVehicle> getVehicleEntityList() {
         List<BaseVehicle> toRet = new ArrayList<BaseVehicle>();
 
-        // SRG for (OEntity oent : (ArrayList<OEntity>) ((ArrayList<OEntity>) world.field_72996_f).clone()) {
-        for (OEntity oent : (ArrayList<OEntity>) ((ArrayList<OEntity>) world.e).clone()) {
-            if (oent instanceof OEntityMinecart || oent instanceof OEntityBoat) {
-                toRet.add((BaseVehicle) oent.getEntity());
+        toRet.addAll(world.entityLists.copy(world.entityLists.getMinecarts()));
+        toRet.addAll(world.entityLists.copy(world.entityLists.getBoats()));
+        return toRet;
+    }
+
+    /**
+     * Returns a live view of the mobs in open chunks. Unlike
+     * {@link #getMobList()} nothing is copied, but the view changes as mobs
+     * spawn and die, so only use it on the server thread and don't spawn or
+     * remove entities while iterating it.
+     *
+     * @return the mobs
+     */
+    public Collection<Mob> getMobs() {
+        return world.entityLists.getMobs();
+    }
+
+    /**
+     * Returns a live view of the animals in open chunks. See
+     * {@link #getMobs()}.
+     *
+     * @return the animals
+     */
+    public Collection<Mob> getAnimals() {
+        return world.entityLists.getAnimals();
+    }
+
+    /**
+     * Returns a live view of the items in open chunks. See {@link #getMobs()}.
+     *
+     * @return the items
+     */
+    public Collection<ItemEntity> getItems() {
+        return world.entityLists.getItems();
+    }
+
+    /**
+     * Returns a live view of the living entities (animals, mobs) in open
+     * chunks. See {@link #getMobs()}.
+     *
+     * @return the living entities
+     */
+    public Collection<LivingEntity> getLivingEntities() {
+        return world.entityLists.getLivingEntities();
+    }
+
+    /**
+     * Returns a live view of all entities in open chunks. See
+     * {@link #getMobs()}.
+     *
+     * @return the entities
+     */
+    public Collection<BaseEntity> getEntities() {
+        return world.entityLists.getEntities();
+    }
+
+    /**
+     * Returns the entities in open chunks whose wrapper is of the given type,
+     * e.g. <tt>getEntityList(Sheep.class)</tt>.
+     *
+     * @param type
+     * @return the matching entities
+     */
+    public <T extends BaseEntity> List<T> getEntityList(Class<T> type) {
+        List<T> toRet = new ArrayList<T>();
+
+        for (BaseEntity entity : world.entityLists.copy(world.entityLists.getEntities())) {
+            if (type.isInstance(entity)) {
+                toRet.add(type.cast(entity));
             }
         }
         return toRet;
     }
 
+    /**
+     * Returns the entities of the given type within <tt>radius</tt> blocks
+     * of <tt>center</tt>. Only the chunks around <tt>center</tt> are
+     * searched, not every loaded entity.
+     *
+     * @param center
+     *            the center of the search, the world of the location is
+     *            ignored
+     * @param radius
+     * @param type
+     *            the wrapper type, e.g. <tt>Mob.class</tt>
+     * @return the matching entities
+     */
+    public <T extends BaseEntity> List<T> getEntitiesWithin(Location center, double radius, Class<T> type) {
+        return getEntitiesWithin(center, radius, type, null, null);
+    }
+
+    /**
+     * Returns the entities of the given type within <tt>radius</tt> blocks
+     * of <tt>center</tt> that pass the filter.
+     *
+     * @param center
+     *            the center of the search, the world of the location is
+     *            ignored
+     * @param radius
+     * @param type
+     *            the wrapper type, e.g. <tt>Mob.class</tt>
+     * @param filter
+     *            extra condition, may be <tt>null</tt>
+     * @param result
+     *            list to reuse for the result, it is cleared first. May be
+     *            <tt>null</tt> to get a new list.
+     * @return the matching entities
+     */
+    public <T extends BaseEntity> List<T> getEntitiesWithin(Location center, double radius, Class<T> type, EntityFilter<? super T> filter, List<T> result) {
+        return findEntities(center.x - radius, center.y - radius, center.z - radius, center.x + radius, center.y + radius, center.z + radius, center, radius * radius, type, filter, result);
+    }
+
+    /**
+     * Returns the entities of the given type that are in the box between the
+     * two corners.
+     *
+     * @param x1
+     * @param y1
+     * @param z1
+     * @param x2
+     * @param y2
+     * @param z2
+     * @param type
+     *            the wrapper type, e.g. <tt>Mob.class</tt>
+     * @return the matching entities
+     */
+    public <T extends BaseEntity> List<T> getEntitiesInBox(double x1, double y1, double z1, double x2, double y2, double z2, Class<T> type) {
+        return getEntitiesInBox(x1, y1, z1, x2, y2, z2, type, null, null);
+    }
+
+    /**
+     * Returns the entities of the given type that are in the box between the
+     * two corners and pass the filter.
+     *
+     * @param x1
+     * @param y1
+     * @param z1
+     * @param x2
+     * @param y2
+     * @param z2
+     * @param type
+     *            the wrapper type, e.g. <tt>Mob.class</tt>
+     * @param filter
+     *            extra condition, may be <tt>null</tt>
+     * @param result
+     *            list to reuse for the result, it is cleared first. May be
+     *            <tt>null</tt> to get a new list.
+     * @return the matching entities
+     */
+    public <T extends BaseEntity> List<T> getEntitiesInBox(double x1, double y1, double z1, double x2, double y2, double z2, Class<T> type, EntityFilter<? super T> filter, List<T> result) {
+        return findEntities(Math.min(x1, x2), Math.min(y1, y2), Math.min(z1, z2), Math.max(x1, x2), Math.max(y1, y2), Math.max(z1, z2), null, 0, type, filter, result);
+    }
+
+    /**
+     * Walks the entity slices of the chunks intersecting the box
+     *
+     * @param center
+     *            if not <tt>null</tt>, only entities within the square root
+     *            of <tt>radiusSq</tt> of it are returned
+     */
+    private <T extends BaseEntity> List<T> findEntities(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, Location center, double radiusSq, Class<T> type, EntityFilter<? super T> filter, List<T> result) {
+        if (result == null) {
+            result = new ArrayList<T>();
+        } else {
+            result.clear();
+        }
+        // Padded like the chunk lookups of the world are, entities may stick out of their chunk
+        int minChunkX = OMathHelper.c((minX - 2.0D) / 16.0D);
+        int maxChunkX = OMathHelper.c((maxX + 2.0D) / 16.0D);
+        int minChunkZ = OMathHelper.c((minZ - 2.0D) / 16.0D);
+        int maxChunkZ = OMathHelper.c((maxZ + 2.0D) / 16.0D);
+        int minSlice = OMathHelper.c((minY - 2.0D) / 16.0D);
+        int maxSlice = OMathHelper.c((maxY + 2.0D) / 16.0D);
+
+        // Same clamping as the chunk does: entities below or above the world are in the bottom or top slice
+        if (minSlice < 0) {
+            minSlice = 0;
+            maxSlice = Math.max(minSlice, maxSlice);
+        }
+        if (maxSlice > 15) {
+            maxSlice = 15;
+            minSlice = Math.min(minSlice, maxSlice);
+        }
+
+        for (int cx = minChunkX; cx <= maxChunkX; cx++) {
+            for (int cz = minChunkZ; cz <= maxChunkZ; cz++) {
+                // SRG if (!world.func_72916_c(cx, cz)) {
+                if (!world.c(cx, cz)) {
+                    continue;
+                }
+                // SRG List[] slices = world.func_72964_e(cx, cz).field_76645_j;
+                List[] slices = world.e(cx, cz).j;
+
+                for (int slice = minSlice; slice <= maxSlice; slice++) {
+                    List entities = slices[slice];
+
+                    for (int i = 0; i < entities.size(); i++) {
+                        OEntity oentity = (OEntity) entities.get(i);
+
+                        if (oentity.u < minX || oentity.u > maxX || oentity.v < minY || oentity.v > maxY || oentity.w < minZ || oentity.w > maxZ) {
+                            continue;
+                        }
+                        if (center != null) {
+                            double dx = oentity.u - center.x, dy = oentity.v - center.y, dz = oentity.w - center.z;
+
+                            if (dx * dx + dy * dy + dz * dz > radiusSq) {
+                                continue;
+                            }
+                        }
+                        BaseEntity entity = EntityLists.wrap(oentity);
+
+                        if (type.isInstance(entity)) {
+                            T match = type.cast(entity);
+
+                            if (filter == null || filter.matches(match)) {
+                                result.add(match);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Get the global spawn location
      *
@@ -369,6 +531,17 @@ public class World {
         return setBlockAt(block.getType(), block.getX(), block.getY(), block.getZ()) && setBlockData(block.getX(), block.getY(), block.getZ(), block.getData());
     }
 
+    /**
+     * Starts a new edit session for changing lots of blocks at once. See
+     * {@link EditSession} for what it does differently from
+     * {@link #setBlockAt(int, int, int, int)}.
+     *
+     * @return the edit session
+     */
+    public EditSession editSession() {
+        return new EditSession(this);
+    }
+
     /**
      * Returns the block at the specified location
      *
@@ -378,7 +551,60 @@ public class World {
      * @return block
      */
     public Block getBlockAt(int x, int y, int z) {
-        return new Block(this, getBlockIdAt(x, y, z), x, y, z, getBlockData(x, y, z));
+        int packed = getBlockIdAndData(x, y, z);
+
+        return new Block(this, packed >> 4, x, y, z, packed & 15);
+    }
+
+    /**
+     * Returns the block type and data at the specified location in one go,
+     * packed as <tt>type &lt;&lt; 4 | data</tt>. Use this instead of
+     * {@link #getBlockAt(int, int, int)} when scanning lots of blocks, it
+     * doesn't create a {@link Block}.
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @return the packed block type and data
+     */
+    public int getBlockIdAndData(int x, int y, int z) {
+        if (y < 0 || y >= 256 || !isInWorld(x, z)) {
+            return 0;
+        }
+        // SRG OExtendedBlockStorage section = getLoadedChunk(x >> 4, z >> 4).func_76587_i()[y >> 4];
+        OExtendedBlockStorage section = getLoadedChunk(x >> 4, z >> 4).i()[y >> 4];
+
+        if (section == null) {
+            return 0;
+        }
+        // SRG return section.func_76656_a(x & 15, y & 15, z & 15) << 4 | section.func_76665_b(x & 15, y & 15, z & 15);
+        return section.a(x & 15, y & 15, z & 15) << 4 | section.b(x & 15, y & 15, z & 15);
+    }
+
+    private static boolean isInWorld(int x, int z) {
+        return x >= -30000000 && z >= -30000000 && x < 30000000 && z < 30000000;
+    }
+
+    /**
+     * Returns the chunk at the given chunk coordinates, loading it if needed.
+     * The chunk is remembered per thread, so reading the next block from the
+     * same chunk skips the chunk provider.
+     */
+    private OChunk getLoadedChunk(int x, int z) {
+        OChunk ochunk = lastChunk.get();
+
+        // SRG if (ochunk != null && ochunk.field_76636_d && ochunk.field_76635_g == x && ochunk.field_76647_h == z) {
+        if (ochunk != null && ochunk.d && ochunk.g == x && ochunk.h == z) {
+            return ochunk;
+        }
+        // SRG ochunk = world.func_72964_e(x, z);
+        ochunk = world.e(x, z);
+        // Only cache loaded chunks, unloading clears the flag
+        // SRG if (ochunk.field_76636_d) {
+        if (ochunk.d) {
+            lastChunk.set(ochunk);
+        }
+        return ochunk;
     }
 
     /**
@@ -390,8 +616,11 @@ public class World {
      * @return block data
      */
     public int getBlockData(int x, int y, int z) {
-        // SRG return world.func_72805_g(x, y, z);
-        return world.h(x, y, z);
+        if (y < 0 || y >= 256 || !isInWorld(x, z)) {
+            return 0;
+        }
+        // SRG return getLoadedChunk(x >> 4, z >> 4).func_76628_c(x & 15, y, z & 15);
+        return getLoadedChunk(x >> 4, z >> 4).c(x & 15, y, z & 15);
     }
 
     /**
@@ -443,8 +672,11 @@ public class World {
      * @return block type
      */
     public int getBlockIdAt(int x, int y, int z) {
-        // SRG return world.func_72798_a(x, y, z);
-        return world.a(x, y, z);
+        if (y < 0 || y >= 256 || !isInWorld(x, z)) {
+            return 0;
+        }
+        // SRG return getLoadedChunk(x >> 4, z >> 4).func_76610_a(x & 15, y, z & 15);
+        return getLoadedChunk(x >> 4, z >> 4).a(x & 15, y, z & 15);
     }
 
     /**
@@ -1087,6 +1319,150 @@ public class World {
         return world.name;
     }
 
+    /**
+     * Returns whether redstone wire in this world updates a whole wire
+     * network at once.
+     *
+     * @return true if the fast redstone wire is used
+     * @see RedstoneWireEngine
+     */
+    public boolean isFastRedstone() {
+        return world.fastRedstone;
+    }
+
+    /**
+     * Sets whether redstone wire in this world updates a whole wire network
+     * at once instead of wire by wire. The power the wire ends up with
+     * should be the same for plain wire, but neighbouring blocks are updated
+     * far less often. Defaults to whether the world is listed in
+     * <tt>fast-redstone-worlds</tt>.
+     *
+     * @param fastRedstone
+     * @see RedstoneWireEngine
+     */
+    public void setFastRedstone(boolean fastRedstone) {
+        world.fastRedstone = fastRedstone;
+    }
+
+    /**
+     * Returns how many entities in this world were ticked fully last tick.
+     *
+     * @return the number of active entities
+     * @see #getInactiveEntityCount()
+     */
+    public int getActiveEntityCount() {
+        return world.activationRange.getActiveCount();
+    }
+
+    /**
+     * Returns how many entities in this world were out of their activation
+     * range last tick, and only aged instead of being ticked fully. See the
+     * <tt>activation-range-*</tt> settings.
+     *
+     * @return the number of inactive entities
+     */
+    public int getInactiveEntityCount() {
+        return world.activationRange.getInactiveCount();
+    }
+
+    /**
+     * Returns how many mobs of the given type were about to be spawned in
+     * this world since it was loaded, including the spawns that were turned
+     * down.
+     *
+     * @param type
+     * @return the number of spawn attempts
+     * @see SpawnController
+     */
+    public long getSpawnAttempts(SpawnController.Type type) {
+        return world.spawnController.getAttempts(type);
+    }
+
+    /**
+     * Returns how many mobs of the given type were spawned in this world
+     * since it was loaded.
+     *
+     * @param type
+     * @return the number of spawns
+     * @see SpawnController
+     */
+    public long getSpawnSuccesses(SpawnController.Type type) {
+        return world.spawnController.getSuccesses(type);
+    }
+
+    /**
+     * Returns every how many ticks mobs in this world without a target
+     * choose what to do.
+     *
+     * @return the AI tick interval
+     * @see #setAITickInterval(int)
+     */
+    public int getAITickInterval() {
+        return world.aiTickInterval;
+    }
+
+    /**
+     * Sets every how many ticks mobs in this world without a target choose
+     * what to do (sense, pick targets and goals). Mobs take turns by their
+     * entity id, so the work is spread over the ticks. The goals a mob is
+     * already running, like following its parent or fleeing, are carried on
+     * in the same turn, so they are slowed down by the same interval. Mobs
+     * still move along their path and look around every tick. Mobs with a
+     * target aren't slowed down. 1 means every tick, like vanilla. Defaults
+     * to <tt>ai-tick-interval</tt>.
+     *
+     * @param interval
+     */
+    public void setAITickInterval(int interval) {
+        world.aiTickInterval = interval;
+    }
+
+    /**
+     * Returns how many paths mobs in this world may search per tick.
+     *
+     * @return the pathfinding budget, 0 if there is none
+     * @see #setPathfindingBudget(int)
+     */
+    public int getPathfindingBudget() {
+        return world.pathfinding.getBudget();
+    }
+
+    /**
+     * Sets how many paths mobs in this world may search per tick. Mobs over
+     * the budget are queued for the next tick. 0 means no limit. Defaults to
+     * <tt>pathfinding-budget</tt>.
+     *
+     * @param budget
+     * @see PathfindingBudget
+     */
+    public void setPathfindingBudget(int budget) {
+        world.pathfinding.setBudget(budget);
+    }
+
+    /**
+     * Returns for how many ticks a path search that found nothing is
+     * remembered in this world.
+     *
+     * @return the number of ticks, 0 if failed searches aren't remembered
+     * @see #setPathFailureTicks(int)
+     */
+    public int getPathFailureTicks() {
+        return world.pathfinding.getFailureTicks();
+    }
+
+    /**
+     * Sets for how many ticks a path search that found nothing is remembered
+     * in this world. Mobs searching the same path from the same block in that
+     * time get no path right away. 0 means searches are never skipped.
+     * Defaults to <tt>path-failure-ticks</tt>.
+     *
+     * @param ticks
+     * @see PathfindingBudget
+     */
+    public void setPathFailureTicks(int ticks) {
+        world.pathfinding.setFailureTicks(ticks);
+    }
+
     /**
      * Get the default game mode for this world.
      * @return The game mode for this world.
@@ -1207,4 +1583,29 @@ public class World {
         }
         return loadedChunks;
     }
+
+    /**
+     * Returns whether the per-tick vehicle hooks are called for vehicles in
+     * this world.
+     *
+     * @return true if they are called
+     * @see #setVehicleHooks(boolean)
+     */
+    public boolean isVehicleHooks() {
+        return world.vehicleHooks;
+    }
+
+    /**
+     * Sets whether {@link PluginListener#onVehicleUpdate(BaseVehicle)},
+     * {@link PluginListener#onVehiclePositionChange(BaseVehicle, int, int, int)}
+     * and {@link PluginListener#onVehicleCollision(BaseVehicle, BaseEntity)}
+     * are called for vehicles in this world. Vehicles can opt in or out on
+     * their own with {@link BaseVehicle#setHooksEnabled(Boolean)}. Defaults
+     * to <tt>vehicle-hooks</tt>.
+     *
+     * @param vehicleHooks
+     */
+    public void setVehicleHooks(boolean vehicleHooks) {
+        world.vehicleHooks = vehicleHooks;
+    }
 }
@@ -7,6 +7,11 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,6 +26,8 @@ public class etc {
     private static final Logger           OLD_LOGGER = Logger.getLogger("Minecraft"); // Keep reference to keep parent setting
     private static final Logger           log = Logger.getLogger("Minecraft-Server");
     private static final etc              instance = new etc();
+    private static final int              RELOAD_SWAP_ATTEMPTS = 3;
+    private static final int              RELOAD_TASK_TIMEOUT = 60; // seconds
     private static OMinecraftServer       server;
     private String                        configDir = "config/";
     private String                        usersLoc = "config/users.txt",
@@ -88,6 +95,33 @@ public class etc {
     private boolean                       playerList_enabled = true;
     public boolean                        allowEnchantableItemStacking = false;
     private boolean                       forceChat, forceColor;
+    private int                           loginPrefetchTimeout = 3000;
+    private String                        loginPrefetchFallback = "sync";
+    private int                           loginNegativeCacheTime = 30;
+    private String                        embeddedDbLocation = "config/canary.db";
+    private boolean                       embeddedDbSync = false;
+    private int                           fluidFlowBudget = 0;
+    private boolean                       fluidFlowBatching = false;
+    private String[]                      fastRedstoneWorlds = new String[] {};
+    private boolean                       entityStacking = false;
+    private int                           stackingChunkCap = 0;
+    private int[]                         activationRanges = new int[ActivationRange.Category.values().length];
+    private int                           tileEntityIdleTicks = 0;
+    private double                        itemMergeRadius = 0.5;
+    private int                           itemMergeInterval = 0;
+    private int                           itemChunkCap = 0;
+    private int[]                         spawnIntervals = new int[SpawnController.Type.values().length];
+    private int[]                         spawnWorldCaps = new int[SpawnController.Type.values().length];
+    private int[]                         spawnChunkCaps = new int[SpawnController.Type.values().length];
+    private int                           spawnBudget = 0;
+    private int                           aiTickInterval = 1;
+    private int                           pathfindingBudget = 0;
+    private int                           pathFailureTicks = 0;
+    private boolean                       vehicleHooks = true;
+    private int                           minecartSleepTicks = 0;
+    private boolean                       stationaryVillagers = false;
+
+    private final AtomicBoolean           reloading = new AtomicBoolean();
 
     //Connection Manager
     private ConnectionService cs;
@@ -127,12 +161,26 @@ public class etc {
                 log.log(Level.SEVERE, "Exception while reading from server.properties", e);
             }
         }
+        applyProperties();
+    }
 
+    /**
+     * Reads the settings from the loaded server.properties
+     */
+    private void applyProperties() {
         try {
             dataSourceType = properties.getString("data-source", "flatfile");
-            loadIds(allowedItems, properties.getString("alloweditems", ""));
-            loadIds(disallowedItems, properties.getString("disalloweditems", ""));
-            loadIds(itemSpawnBlacklist, properties.getString("itemspawnblacklist", ""));
+            // Fill fresh sets so readers never see a half loaded one, and removed ids are gone after a reload
+            Set<Integer> ids = new HashSet<Integer>();
+
+            loadIds(ids, properties.getString("alloweditems", ""));
+            allowedItems = ids;
+            ids = new HashSet<Integer>();
+            loadIds(ids, properties.getString("disalloweditems", ""));
+            disallowedItems = ids;
+            ids = new HashSet<Integer>();
+            loadIds(ids, properties.getString("itemspawnblacklist", ""));
+            itemSpawnBlacklist = ids;
             playerList_autoupdate = properties.getBoolean("playerlist-autoupdate", true);
             playerList_ticks = properties.getInt("playerlist-ticks", 600);
             playerList_colors = properties.getBoolean("playerlist-usecolors", true);
@@ -149,7 +197,8 @@ public class etc {
             configDir = properties.getString("config-directory", "config/");
             motdLoc = properties.getString("motdtxtlocation", "config/motd.txt");
             reservelistEnabled = properties.getBoolean("reservelist", false);
-            if (dataSourceType.equalsIgnoreCase("flatfile")) {
+            if (!dataSourceType.equalsIgnoreCase("mysql")) {
+                // The embedded source imports the flat files on first start
                 usersLoc = properties.getString("admintxtlocation", "config/users.txt");
                 kitsLoc = properties.getString("kitstxtlocation", "config/kits.txt");
                 homeLoc = properties.getString("homelocation", "config/homes.txt");
@@ -231,6 +280,37 @@ public class etc {
             showUnknownCommand = properties.getBoolean("show-unknown-command", true);
             forceChat = properties.getBoolean("force-chat");
             forceColor = properties.getBoolean("force-color");
+            loginPrefetchTimeout = properties.getInt("login-prefetch-timeout", 3000);
+            loginPrefetchFallback = properties.getString("login-prefetch-fallback", "sync");
+            loginNegativeCacheTime = properties.getInt("login-negative-cache", 30);
+            embeddedDbLocation = properties.getString("embedded-db-location", "config/canary.db");
+            embeddedDbSync = properties.getBoolean("embedded-db-sync", false);
+            fluidFlowBudget = properties.getInt("fluid-flow-budget", 0);
+            fluidFlowBatching = properties.getBoolean("fluid-flow-batching", false);
+            fastRedstoneWorlds = properties.getString("fast-redstone-worlds", "").split(",");
+            entityStacking = properties.getBoolean("entity-stacking", false);
+            stackingChunkCap = properties.getInt("stacking-chunk-cap", 0);
+            for (ActivationRange.Category category : ActivationRange.Category.values()) {
+                activationRanges[category.ordinal()] = properties.getInt("activation-range-" + category.name().toLowerCase(), 0);
+            }
+            tileEntityIdleTicks = properties.getInt("tile-entity-idle-ticks", 0);
+            itemMergeRadius = properties.getDouble("item-merge-radius", 0.5);
+            itemMergeInterval = properties.getInt("item-merge-interval", 0);
+            itemChunkCap = properties.getInt("item-chunk-cap", 0);
+            for (SpawnController.Type type : SpawnController.Type.values()) {
+                String name = type.name().toLowerCase();
+
+                spawnIntervals[type.ordinal()] = properties.getInt("spawn-interval-" + name, type == SpawnController.Type.ANIMALS ? 400 : 1);
+                spawnWorldCaps[type.ordinal()] = properties.getInt("spawn-world-cap-" + name, 0);
+                spawnChunkCaps[type.ordinal()] = properties.getInt("spawn-chunk-cap-" + name, 0);
+            }
+            spawnBudget = properties.getInt("spawn-budget", 0);
+            aiTickInterval = properties.getInt("ai-tick-interval", 1);
+            pathfindingBudget = properties.getInt("pathfinding-budget", 0);
+            pathFailureTicks = properties.getInt("path-failure-ticks", 0);
+            vehicleHooks = properties.getBoolean("vehicle-hooks", true);
+            minecartSleepTicks = properties.getInt("minecart-sleep-ticks", 0);
+            stationaryVillagers = properties.getBoolean("stationary-villagers", false);
 
             File file = new File("version.txt");
 
@@ -309,16 +389,176 @@ public class etc {
      * Loads or reloads the data source
      */
     public void loadData() {
-        if (dataSourceType.equalsIgnoreCase("flatfile") && dataSource == null) {
-            dataSource = new FlatFileSource();
-        } else if (dataSourceType.equalsIgnoreCase("mysql") && dataSource == null) {
-            dataSource = new MySQLSource();
+        if (dataSource == null) {
+            dataSource = createDataSource();
         }
 
         dataSource.initialize();
         BanSystem.setDataSource(dataSource);
     }
 
+    private DataSource createDataSource() {
+        if (dataSourceType.equalsIgnoreCase("mysql")) {
+            return new MySQLSource();
+        } else if (dataSourceType.equalsIgnoreCase("embedded")) {
+            return new EmbeddedSource();
+        }
+        return new FlatFileSource();
+    }
+
+    /**
+     * Reloads server.properties and the data source without holding up the
+     * server. The files are read on a background thread into fresh objects,
+     * which then replace the current ones on the server thread in one go.
+     *
+     * @param done
+     *            run on the server thread once the reload is complete, may
+     *            be <tt>null</tt>
+     * @return false if a reload is already running
+     */
+    public boolean reload(final Runnable done) {
+        if (!reloading.compareAndSet(false, true)) {
+            return false;
+        }
+        final String oldType = dataSourceType;
+
+        Thread thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    // Whatever is written from now on is loaded again before the swap
+                    dataSource.takeChanges();
+                    // Queued writes must be visible to the fresh data source
+                    dataSource.flush();
+                    final PropertiesFile fresh = new PropertiesFile("server.properties");
+
+                    // The data source reads its locations from us, so apply the properties first
+                    runOnServerThread(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            properties = fresh;
+                            applyProperties();
+                        }
+                    });
+
+                    DataSource current = dataSource;
+                    DataSource next = dataSourceType.equalsIgnoreCase(oldType) ? current.newInstance() : createDataSource();
+
+                    if (next == null) {
+                        // This data source can't be loaded next to the running one
+                        runOnServerThread(new Runnable() {
+
+                            @Override
+                            public void run() {
+                                dataSource.initialize();
+                            }
+                        });
+                    } else {
+                        next.initialize();
+                        swapDataSource(next);
+                    }
+                    if (done != null) {
+                        etc.getServer().addToServerQueue(done);
+                    }
+                } catch (Exception e) {
+                    log.log(Level.SEVERE, "Exception while reloading", e);
+                } finally {
+                    reloading.set(false);
+                }
+            }
+        }, "CanaryMod reload");
+
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * Replaces the data source with the given, initialized one. Lists written
+     * to the old data source in the meantime are loaded again here first, so
+     * the server thread only has to swap the two.
+     *
+     * @param next
+     * @throws InterruptedException
+     * @throws TimeoutException
+     */
+    private void swapDataSource(final DataSource next) throws InterruptedException, TimeoutException {
+        final DataSource old = dataSource;
+
+        if (old == next) {
+            return;
+        }
+        for (int attempt = 1;; attempt++) {
+            // Pick up what was written to the old data source while the new one was loading
+            Set<DataSource.Table> changes = old.takeChanges();
+
+            old.flush();
+            for (DataSource.Table table : changes) {
+                next.load(table);
+            }
+
+            final boolean last = attempt == RELOAD_SWAP_ATTEMPTS;
+            final boolean[] swapped = new boolean[1];
+
+            runOnServerThread(new Runnable() {
+
+                @Override
+                public void run() {
+                    Set<DataSource.Table> late = old.takeChanges();
+
+                    if (!late.isEmpty()) {
+                        if (!last) {
+                            // Written to since, catch up again off the server thread
+                            for (DataSource.Table table : late) {
+                                old.changed(table);
+                            }
+                            return;
+                        }
+                        // Writes keep coming, so catch up the rest here
+                        old.flush();
+                        for (DataSource.Table table : late) {
+                            next.load(table);
+                        }
+                    }
+                    dataSource = next;
+                    next.applyEnderBlocks();
+                    BanSystem.setDataSource(next);
+                    LoginPrefetch.forget("@"); // cached login data was built from the old groups
+                    old.close();
+                    swapped[0] = true;
+                }
+            });
+            if (swapped[0]) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Runs the task on the server thread and waits for it to finish
+     *
+     * @param task
+     * @throws InterruptedException
+     * @throws TimeoutException
+     *             if the server didn't get to the task in time, it is
+     *             dropped then
+     */
+    private void runOnServerThread(Runnable task) throws InterruptedException, TimeoutException {
+        FutureTask<Object> future = new FutureTask<Object>(task, null);
+
+        etc.getServer().addToServerQueue(future);
+        try {
+            future.get(RELOAD_TASK_TIMEOUT, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            throw e;
+        }
+    }
+
     public String getDataSourceType() {
         return dataSourceType;
     }
@@ -610,6 +850,8 @@ public class etc {
             log.info("disableplugin Disables a plugin");
             log.info("reloadplugin  Reloads a plugin");
             log.info("gamemode  Set's the player's gamemode");
+            log.info("migrate-flatfile Imports the flat files into the embedded database");
+            log.info("backupdb      Writes a backup of the embedded database");
         } else {
             dontParseRegular = ServerConsoleCommands.parseServerConsoleCommand(serverConsole, split[0], split);
         }
@@ -1312,6 +1554,10 @@ public class etc {
         return ConnectionService.getInstance().getConnection();
     }
 
+    private CanaryConnection _leaseConnection() throws SQLException {
+        return ConnectionService.getInstance().leaseConnection();
+    }
+
     /**
      * Returns a SQL connection
      *
@@ -1332,6 +1578,16 @@ public class etc {
         return etc.getInstance()._getConnection();
     }
 
+    /**
+     * Return a connection from the connection pool that is leased to the
+     * caller until {@link CanaryConnection#release()} is called.
+     * @return A {@link CanaryConnection}
+     * @throws SQLException
+     */
+    static CanaryConnection leaseConnection() throws SQLException {
+        return etc.getInstance()._leaseConnection();
+    }
+
     public static int floor(float paramFloat) {
         int i = (int) paramFloat;
 
@@ -1470,6 +1726,254 @@ public class etc {
         return forceColor;
     }
 
+    /**
+     * Returns how long a login waits for its prefetched data, in milliseconds.
+     * @return the login prefetch timeout
+     */
+    public int getLoginPrefetchTimeout() {
+        return loginPrefetchTimeout;
+    }
+
+    /**
+     * Returns what to do when the login data didn't arrive in time:
+     * <tt>sync</tt> queries the data source directly, <tt>kick</tt> asks the
+     * player to try again.
+     * @return the login prefetch fallback
+     */
+    public String getLoginPrefetchFallback() {
+        return loginPrefetchFallback;
+    }
+
+    /**
+     * Returns how long the login data of players that aren't in the data
+     * source is cached, in seconds.
+     * @return the negative cache time
+     */
+    public int getLoginNegativeCacheTime() {
+        return loginNegativeCacheTime;
+    }
+
+    /**
+     * Returns the file the embedded data source keeps its data in.
+     * @return the embedded database location
+     */
+    public String getEmbeddedDbLocation() {
+        return embeddedDbLocation;
+    }
+
+    /**
+     * Returns whether the embedded data source forces every change to disk
+     * before going on. Off by default, as it makes every write wait on the
+     * disk. The trade-off: with it off, a crash of the machine (not just the
+     * server) can lose the changes of the last few seconds, though never
+     * part of a change. Changes are forced to disk when the server stops.
+     * @return true if every change is synced
+     */
+    public boolean isEmbeddedDbSync() {
+        return embeddedDbSync;
+    }
+
+    /**
+     * Returns how many fluid blocks may flow per chunk and tick. Updates over
+     * the budget are put off until the next tick. 0 means no limit.
+     * @return the fluid flow budget
+     */
+    public int getFluidFlowBudget() {
+        return fluidFlowBudget;
+    }
+
+    /**
+     * Returns whether plugins are asked once per chunk and tick whether fluid
+     * may flow there, using {@link PluginListener#onFlowChunk(Chunk)},
+     * instead of once per block using
+     * {@link PluginListener#onFlow(Block, Block)}.
+     * @return true if flow checks are batched per chunk
+     */
+    public boolean isFluidFlowBatching() {
+        return fluidFlowBatching;
+    }
+
+    /**
+     * Returns whether redstone wire in the given world starts out using
+     * {@link RedstoneWireEngine}, see {@link World#setFastRedstone(boolean)}.
+     * @param worldName the name of the world
+     * @return true if the world is listed in fast-redstone-worlds
+     */
+    public boolean isFastRedstoneWorld(String worldName) {
+        for (String name : fastRedstoneWorlds) {
+            if (name.trim().equalsIgnoreCase(worldName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether falling blocks that are at the same position with the
+     * same motion after their first tick are stacked into one entity. See
+     * {@link EntityStacker}.
+     * @return true if falling blocks are stacked
+     */
+    public boolean isEntityStacking() {
+        return entityStacking;
+    }
+
+    /**
+     * Returns how many primed TNT and how many falling block entities may be
+     * spawned per chunk. 0 means no limit.
+     * @return the cap per chunk
+     */
+    public int getStackingChunkCap() {
+        return stackingChunkCap;
+    }
+
+    /**
+     * Returns how far (in blocks, horizontally) entities of the given
+     * category may be from the nearest player and still be ticked fully.
+     * Entities further away only get an inactive tick. 0 means entities of
+     * the category are always ticked fully.
+     * @param category the category, see {@link ActivationRange}
+     * @return the activation range
+     */
+    public int getActivationRange(ActivationRange.Category category) {
+        return activationRanges[category.ordinal()];
+    }
+
+    /**
+     * Returns how many ticks an idle hopper or a mob spawner without players
+     * nearby sleeps before checking again. Other idle tile entities sleep
+     * until their inventory or a neighbouring block changes. 0 means tile
+     * entities never sleep. See {@link TileEntityScheduler}.
+     * @return the number of ticks idle tile entities sleep
+     */
+    public int getTileEntityIdleTicks() {
+        return tileEntityIdleTicks;
+    }
+
+    /**
+     * Returns how far apart (horizontally, in blocks) dropped items of the
+     * same kind may be to be merged. Defaults to 0.5, like vanilla.
+     * @return the merge radius
+     */
+    public double getItemMergeRadius() {
+        return itemMergeRadius;
+    }
+
+    /**
+     * Returns every how many ticks dropped items are merged in one batch,
+     * see {@link ItemMerger}. 0 means every item looks for items to merge
+     * with whenever it moves to another block, like vanilla.
+     * @return the merge interval
+     */
+    public int getItemMergeInterval() {
+        return itemMergeInterval;
+    }
+
+    /**
+     * Returns how many dropped items a chunk may hold before the oldest
+     * start to despawn early. 0 means no limit.
+     * @return the cap per chunk
+     */
+    public int getItemChunkCap() {
+        return itemChunkCap;
+    }
+
+    /**
+     * Returns every how many ticks mobs of the given type spawn naturally.
+     * Defaults to 400 for animals and 1 for the others, like vanilla.
+     * @param type the type, see {@link SpawnController}
+     * @return the spawn interval
+     */
+    public int getSpawnInterval(SpawnController.Type type) {
+        return spawnIntervals[type.ordinal()];
+    }
+
+    /**
+     * Returns how many mobs of the given type may live in a world for more
+     * to spawn naturally. 0 means no limit.
+     * @param type the type, see {@link SpawnController}
+     * @return the cap per world
+     */
+    public int getSpawnWorldCap(SpawnController.Type type) {
+        return spawnWorldCaps[type.ordinal()];
+    }
+
+    /**
+     * Returns how many mobs of the given type may live in a chunk for more
+     * to spawn there naturally. 0 means no limit.
+     * @param type the type, see {@link SpawnController}
+     * @return the cap per chunk
+     */
+    public int getSpawnChunkCap(SpawnController.Type type) {
+        return spawnChunkCaps[type.ordinal()];
+    }
+
+    /**
+     * Returns how many mobs may spawn naturally per world and tick. 0 means
+     * no limit.
+     * @return the spawn budget
+     */
+    public int getSpawnBudget() {
+        return spawnBudget;
+    }
+
+    /**
+     * Returns every how many ticks mobs without a target choose what to do
+     * and carry on with their running goals, by default. See
+     * {@link World#setAITickInterval(int)}.
+     * @return the AI tick interval
+     */
+    public int getAITickInterval() {
+        return aiTickInterval;
+    }
+
+    /**
+     * Returns how many paths mobs may search per world and tick, by default.
+     * See {@link World#setPathfindingBudget(int)}.
+     * @return the pathfinding budget, 0 if there is none
+     */
+    public int getPathfindingBudget() {
+        return pathfindingBudget;
+    }
+
+    /**
+     * Returns for how many ticks a path search that found nothing is
+     * remembered, by default. See {@link World#setPathFailureTicks(int)}.
+     * @return the number of ticks, 0 if failed searches aren't remembered
+     */
+    public int getPathFailureTicks() {
+        return pathFailureTicks;
+    }
+
+    /**
+     * Returns whether the per-tick vehicle hooks are called in a world, by
+     * default. See {@link World#setVehicleHooks(boolean)}.
+     * @return true if vehicle hooks are called
+     */
+    public boolean isVehicleHooks() {
+        return vehicleHooks;
+    }
+
+    /**
+     * Returns for how many ticks an empty minecart has to stand still on a
+     * rail before it parks. Parked minecarts aren't moved until they are
+     * pushed or their rail changes.
+     * @return the number of ticks, 0 if minecarts never park
+     */
+    public int getMinecartSleepTicks() {
+        return minecartSleepTicks;
+    }
+
+    /**
+     * Returns whether villagers walled in on all four sides become
+     * stationary. Stationary villagers still trade and look at players, but
+     * don't wander, flee, mate or look for villages.
+     * @return true if villagers can become stationary
+     */
+    public boolean isStationaryVillagers() {
+        return stationaryVillagers;
+    }
+
     /**
      * Autocompletes a word with passed options, optionally ignoring case.
      * @param word The word to be autocompleted